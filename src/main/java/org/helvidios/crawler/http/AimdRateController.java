@@ -0,0 +1,190 @@
+package org.helvidios.crawler.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Adjusts per-host rates of a {@link PerHostRateLimit} with additive-increase/multiplicative-decrease (AIMD).
+ * While a host answers promptly its rate grows by roughly {@code increasePerSecond} every second.
+ * A 429 or 503 response, or a p95 latency well above the best p95 seen for the host, cuts the rate by {@code decreaseFactor}.
+ * Rates always stay within {@code [minRequestsPerSecond, maxRequestsPerSecond]}.
+ */
+class AimdRateController {
+    /**
+     * Number of most recent latencies used for the p95 estimate.
+     */
+    static final int LATENCY_WINDOW = 50;
+
+    /**
+     * p95 latency may grow up to this many times its baseline before the host is considered overloaded.
+     */
+    static final double LATENCY_TOLERANCE = 2.0;
+
+    private final PerHostRateLimit rateLimit;
+    private final double minRequestsPerSecond;
+    private final double maxRequestsPerSecond;
+    private final double increasePerSecond;
+    private final double decreaseFactor;
+    private final Cache<String, HostState> hosts;
+
+    /**
+     * Creates a new instance of {@link AimdRateController}
+     * @param rateLimit per-host rate limit whose rates are adjusted
+     * @param minRequestsPerSecond lower bound of a host's rate
+     * @param maxRequestsPerSecond upper bound of a host's rate
+     * @param idleHostTimeout how long the state of an unused host is kept
+     */
+    AimdRateController(PerHostRateLimit rateLimit, double minRequestsPerSecond, double maxRequestsPerSecond, Duration idleHostTimeout){
+        this(rateLimit, minRequestsPerSecond, maxRequestsPerSecond, 1.0, 0.5, idleHostTimeout);
+    }
+
+    AimdRateController(
+        PerHostRateLimit rateLimit,
+        double minRequestsPerSecond,
+        double maxRequestsPerSecond,
+        double increasePerSecond,
+        double decreaseFactor,
+        Duration idleHostTimeout){
+
+        if(!(minRequestsPerSecond > 0)) throw new IllegalArgumentException("minRequestsPerSecond must be greater than zero");
+        if(maxRequestsPerSecond < minRequestsPerSecond) throw new IllegalArgumentException("maxRequestsPerSecond must not be less than minRequestsPerSecond");
+        if(!(increasePerSecond > 0)) throw new IllegalArgumentException("increasePerSecond must be greater than zero");
+        if(!(decreaseFactor > 0 && decreaseFactor < 1)) throw new IllegalArgumentException("decreaseFactor must be between 0 and 1");
+        this.rateLimit = Objects.requireNonNull(rateLimit, "rateLimit must not be null");
+        this.minRequestsPerSecond = minRequestsPerSecond;
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+        this.increasePerSecond = increasePerSecond;
+        this.decreaseFactor = decreaseFactor;
+        this.hosts = CacheBuilder.newBuilder()
+            .expireAfterAccess(Objects.requireNonNull(idleHostTimeout, "idleHostTimeout must not be null"))
+            .build();
+    }
+
+    /**
+     * Records the outcome of a request.
+     * @param url requested URL
+     * @param startNanos value of {@link System#nanoTime()} when the request was sent
+     * @param latencyNanos time until the response was received
+     * @param error failure or null if the request succeeded
+     */
+    void onResponse(URI url, long startNanos, long latencyNanos, Throwable error){
+        var host = PerHostRateLimit.host(url);
+        var state = state(host);
+        var status = error == null ? 0 : AsyncFetch.statusCode(error).orElse(-1);
+        synchronized(state){
+            double newRate;
+            if(status == 429 || status == 503){
+                newRate = state.decrease(startNanos);
+            }
+            else if(error == null || status == 304){
+                newRate = state.recordLatency(startNanos, latencyNanos);
+            }
+            else{
+                // other failures say nothing about load on the host
+                return;
+            }
+            if(!Double.isNaN(newRate)) rateLimit.adjustRate(host, newRate);
+        }
+    }
+
+    /**
+     * Returns the current rate of a host.
+     * @param host host name
+     * @return max QPS for the host
+     */
+    double rate(String host){
+        var state = hosts.getIfPresent(host);
+        if(state == null) return clamp(rateLimit.rate(host));
+        synchronized(state){
+            return state.rate;
+        }
+    }
+
+    private HostState state(String host){
+        try{
+            return hosts.get(host, () -> {
+                var rate = clamp(rateLimit.rate(host));
+                rateLimit.adjustRate(host, rate);
+                return new HostState(rate);
+            });
+        }catch(ExecutionException ex){
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    private double clamp(double rate){
+        return Math.max(minRequestsPerSecond, Math.min(maxRequestsPerSecond, rate));
+    }
+
+    /**
+     * AIMD state of a single host. Guarded by its own monitor.
+     */
+    private class HostState {
+        private double rate;
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        private int next;
+        private int samples;
+        private double baselineP95 = Double.NaN;
+        private boolean decreased;
+        private long lastDecreaseNanos;
+
+        HostState(double rate){
+            this.rate = rate;
+        }
+
+        /**
+         * Records a healthy response and increases the rate unless latency shows the host is struggling.
+         * @return new rate or NaN if the rate was not changed
+         */
+        double recordLatency(long startNanos, long latencyNanos){
+            latencies[next] = latencyNanos;
+            next = (next + 1) % LATENCY_WINDOW;
+            if(samples < LATENCY_WINDOW) samples++;
+            if(samples == LATENCY_WINDOW){
+                var p95 = p95();
+                if(Double.isNaN(baselineP95) || p95 < baselineP95){
+                    baselineP95 = p95;
+                }
+                else if(p95 > LATENCY_TOLERANCE * baselineP95){
+                    return decrease(startNanos);
+                }
+                else{
+                    // let the baseline follow a host that got permanently slower, so it is not throttled forever
+                    baselineP95 += (p95 - baselineP95) * 0.01;
+                }
+            }
+            // rate requests arrive per second, so the rate grows by about increasePerSecond every second
+            return setRate(rate + increasePerSecond / rate);
+        }
+
+        /**
+         * Cuts the rate, once per overload episode: responses to requests sent before the last cut are ignored.
+         * @return new rate or NaN if the rate was not changed
+         */
+        double decrease(long startNanos){
+            if(decreased && startNanos - lastDecreaseNanos < 0) return Double.NaN;
+            decreased = true;
+            lastDecreaseNanos = System.nanoTime();
+            samples = 0;
+            return setRate(rate * decreaseFactor);
+        }
+
+        private double setRate(double newRate){
+            var clamped = clamp(newRate);
+            if(clamped == rate) return Double.NaN;
+            rate = clamped;
+            return rate;
+        }
+
+        private double p95(){
+            var sorted = Arrays.copyOf(latencies, LATENCY_WINDOW);
+            Arrays.sort(sorted);
+            return sorted[(int) Math.ceil(0.95 * LATENCY_WINDOW) - 1];
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.helvidios.crawler.http;
+
+import java.net.HttpRetryException;
+import java.net.URI;
+import java.util.OptionalInt;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helpers shared by the asynchronous paths of {@link HttpClient} implementations.
+ */
+final class AsyncFetch {
+
+    private AsyncFetch(){}
+
+    /**
+     * Unwraps {@link CompletionException} and {@link ExecutionException} layers added by {@link CompletableFuture}
+     * and converts the underlying failure to a {@link FetchException}.
+     * @param url URL that failed to be fetched
+     * @param t failure
+     * @return {@link FetchException} describing the failure
+     */
+    static FetchException toFetchException(URI url, Throwable t){
+        var cause = unwrap(t);
+        if(cause instanceof FetchException ex) return ex;
+        return new FetchException(url, cause);
+    }
+
+    /**
+     * Strips {@link CompletionException} and {@link ExecutionException} wrappers from a failure.
+     * @param t failure
+     * @return underlying cause
+     */
+    static Throwable unwrap(Throwable t){
+        var cause = t;
+        while((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null){
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    /**
+     * Returns a future that is already completed with a {@link FetchException}.
+     * @param url URL that failed to be fetched
+     * @param t failure
+     * @return failed future
+     */
+    static <T> CompletableFuture<T> failed(URI url, Throwable t){
+        return CompletableFuture.failedFuture(toFetchException(url, t));
+    }
+
+    /**
+     * Returns HTTP status code of the response that caused a failure, if the server responded at all.
+     * @param t failure
+     * @return HTTP status code
+     */
+    static OptionalInt statusCode(Throwable t){
+        var cause = unwrap(t);
+        if(cause instanceof TooManyRequestsException) return OptionalInt.of(429);
+        if(cause instanceof NotModifiedException) return OptionalInt.of(304);
+        if(cause instanceof FetchException && cause.getCause() instanceof HttpRetryException ex){
+            return OptionalInt.of(ex.responseCode());
+        }
+        return OptionalInt.empty();
+    }
+}
@@ -4,11 +4,18 @@ import java.net.HttpRetryException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
-import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpResponse;
 import java.net.http.HttpClient.Version;
 import java.net.http.HttpResponse.BodyHandlers;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.helvidios.crawler.model.HtmlDocument;
 
 /**
@@ -18,43 +25,234 @@ import org.helvidios.crawler.model.HtmlDocument;
 class BasicHttpClient implements org.helvidios.crawler.http.HttpClient {
     private final HttpClient httpClient;
     private final Duration requestTimeout;
+    private final BoundedBodyHandler bodyHandler;
+    private final Map<String, Version> hostVersions;
+    private final CachingHostResolver resolver;
+
+    /**
+     * Default max number of body bytes read from a single response.
+     */
+    static final long DEFAULT_MAX_BODY_SIZE = 10 * 1024 * 1024;
 
     BasicHttpClient(Duration requestTimeout){
+        this(requestTimeout, DEFAULT_MAX_BODY_SIZE);
+    }
+
+    BasicHttpClient(Duration requestTimeout, long maxBodySize){
+        this(JdkHttpClients.create(new JdkHttpClients.Settings(null, null, Version.HTTP_2)), requestTimeout, maxBodySize, Map.of());
+    }
+
+    /**
+     * Creates a new instance of {@link BasicHttpClient} on top of an existing JDK client.
+     * @param httpClient JDK client, possibly shared with other instances
+     * @param requestTimeout timeout of a single request
+     * @param maxBodySize max number of body bytes to read
+     * @param hostVersions HTTP version to use for specific hosts instead of the client default
+     */
+    BasicHttpClient(HttpClient httpClient, Duration requestTimeout, long maxBodySize, Map<String, Version> hostVersions){
+        this(httpClient, requestTimeout, maxBodySize, hostVersions, null);
+    }
+
+    /**
+     * Creates a new instance of {@link BasicHttpClient} on top of an existing JDK client that resolves hosts through a cache
+     * before connecting, so that hosts known not to resolve fail without a request.
+     * @param httpClient JDK client, possibly shared with other instances
+     * @param requestTimeout timeout of a single request
+     * @param maxBodySize max number of body bytes to read
+     * @param hostVersions HTTP version to use for specific hosts instead of the client default
+     * @param resolver DNS cache, or null to leave resolution to the JDK client
+     */
+    BasicHttpClient(HttpClient httpClient, Duration requestTimeout, long maxBodySize, Map<String, Version> hostVersions, CachingHostResolver resolver){
+        this.resolver = resolver;
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
         this.requestTimeout = Objects.requireNonNull(requestTimeout, "requestTimeout must not be null");
-        this.httpClient = HttpClient.newBuilder()
-            .version(Version.HTTP_2)
-            .followRedirects(Redirect.NORMAL)
-            .build();
+        this.hostVersions = Map.copyOf(Objects.requireNonNull(hostVersions, "hostVersions must not be null"));
+        this.bodyHandler = new BoundedBodyHandler(maxBodySize);
     }
 
+    /**
+     * A request with a deadline is sent asynchronously and the calling thread waits for it, because the JDK request
+     * timeout only covers waiting for the response headers and a blocking exchange cannot be bounded while the body
+     * is being read.
+     */
     @Override
-    public HtmlDocument fetch(URI url) throws FetchException {
+    public HtmlDocument send(FetchRequest request) throws FetchException {
+        var url = request.url();
+        if(request.remaining().isPresent()) return await(request, sendAsync(request));
         try{
-            
-            var request = HttpRequest.newBuilder()
-                .uri(url)
-                .timeout(requestTimeout)
-                .build();
+            if(resolver != null) resolver.resolve(url.getHost());
+            return toHtmlDocument(url, httpClient.send(toHttpRequest(request), bodyHandler(request)));
+        }
+        catch(Exception ex){
+            throw AsyncFetch.toFetchException(url, ex);
+        }
+    }
 
-            var response = httpClient.send(request, BodyHandlers.ofString());
+    @Override
+    public CompletableFuture<HtmlDocument> sendAsync(FetchRequest request) {
+        var url = request.url();
+        try{
+            return resolveAsync(url)
+                .thenCompose(ignored -> {
+                    try{
+                        return withinDeadline(request, cancellable(request, httpClient.sendAsync(toHttpRequest(request), bodyHandler(request))));
+                    }catch(FetchException ex){
+                        return CompletableFuture.<HttpResponse<BoundedBodyHandler.Body>>failedFuture(ex);
+                    }
+                })
+                .thenCompose(response -> {
+                    try{
+                        return CompletableFuture.completedFuture(toHtmlDocument(url, response));
+                    }catch(FetchException ex){
+                        return CompletableFuture.<HtmlDocument>failedFuture(ex);
+                    }
+                })
+                .exceptionallyCompose(ex -> AsyncFetch.failed(url, ex));
+        }
+        catch(Exception ex){
+            return AsyncFetch.failed(url, ex);
+        }
+    }
 
-            // handle 429 Too Many Requests
-            if(response.statusCode() == 429){
-                throw new TooManyRequestsException(url, response.headers().map());
-            }
+    /**
+     * Resolves every distinct host and sends a HEAD request to its root, so that DNS lookup, TCP and TLS handshakes
+     * are done and the connection sits in the pool by the time the pages are fetched.
+     */
+    @Override
+    public CompletableFuture<Void> prewarm(Collection<URI> urls) {
+        var warmups = urls.stream()
+            .filter(url -> url.getHost() != null)
+            .map(BasicHttpClient::origin)
+            .distinct()
+            .map(origin -> resolveAsync(origin)
+                .thenCompose(ignored -> httpClient.sendAsync(headRequest(origin), BodyHandlers.discarding()))
+                .handle((response, ex) -> null))
+            .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(warmups);
+    }
 
-            if(response.statusCode() != 200) {
-                throw new HttpRetryException(
-                    String.format("Expecting status code 200 but server returned status code %d", response.statusCode()), 
-                    response.statusCode());
-            }
+    /**
+     * Returns the root of the URL's origin, e.g. https://en.wikipedia.org/ for any page of that site.
+     * @param url URL with a host
+     * @return origin root URL
+     */
+    static URI origin(URI url){
+        return URI.create(String.format("%s://%s/", url.getScheme(), url.getRawAuthority()));
+    }
 
-            System.out.println("Downloaded " + url);
+    /**
+     * Bounds the whole exchange, including reading the body, by the request deadline. At the deadline the exchange is
+     * aborted and the request fails with {@link DeadlineExceededException}.
+     */
+    private static <T> CompletableFuture<T> withinDeadline(FetchRequest request, CompletableFuture<T> exchange){
+        if(request.remaining().isEmpty()) return exchange;
+        var bounded = exchange.copy().orTimeout(Math.max(0, request.remainingNanos()), TimeUnit.NANOSECONDS);
+        return bounded.exceptionallyCompose(ex -> {
+            if(!(AsyncFetch.unwrap(ex) instanceof TimeoutException)) return CompletableFuture.failedFuture(ex);
+            exchange.cancel(true);
+            return CompletableFuture.failedFuture(new DeadlineExceededException(request.url()));
+        });
+    }
 
-            return HtmlDocument.of(url, response.body());
+    private static HtmlDocument await(FetchRequest request, CompletableFuture<HtmlDocument> download) throws FetchException {
+        try{
+            return download.get();
+        }catch(InterruptedException ex){
+            download.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new FetchException(request.url(), ex);
+        }catch(ExecutionException ex){
+            throw AsyncFetch.toFetchException(request.url(), ex);
         }
-        catch(Exception ex){
-            throw new FetchException(url, ex);
+    }
+
+    /**
+     * Aborts the exchange once the request is cancelled, so that an abandoned response does not hold the connection.
+     * A request that is already cancelled is aborted right away.
+     */
+    private static <T> CompletableFuture<T> cancellable(FetchRequest request, CompletableFuture<T> exchange){
+        request.cancellation().ifPresent(signal -> signal.whenComplete((ignored, ex) -> exchange.cancel(true)));
+        return exchange;
+    }
+
+    private CompletableFuture<?> resolveAsync(URI url){
+        if(resolver == null || url.getHost() == null) return CompletableFuture.completedFuture(null);
+        return resolver.resolveAsync(url.getHost());
+    }
+
+    private HttpRequest headRequest(URI origin){
+        var builder = HttpRequest.newBuilder()
+            .uri(origin)
+            .method("HEAD", HttpRequest.BodyPublishers.noBody())
+            .timeout(requestTimeout);
+        var version = hostVersions.get(PerHostRateLimit.host(origin));
+        if(version != null) builder.version(version);
+        return builder.build();
+    }
+
+    private HttpResponse.BodyHandler<BoundedBodyHandler.Body> bodyHandler(FetchRequest request){
+        return request.linkConsumer()
+            .map(onLink -> bodyHandler.scanningLinks(request.url(), onLink))
+            .orElse(bodyHandler);
+    }
+
+    /**
+     * The request timeout is shrunk to the time left until the request deadline, if that is shorter.
+     * A request that was cancelled before it could be sent, e.g. a hedge that lost the race, fails without being sent.
+     */
+    private HttpRequest toHttpRequest(FetchRequest request) throws FetchException {
+        request.checkDeadline(0);
+        if(request.cancellation().map(CompletableFuture::isDone).orElse(false)){
+            throw new FetchException(request.url(), new CancellationException("request was cancelled before it was sent"));
+        }
+        var timeout = request.remainingNanos() < requestTimeout.toNanos()
+            ? Duration.ofNanos(request.remainingNanos())
+            : requestTimeout;
+        var builder = HttpRequest.newBuilder()
+            .uri(request.url())
+            .timeout(timeout);
+        var version = hostVersions.get(PerHostRateLimit.host(request.url()));
+        if(version != null) builder.version(version);
+        if(request.headers().keySet().stream().noneMatch("Accept-Encoding"::equalsIgnoreCase)){
+            builder.header("Accept-Encoding", ContentDecoder.ACCEPT_ENCODING);
+        }
+        request.headers().forEach(builder::header);
+        return builder.build();
+    }
+
+    private static HtmlDocument toHtmlDocument(URI url, HttpResponse<BoundedBodyHandler.Body> response) throws FetchException {
+        // handle 429 Too Many Requests
+        if(response.statusCode() == 429){
+            throw new TooManyRequestsException(url, response.headers().map());
+        }
+
+        // handle 304 Not Modified in response to a conditional request
+        if(response.statusCode() == 304){
+            throw new NotModifiedException(url);
+        }
+
+        if(response.statusCode() != 200) {
+            throw new FetchException(url, new HttpRetryException(
+                String.format("Expecting status code 200 but server returned status code %d", response.statusCode()), 
+                response.statusCode()));
         }
+
+        if(!BoundedBodyHandler.isSupported(response.headers())){
+            throw new UnsupportedContentTypeException(url, BoundedBodyHandler.mediaType(response.headers()).orElse(""));
+        }
+
+        if(!BoundedBodyHandler.isSupportedEncoding(response.headers())){
+            throw new UnsupportedContentEncodingException(url, response.headers().firstValue("Content-Encoding").orElse(""));
+        }
+
+        return HtmlDocument.Builder()
+            .withUrl(url)
+            .withContent(response.body().content(), response.body().charset())
+            .withTruncated(response.body().truncated())
+            .withTransferSize(response.body().encodedSize())
+            .withValidators(
+                response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null))
+            .build();
     }
 }
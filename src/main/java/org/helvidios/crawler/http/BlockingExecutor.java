@@ -0,0 +1,43 @@
+package org.helvidios.crawler.http;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide pool for the blocking parts of asynchronous paths, such as reading a stored page or resolving a host,
+ * used when no executor is configured. Work that may block must not run on the scheduler thread of {@link Delays},
+ * which only completes futures, nor on the threads of the JDK client.
+ */
+final class BlockingExecutor {
+
+    /**
+     * Max number of threads. Further tasks wait in a queue.
+     */
+    static final int MAX_THREADS = 64;
+
+    private BlockingExecutor(){}
+
+    private static class Shared {
+        static final ThreadPoolExecutor executor = create();
+
+        private static ThreadPoolExecutor create(){
+            var executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                var thread = new Thread(runnable, "helvidios-blocking");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.allowCoreThreadTimeOut(true);
+            return executor;
+        }
+    }
+
+    /**
+     * Returns the shared executor. Its daemon threads are created on demand and expire when idle.
+     * @return shared executor
+     */
+    static Executor shared(){
+        return Shared.executor;
+    }
+}
@@ -0,0 +1,312 @@
+package org.helvidios.crawler.http;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodySubscriber;
+import java.net.http.HttpResponse.BodySubscribers;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Consumer;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.helvidios.crawler.model.LinkScanner;
+
+/**
+ * A {@link BodyHandler} that streams the response body into memory up to a fixed size.
+ * Bodies of non-200 responses and of responses whose Content-Type is not textual are discarded without being buffered.
+ * A gzip or deflate Content-Encoding is decoded while the body streams in, and the size limit applies to decoded bytes.
+ * Once the size limit is reached the stream is cancelled, so a huge or endless response cannot exhaust the heap.
+ * A handler created by {@link #scanningLinks(URI, Consumer)} also passes the links of the page to a consumer while the
+ * body streams in.
+ */
+class BoundedBodyHandler implements BodyHandler<BoundedBodyHandler.Body> {
+    private final long maxBodySize;
+
+    /**
+     * Response body read by {@link BoundedBodyHandler}. The body is kept as raw bytes and is not decoded to text.
+     * @param content raw body with any Content-Encoding removed, empty if the body was discarded
+     * @param charset charset declared in Content-Type or in a meta tag, UTF-8 if none was found
+     * @param truncated true if the body was cut off at the size limit
+     * @param encodedSize number of body bytes received before Content-Encoding was removed
+     */
+    record Body(byte[] content, Charset charset, boolean truncated, long encodedSize){
+        static final Body EMPTY = new Body(new byte[0], StandardCharsets.UTF_8, false, 0);
+    }
+
+    /**
+     * Number of leading body bytes searched for a meta charset declaration.
+     */
+    private static final int CHARSET_SNIFF_LENGTH = 1024;
+
+    /**
+     * Largest initial buffer. A bigger body grows the buffer on demand, so a server cannot make the crawler allocate
+     * up to the size limit just by announcing a huge Content-Length.
+     */
+    static final int MAX_INITIAL_CAPACITY = 64 * 1024;
+
+    /**
+     * Largest array the JVM can reliably allocate.
+     */
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    /**
+     * Creates a new instance of {@link BoundedBodyHandler}
+     * @param maxBodySize max number of body bytes to read
+     * @throws IllegalArgumentException if maxBodySize < 1
+     */
+    BoundedBodyHandler(long maxBodySize){
+        if(maxBodySize < 1) throw new IllegalArgumentException("maxBodySize must be greater than zero");
+        this.maxBodySize = Math.min(maxBodySize, MAX_ARRAY_SIZE);
+    }
+
+    @Override
+    public BodySubscriber<Body> apply(ResponseInfo responseInfo) {
+        return apply(responseInfo, null, null);
+    }
+
+    /**
+     * Returns a handler that also scans the body for links as it streams in, see {@link LinkScanner}.
+     * If the body has no charset in Content-Type, scanning starts once the first bytes have been searched for a meta
+     * charset declaration. An exception thrown by the consumer fails the download.
+     * @param url URL of the page, against which relative links are resolved
+     * @param onLink consumer of links
+     * @return {@link BodyHandler}
+     */
+    BodyHandler<Body> scanningLinks(URI url, Consumer<URI> onLink){
+        Objects.requireNonNull(url, "url must not be null");
+        Objects.requireNonNull(onLink, "onLink must not be null");
+        return responseInfo -> apply(responseInfo, url, onLink);
+    }
+
+    private BodySubscriber<Body> apply(ResponseInfo responseInfo, URI url, Consumer<URI> onLink) {
+        var headers = responseInfo.headers();
+        if(responseInfo.statusCode() != 200 || !isSupported(headers) || !isSupportedEncoding(headers)){
+            return BodySubscribers.replacing(Body.EMPTY);
+        }
+        var contentLength = headers.firstValueAsLong("Content-Length").orElse(-1);
+        var decoder = headers.firstValue("Content-Encoding").flatMap(ContentDecoder::forEncoding);
+        return new Subscriber(maxBodySize, contentLength, charset(headers), decoder.orElse(null), url, onLink);
+    }
+
+    /**
+     * Returns true if the response body is not encoded or uses an encoding that can be decoded.
+     * @param headers response headers
+     * @return true if the body can be read
+     */
+    static boolean isSupportedEncoding(HttpHeaders headers){
+        return ContentDecoder.isSupported(headers.firstValue("Content-Encoding").orElse(null));
+    }
+
+    /**
+     * Returns true if the response declares a textual Content-Type that may contain HTML.
+     * Responses without a Content-Type are accepted.
+     * @param headers response headers
+     * @return true if the body should be read
+     */
+    static boolean isSupported(HttpHeaders headers){
+        var contentType = mediaType(headers);
+        return contentType.isEmpty()
+            || contentType.get().startsWith("text/")
+            || contentType.get().contains("html")
+            || contentType.get().contains("xml");
+    }
+
+    /**
+     * Returns the media type without parameters, e.g. text/html for "text/html; charset=UTF-8".
+     */
+    static Optional<String> mediaType(HttpHeaders headers){
+        return headers.firstValue("Content-Type")
+            .map(value -> value.split(";", 2)[0].trim().toLowerCase(Locale.ROOT))
+            .filter(value -> !value.isEmpty());
+    }
+
+    /**
+     * Returns the charset declared in Content-Type, if any.
+     */
+    private static Optional<Charset> charset(HttpHeaders headers){
+        return headers.firstValue("Content-Type").flatMap(BoundedBodyHandler::charsetParameter);
+    }
+
+    /**
+     * Extracts the value of a charset=... parameter, e.g. from "text/html; charset=UTF-8" or a meta tag.
+     */
+    private static Optional<Charset> charsetParameter(String value){
+        var lowerCase = value.toLowerCase(Locale.ROOT);
+        var start = lowerCase.indexOf("charset=");
+        if(start < 0) return Optional.empty();
+
+        start += "charset=".length();
+        while(start < value.length() && (value.charAt(start) == '"' || value.charAt(start) == '\'')) start++;
+        var end = start;
+        while(end < value.length() && isCharsetNameChar(value.charAt(end))) end++;
+
+        try{
+            return Optional.of(Charset.forName(value.substring(start, end)));
+        }catch(IllegalArgumentException ex){
+            return Optional.empty();
+        }
+    }
+
+    private static boolean isCharsetNameChar(char c){
+        return Character.isLetterOrDigit(c) || c == '-' || c == '_' || c == '.' || c == ':';
+    }
+
+    /**
+     * Looks for {@code <meta charset="...">} or {@code <meta http-equiv="Content-Type" content="...; charset=...">}
+     * in the first bytes of the body. Both forms are ASCII, so the bytes can be inspected without decoding them first.
+     */
+    static Optional<Charset> sniffCharset(byte[] body, int length){
+        var prefix = new String(body, 0, Math.min(length, CHARSET_SNIFF_LENGTH), StandardCharsets.ISO_8859_1);
+        var meta = prefix.toLowerCase(Locale.ROOT).indexOf("<meta");
+        while(meta >= 0){
+            var end = prefix.indexOf('>', meta);
+            if(end < 0) break;
+            var charset = charsetParameter(prefix.substring(meta, end));
+            if(charset.isPresent()) return charset;
+            meta = prefix.toLowerCase(Locale.ROOT).indexOf("<meta", end);
+        }
+        return Optional.empty();
+    }
+
+    private static class Subscriber implements BodySubscriber<Body> {
+        private final CompletableFuture<Body> result = new CompletableFuture<>();
+        private final long maxBodySize;
+        private final Optional<Charset> charset;
+        private final ContentDecoder decoder;
+        private final URI url;
+        private Consumer<URI> onLink;
+        private LinkScanner scanner;
+        private Flow.Subscription subscription;
+        private byte[] buffer;
+        private int size;
+        private long encodedSize;
+
+        Subscriber(long maxBodySize, long contentLength, Optional<Charset> charset, ContentDecoder decoder, URI url, Consumer<URI> onLink){
+            this.maxBodySize = maxBodySize;
+            this.charset = charset;
+            this.decoder = decoder;
+            this.url = url;
+            this.onLink = onLink;
+            // size the buffer exactly when a small length is known, so the body is never copied;
+            // Content-Length of an encoded body is the compressed size, which says little about the decoded size
+            var initialCapacity = contentLength < 0 || decoder != null ? 8192 : Math.min(contentLength, MAX_INITIAL_CAPACITY);
+            this.buffer = new byte[(int) Math.min(initialCapacity, maxBodySize)];
+        }
+
+        @Override
+        public CompletionStage<Body> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            if(result.isDone()) return;
+
+            try{
+                for(var item : items){
+                    encodedSize += item.remaining();
+                    var wantsMore = decoder == null ? write(item) : decoder.decode(item, this::write);
+                    if(!wantsMore){
+                        subscription.cancel();
+                        if(decoder != null) decoder.close();
+                        complete(true);
+                        return;
+                    }
+                }
+                scan(false);
+            }catch(IOException | RuntimeException ex){
+                subscription.cancel();
+                if(decoder != null) decoder.close();
+                result.completeExceptionally(ex);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if(decoder != null) decoder.close();
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if(result.isDone()) return;
+            try{
+                if(decoder != null) decoder.finish();
+                complete(false);
+            }catch(IOException | RuntimeException ex){
+                result.completeExceptionally(ex);
+            }
+        }
+
+        /**
+         * Appends bytes up to the size limit.
+         * @return false if the limit was reached and the rest of the body must be dropped
+         */
+        private boolean write(ByteBuffer item){
+            var length = (int) Math.min(item.remaining(), maxBodySize - size);
+            ensureCapacity(length);
+            item.get(buffer, size, length);
+            size += length;
+            return !item.hasRemaining();
+        }
+
+        private boolean write(byte[] bytes, int offset, int length){
+            var accepted = (int) Math.min(length, maxBodySize - size);
+            ensureCapacity(accepted);
+            System.arraycopy(bytes, offset, buffer, size, accepted);
+            size += accepted;
+            return accepted == length;
+        }
+
+        private void ensureCapacity(int length){
+            if(size + length > buffer.length){
+                var capacity = Math.max(size + length, (int) Math.min((long) buffer.length * 2, maxBodySize));
+                buffer = Arrays.copyOf(buffer, capacity);
+            }
+        }
+
+        /**
+         * Feeds the bytes received so far to the link scanner, if links are wanted. The scanner is created once the
+         * charset is known; pages in a charset it cannot scan are left to {@link HtmlDocument#urls()}.
+         * @param done true if no more bytes will arrive
+         */
+        private void scan(boolean done){
+            if(onLink == null) return;
+            if(scanner == null){
+                if(!done && charset.isEmpty() && size < CHARSET_SNIFF_LENGTH) return;
+                var detected = charset.or(() -> sniffCharset(buffer, size)).orElse(StandardCharsets.UTF_8);
+                if(!LinkScanner.supports(detected)){
+                    onLink = null;
+                    return;
+                }
+                scanner = new LinkScanner(url, detected, onLink);
+            }
+            scanner.feed(buffer, size);
+            if(done) scanner.finish();
+        }
+
+        private void complete(boolean truncated){
+            scan(true);
+            var content = size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+            var detected = charset.or(() -> sniffCharset(content, size)).orElse(StandardCharsets.UTF_8);
+            result.complete(new Body(content, detected, truncated, encodedSize));
+        }
+    }
+}
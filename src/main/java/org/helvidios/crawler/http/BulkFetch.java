@@ -0,0 +1,227 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Downloads a sequence of URLs through {@link HttpClient#fetchAsync(URI)} keeping at most a fixed number of requests
+ * in flight. A new request is started only when a previous one completes, so no thread is parked waiting for a slot
+ * and URLs are pulled from the source lazily. When results are streamed, a slot is freed only once the consumer takes
+ * the result, so at most that many results wait in memory however slowly they are consumed.
+ */
+final class BulkFetch {
+    private final HttpClient httpClient;
+    private final Iterator<URI> urls;
+    private final Consumer<FetchResult> onResult;
+    private final boolean releaseOnTake;
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private final AtomicInteger drainers = new AtomicInteger();
+    // serializes callbacks without locking onResult, which the caller may synchronize on for its own purposes
+    private final Object resultLock = new Object();
+    private int freeSlots;
+    private int inFlight;
+    private boolean exhausted;
+    private RuntimeException failure;
+    private volatile boolean cancelled;
+
+    private BulkFetch(HttpClient httpClient, Iterator<URI> urls, int maxConcurrency, Consumer<FetchResult> onResult, boolean releaseOnTake){
+        this.httpClient = httpClient;
+        this.urls = urls;
+        this.freeSlots = maxConcurrency;
+        this.onResult = onResult;
+        this.releaseOnTake = releaseOnTake;
+    }
+
+    /**
+     * Starts downloading URLs, delivering every result to {@code onResult} in completion order.
+     * The callback is never invoked concurrently. If it throws, no more URLs are started.
+     * @return future that completes once all URLs have been downloaded or {@link #cancel()} was called
+     */
+    static BulkFetch start(HttpClient httpClient, Iterator<URI> urls, int maxConcurrency, Consumer<FetchResult> onResult){
+        return start(httpClient, urls, maxConcurrency, onResult, false);
+    }
+
+    private static BulkFetch start(HttpClient httpClient, Iterator<URI> urls, int maxConcurrency, Consumer<FetchResult> onResult, boolean releaseOnTake){
+        Objects.requireNonNull(httpClient, "httpClient must not be null");
+        Objects.requireNonNull(urls, "urls must not be null");
+        Objects.requireNonNull(onResult, "onResult must not be null");
+        if(maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency must be greater than zero");
+
+        var bulkFetch = new BulkFetch(httpClient, urls, maxConcurrency, onResult, releaseOnTake);
+        bulkFetch.drain();
+        return bulkFetch;
+    }
+
+    /**
+     * Streams results in completion order. The returned stream blocks while waiting for the next result, and a new
+     * request is started only when a result is taken. Closing the stream stops starting new requests.
+     * If the source of URLs throws, the stream throws that exception after the last result.
+     */
+    static Stream<FetchResult> stream(HttpClient httpClient, Iterator<URI> urls, int maxConcurrency){
+        // holds at most maxConcurrency results, since a slot is freed only when its result is taken
+        final BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+        final Object end = new Object();
+        var bulkFetch = start(httpClient, urls, maxConcurrency, results::add, true);
+        bulkFetch.done().whenComplete((ignored, ex) -> results.add(ex == null ? end : ex));
+
+        var iterator = new Iterator<FetchResult>() {
+            private Object next;
+
+            @Override
+            public boolean hasNext() {
+                if(next == null){
+                    try{
+                        next = results.take();
+                    }catch(InterruptedException ex){
+                        Thread.currentThread().interrupt();
+                        bulkFetch.cancel();
+                        next = end;
+                    }
+                }
+                if(next instanceof RuntimeException ex){
+                    next = end;
+                    throw ex;
+                }
+                return next != end;
+            }
+
+            @Override
+            public FetchResult next() {
+                if(!hasNext()) throw new NoSuchElementException();
+                var result = (FetchResult) next;
+                next = null;
+                bulkFetch.release();
+                return result;
+            }
+        };
+
+        return StreamSupport
+            .stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .onClose(bulkFetch::cancel);
+    }
+
+    /**
+     * Returns future that completes once every started request has completed and no more URLs will be started.
+     * If the source of URLs or the result callback throws, no more URLs are started and the future fails with that
+     * exception once the requests in flight have completed.
+     */
+    CompletableFuture<Void> done(){
+        return done;
+    }
+
+    /**
+     * Stops starting new requests. Requests already in flight are allowed to complete.
+     */
+    void cancel(){
+        cancelled = true;
+        synchronized(this){
+            exhausted = true;
+            completeIfIdle();
+        }
+    }
+
+    /**
+     * Fills free slots with new downloads. Only one thread drains at a time; a completion that arrives while another
+     * thread is draining (including one completed synchronously by {@link #startNext()}) is picked up by that thread,
+     * so the call stack does not grow with the number of URLs.
+     */
+    private void drain(){
+        if(drainers.getAndIncrement() != 0) return;
+        do{
+            while(startNext()){}
+        }while(drainers.decrementAndGet() != 0);
+    }
+
+    /**
+     * Starts the next download if there is a free slot and a URL left.
+     * @return false if nothing was started
+     */
+    private boolean startNext(){
+        URI url;
+        synchronized(this){
+            if(freeSlots == 0) return false;
+            url = exhausted || cancelled ? null : nextUrl();
+            if(url == null){
+                exhausted = true;
+                completeIfIdle();
+                return false;
+            }
+            freeSlots--;
+            inFlight++;
+        }
+
+        CompletableFuture<FetchResult> result;
+        try{
+            result = httpClient.fetchAsync(url)
+                .handle((doc, ex) -> ex == null
+                    ? FetchResult.success(url, doc)
+                    : FetchResult.failure(url, AsyncFetch.toFetchException(url, ex)));
+        }catch(RuntimeException ex){
+            result = CompletableFuture.completedFuture(FetchResult.failure(url, AsyncFetch.toFetchException(url, ex)));
+        }
+        result.thenAccept(this::complete);
+        return true;
+    }
+
+    /**
+     * Returns the next URL, or null if there are no more URLs or the source failed.
+     */
+    private URI nextUrl(){
+        try{
+            return urls.hasNext() ? urls.next() : null;
+        }catch(RuntimeException ex){
+            failure = ex;
+            return null;
+        }
+    }
+
+    /**
+     * Completes {@link #done()} once no more URLs will be started and no request is in flight. Called with the lock held.
+     */
+    private void completeIfIdle(){
+        if(!exhausted || inFlight > 0) return;
+        if(failure == null) done.complete(null);
+        else done.completeExceptionally(failure);
+    }
+
+    private void complete(FetchResult result){
+        try{
+            synchronized(resultLock){
+                onResult.accept(result);
+            }
+        }catch(RuntimeException ex){
+            synchronized(this){
+                if(failure == null) failure = ex;
+                exhausted = true;
+            }
+        }finally{
+            synchronized(this){
+                inFlight--;
+                if(!releaseOnTake) freeSlots++;
+                completeIfIdle();
+            }
+            drain();
+        }
+    }
+
+    /**
+     * Frees the slot of a result taken from the stream.
+     */
+    private void release(){
+        synchronized(this){
+            freeSlots++;
+        }
+        drain();
+    }
+}
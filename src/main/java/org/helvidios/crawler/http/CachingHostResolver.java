@@ -0,0 +1,85 @@
+package org.helvidios.crawler.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link HostResolver} with a bounded cache of failed lookups, kept for {@code negativeTtl}, so that a dead domain
+ * fails immediately instead of paying the resolver timeout on every one of its URLs.
+ * Successful lookups are not cached here: the JDK client resolves hosts itself and cannot be given addresses, so it is
+ * the JVM-wide {@link InetAddress} cache, which the system resolver fills, that saves the JDK client a second lookup.
+ * Concurrent asynchronous lookups of the same host share a single resolution.
+ */
+class CachingHostResolver implements HostResolver {
+    private final HostResolver resolver;
+    private final Executor executor;
+    private final Cache<String, UnknownHostException> failed;
+    private final ConcurrentMap<String, CompletableFuture<InetAddress[]>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance of {@link CachingHostResolver}
+     * @param resolver resolver to which lookups are delegated
+     * @param negativeTtl how long a failed lookup is kept
+     * @param maxHosts max number of failed hosts kept in cache
+     * @param executor executor that runs blocking lookups for {@link #resolveAsync(String)}
+     */
+    CachingHostResolver(HostResolver resolver, Duration negativeTtl, long maxHosts, Executor executor){
+        this.resolver = Objects.requireNonNull(resolver, "resolver must not be null");
+        this.executor = Objects.requireNonNull(executor, "executor must not be null");
+        this.failed = CacheBuilder.newBuilder()
+            .maximumSize(maxHosts)
+            .expireAfterWrite(Objects.requireNonNull(negativeTtl, "negativeTtl must not be null"))
+            .build();
+    }
+
+    @Override
+    public InetAddress[] resolve(String host) throws UnknownHostException {
+        var failure = failed.getIfPresent(host);
+        if(failure != null) throw new UnknownHostException(failure.getMessage());
+
+        try{
+            return resolver.resolve(host);
+        }catch(UnknownHostException ex){
+            failed.put(host, ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Resolves a host without blocking the calling thread. A host that recently failed to resolve fails right away.
+     * @param host host name
+     * @return future that completes with addresses of the host, or fails with {@link UnknownHostException}
+     */
+    CompletableFuture<InetAddress[]> resolveAsync(String host){
+        var failure = failed.getIfPresent(host);
+        if(failure != null) return CompletableFuture.failedFuture(new UnknownHostException(failure.getMessage()));
+
+        var lookup = new CompletableFuture<InetAddress[]>();
+        var existing = inFlight.putIfAbsent(host, lookup);
+        if(existing != null) return existing;
+
+        try{
+            executor.execute(() -> {
+                try{
+                    lookup.complete(resolve(host));
+                }catch(Throwable t){
+                    lookup.completeExceptionally(t);
+                }finally{
+                    inFlight.remove(host, lookup);
+                }
+            });
+        }catch(RuntimeException ex){
+            inFlight.remove(host, lookup);
+            lookup.completeExceptionally(ex);
+        }
+        return lookup;
+    }
+}
@@ -0,0 +1,171 @@
+package org.helvidios.crawler.http;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Streaming decoder of a gzip or deflate Content-Encoding. Chunks are inflated as they arrive from the network, so
+ * the compressed body is never buffered as a whole. Brotli is not supported because the JDK has no decoder for it.
+ * Only the first member of a multi-member gzip body is decoded and the gzip trailer is not verified.
+ */
+class ContentDecoder {
+    /**
+     * Content-Encoding values sent in Accept-Encoding, in order of preference.
+     */
+    static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2, FEXTRA = 4, FNAME = 8, FCOMMENT = 16;
+
+    /**
+     * Receives decoded bytes.
+     */
+    @FunctionalInterface
+    interface Sink {
+        /**
+         * @return false if no more bytes are wanted
+         */
+        boolean write(byte[] bytes, int offset, int length);
+    }
+
+    private final boolean gzip;
+    private final byte[] output = new byte[16 * 1024];
+    private final ByteArrayOutputStream header = new ByteArrayOutputStream();
+    private Inflater inflater;
+
+    private ContentDecoder(boolean gzip){
+        this.gzip = gzip;
+    }
+
+    /**
+     * Returns a decoder for a Content-Encoding, or empty if the encoding is identity or not supported.
+     * @param contentEncoding Content-Encoding header value
+     * @return {@link ContentDecoder}
+     */
+    static Optional<ContentDecoder> forEncoding(String contentEncoding){
+        return switch(normalize(contentEncoding)){
+            case "gzip", "x-gzip" -> Optional.of(new ContentDecoder(true));
+            case "deflate" -> Optional.of(new ContentDecoder(false));
+            default -> Optional.empty();
+        };
+    }
+
+    /**
+     * Returns true if a body with the given Content-Encoding can be read.
+     * @param contentEncoding Content-Encoding header value
+     * @return true for identity, gzip and deflate
+     */
+    static boolean isSupported(String contentEncoding){
+        var encoding = normalize(contentEncoding);
+        return encoding.isEmpty() || encoding.equals("identity") || forEncoding(encoding).isPresent();
+    }
+
+    private static String normalize(String contentEncoding){
+        return contentEncoding == null ? "" : contentEncoding.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Inflates a chunk of the encoded body into the sink.
+     * @param chunk encoded bytes, consumed by this call
+     * @param sink receiver of decoded bytes
+     * @return false if the sink wants no more bytes
+     * @throws ZipException if the body is not valid gzip or deflate data
+     */
+    boolean decode(ByteBuffer chunk, Sink sink) throws ZipException {
+        if(inflater == null){
+            // the header is tiny, so it is collected into a separate buffer until it is complete
+            var bytes = new byte[chunk.remaining()];
+            chunk.get(bytes);
+            header.write(bytes, 0, bytes.length);
+            var buffered = header.toByteArray();
+            var headerLength = gzip ? gzipHeaderLength(buffered) : deflateHeaderLength(buffered);
+            if(headerLength < 0) return true;
+            header.reset();
+            return inflate(ByteBuffer.wrap(buffered, headerLength, buffered.length - headerLength), sink);
+        }
+        return inflate(chunk, sink);
+    }
+
+    /**
+     * Verifies that the encoded body was complete and releases the inflater.
+     * @throws ZipException if the body ended in the middle of compressed data
+     */
+    void finish() throws ZipException {
+        var complete = inflater != null && inflater.finished();
+        close();
+        if(!complete) throw new ZipException("Unexpected end of compressed body");
+    }
+
+    /**
+     * Releases the inflater without checking the body.
+     */
+    void close(){
+        if(inflater != null) inflater.end();
+    }
+
+    private boolean inflate(ByteBuffer input, Sink sink) throws ZipException {
+        if(inflater.finished()) return true;
+        inflater.setInput(input);
+        try{
+            while(!inflater.finished() && !inflater.needsInput()){
+                var length = inflater.inflate(output);
+                if(length == 0 && inflater.needsDictionary()) throw new ZipException("Preset dictionary is not supported");
+                if(length > 0 && !sink.write(output, 0, length)) return false;
+            }
+            return true;
+        }catch(DataFormatException ex){
+            throw new ZipException(ex.getMessage());
+        }
+    }
+
+    /**
+     * Returns the length of a gzip header (RFC 1952) at the start of the buffer and creates a raw inflater for the data
+     * following it, or -1 if the buffer does not hold the whole header yet.
+     */
+    private int gzipHeaderLength(byte[] buffer) throws ZipException {
+        if(buffer.length < 10) return -1;
+        if(unsignedShort(buffer, 0) != GZIP_MAGIC || buffer[2] != 8) throw new ZipException("Not in gzip format");
+
+        var flags = buffer[3] & 0xff;
+        var position = 10;
+        if((flags & FEXTRA) != 0){
+            if(buffer.length < position + 2) return -1;
+            position += 2 + unsignedShort(buffer, position);
+        }
+        if((flags & FNAME) != 0) position = skipZeroTerminated(buffer, position);
+        if(position >= 0 && (flags & FCOMMENT) != 0) position = skipZeroTerminated(buffer, position);
+        if(position >= 0 && (flags & FHCRC) != 0) position += 2;
+        if(position < 0 || position > buffer.length) return -1;
+
+        inflater = new Inflater(true);
+        return position;
+    }
+
+    /**
+     * HTTP deflate is meant to be zlib-wrapped (RFC 1950), but some servers send raw deflate data, so the first two
+     * bytes are checked for a valid zlib header before choosing the inflater.
+     */
+    private int deflateHeaderLength(byte[] buffer){
+        if(buffer.length < 2) return -1;
+        var cmf = buffer[0] & 0xff;
+        var zlib = (cmf & 0x0f) == 8 && ((cmf << 8) | (buffer[1] & 0xff)) % 31 == 0;
+        inflater = new Inflater(!zlib);
+        return 0;
+    }
+
+    private static int skipZeroTerminated(byte[] buffer, int position){
+        for(int i = position; i < buffer.length; i++){
+            if(buffer[i] == 0) return i + 1;
+        }
+        return -1;
+    }
+
+    private static int unsignedShort(byte[] buffer, int position){
+        return (buffer[position] & 0xff) | ((buffer[position + 1] & 0xff) << 8);
+    }
+}
@@ -0,0 +1,14 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+
+/**
+ * Indicates that the time budget of a request ran out, or would run out while waiting for a rate limit permit or
+ * a retry backoff, before the page was downloaded. Such a request is not retried.
+ */
+public class DeadlineExceededException extends FetchException {
+
+    DeadlineExceededException(URI url) {
+        super(url, null);
+    }
+}
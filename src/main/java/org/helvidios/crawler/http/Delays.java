@@ -0,0 +1,58 @@
+package org.helvidios.crawler.http;
+
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking waits for the asynchronous paths of {@link HttpClient} decorators.
+ * A wait is a task on a {@link ScheduledExecutorService} that completes a future, so no thread is parked while waiting.
+ */
+final class Delays {
+
+    private Delays(){}
+
+    private static class Shared {
+        static final ScheduledExecutorService scheduler = create();
+
+        private static ScheduledExecutorService create(){
+            var scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+                var thread = new Thread(runnable, "helvidios-http-scheduler");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.setRemoveOnCancelPolicy(true);
+            return scheduler;
+        }
+    }
+
+    /**
+     * Returns the process-wide scheduler used when none is configured. Its single daemon thread only completes futures,
+     * and the work that follows a wait runs on it, so that work must not block. Decorators whose asynchronous path may
+     * block, such as revalidation reading a stored page, hand it off to an executor, see {@link BlockingExecutor}.
+     * @return shared scheduler
+     */
+    static ScheduledExecutorService sharedScheduler(){
+        return Shared.scheduler;
+    }
+
+    /**
+     * Returns a future that completes after the given delay. Cancelling the future removes the scheduled task.
+     * @param scheduler scheduler that runs the timer
+     * @param nanos delay in nanoseconds
+     * @return future that completes after the delay
+     */
+    static CompletableFuture<Void> after(ScheduledExecutorService scheduler, long nanos){
+        Objects.requireNonNull(scheduler, "scheduler must not be null");
+        if(nanos <= 0) return CompletableFuture.completedFuture(null);
+
+        var delay = new CompletableFuture<Void>();
+        var task = scheduler.schedule(() -> delay.complete(null), nanos, TimeUnit.NANOSECONDS);
+        delay.whenComplete((ignored, ex) -> {
+            if(delay.isCancelled()) task.cancel(false);
+        });
+        return delay;
+    }
+}
@@ -0,0 +1,13 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+
+/**
+ * Indicates that the request was not sent because the host's robots.txt does not allow the crawler to fetch the URL.
+ */
+public class DisallowedByRobotsException extends FetchException {
+
+    DisallowedByRobotsException(URI url) {
+        super(url, null);
+    }
+}
@@ -0,0 +1,56 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.util.Objects;
+import java.util.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.helvidios.crawler.model.Url;
+import org.helvidios.crawler.storage.DocumentDb;
+import org.helvidios.crawler.storage.DocumentDbException;
+
+/**
+ * Keeps small validator records in memory and reads page content back from a {@link DocumentDb} on a 304 Not Modified.
+ */
+class DocumentDbValidatorStore implements ValidatorStore {
+    private final DocumentDb docDb;
+    private final Cache<Url, Validators> validators;
+
+    private record Validators(long docId, String etag, String lastModified){}
+
+    DocumentDbValidatorStore(DocumentDb docDb, long maxDocuments){
+        this.docDb = Objects.requireNonNull(docDb, "docDb must not be null");
+        this.validators = CacheBuilder.newBuilder()
+            .maximumSize(maxDocuments)
+            .build();
+    }
+
+    @Override
+    public Optional<HtmlDocument> get(URI url) {
+        var entry = validators.getIfPresent(Url.of(url));
+        if(entry == null) return Optional.empty();
+
+        try{
+            var doc = docDb.get(entry.docId());
+            if(doc == null) return Optional.empty();
+            return Optional.of(HtmlDocument.Builder()
+                .withId(doc.docId())
+                .withUrl(doc.url())
+                .withContent(doc.content())
+                .withValidators(entry.etag(), entry.lastModified())
+                .build());
+        }catch(DocumentDbException ex){
+            // not stored (yet) or storage unavailable, the page will be downloaded in full
+            validators.invalidate(Url.of(url));
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void put(HtmlDocument doc) {
+        Objects.requireNonNull(doc, "doc must not be null");
+        if(doc.etag().isEmpty() && doc.lastModified().isEmpty()) return;
+        validators.put(Url.of(doc.url()), new Validators(doc.docId(), doc.etag().orElse(null), doc.lastModified().orElse(null)));
+    }
+}
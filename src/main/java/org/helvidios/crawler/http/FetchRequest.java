@@ -0,0 +1,211 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import org.helvidios.crawler.model.HtmlDocument;
+
+/**
+ * Describes a single page download: the URL, any extra request headers, an optional deadline and an optional consumer
+ * of links found while the page downloads.
+ * The deadline bounds the whole download, including rate limit waits, retries and their backoff.
+ * Instances are immutable; {@code with*} methods return a modified copy, so decorators can
+ * enrich a request on its way down to {@link BasicHttpClient} without affecting the caller.
+ */
+public final class FetchRequest {
+    private final URI url;
+    private final Map<String, String> headers;
+    private final boolean hasDeadline;
+    private final long deadlineNanos;
+    private final CompletableFuture<Void> cancellation;
+    private final DistinctLinks onLink;
+
+    private FetchRequest(URI url, Map<String, String> headers, boolean hasDeadline, long deadlineNanos, CompletableFuture<Void> cancellation, DistinctLinks onLink){
+        this.url = Objects.requireNonNull(url, "url must not be null");
+        this.headers = headers;
+        this.hasDeadline = hasDeadline;
+        this.deadlineNanos = deadlineNanos;
+        this.cancellation = cancellation;
+        this.onLink = onLink;
+    }
+
+    /**
+     * Creates a plain GET request for a URL.
+     * @param url URL from which the page will be fetched
+     * @return {@link FetchRequest}
+     */
+    public static FetchRequest of(URI url){
+        return new FetchRequest(url, Collections.emptyMap(), false, 0, null, null);
+    }
+
+    /**
+     * Returns URL from which the page will be fetched
+     * @return URL
+     */
+    public URI url(){
+        return url;
+    }
+
+    /**
+     * Returns extra headers to send with the request
+     * @return unmodifiable map of header names to values
+     */
+    public Map<String, String> headers(){
+        return headers;
+    }
+
+    /**
+     * Returns a copy of this request with an extra header. An existing header with the same name is replaced.
+     * @param name header name
+     * @param value header value
+     * @return {@link FetchRequest}
+     */
+    public FetchRequest withHeader(String name, String value){
+        Objects.requireNonNull(name, "name must not be null");
+        Objects.requireNonNull(value, "value must not be null");
+        var copy = new LinkedHashMap<>(headers);
+        copy.put(name, value);
+        return new FetchRequest(url, Collections.unmodifiableMap(copy), hasDeadline, deadlineNanos, cancellation, onLink);
+    }
+
+    /**
+     * Returns a copy of this request that must complete within the given time from now.
+     * An earlier deadline that is already set is kept.
+     * @param timeout time budget for the whole download
+     * @return {@link FetchRequest}
+     */
+    public FetchRequest withTimeout(Duration timeout){
+        Objects.requireNonNull(timeout, "timeout must not be null");
+        var deadline = System.nanoTime() + saturatedNanos(timeout);
+        if(hasDeadline && deadline - deadlineNanos >= 0) return this;
+        return new FetchRequest(url, headers, true, deadline, cancellation, onLink);
+    }
+
+    /**
+     * Returns a copy of this request that must complete by the given instant.
+     * An earlier deadline that is already set is kept.
+     * @param deadline point in time by which the download must complete
+     * @return {@link FetchRequest}
+     */
+    public FetchRequest withDeadline(Instant deadline){
+        Objects.requireNonNull(deadline, "deadline must not be null");
+        return withTimeout(Duration.between(Instant.now(), deadline));
+    }
+
+    /**
+     * Returns time left until the deadline, if one is set. The duration is negative once the deadline has passed.
+     * @return remaining time budget
+     */
+    public Optional<Duration> remaining(){
+        return hasDeadline ? Optional.of(Duration.ofNanos(remainingNanos())) : Optional.empty();
+    }
+
+    /**
+     * Returns a copy of this request that reports the links of the page while it downloads: the body is scanned as it
+     * arrives and every distinct absolute http(s) {@code <a href>} link is passed to the consumer, usually well before
+     * the returned {@link HtmlDocument} is available. Links found by retries or hedged attempts of the same request are
+     * reported only once, and the consumer is never called concurrently. Pages in charsets that do not encode ASCII as
+     * single bytes are not scanned while they download; their links are only available from {@link HtmlDocument#urls()}.
+     * @param onLink consumer of links, called on the thread that receives the response body
+     * @return {@link FetchRequest}
+     */
+    public FetchRequest withLinkConsumer(Consumer<URI> onLink){
+        Objects.requireNonNull(onLink, "onLink must not be null");
+        return new FetchRequest(url, headers, hasDeadline, deadlineNanos, cancellation, new DistinctLinks(onLink));
+    }
+
+    /**
+     * Returns the consumer of links found while the page downloads, if one is set.
+     */
+    Optional<Consumer<URI>> linkConsumer(){
+        return Optional.ofNullable(onLink);
+    }
+
+    /**
+     * Returns a copy of this request that is abandoned once the given signal completes: {@link BasicHttpClient} does not
+     * send it any more and aborts the exchange if it is already in flight.
+     * @param cancellation signal that completes when the response is no longer needed
+     * @return {@link FetchRequest}
+     */
+    FetchRequest withCancellation(CompletableFuture<Void> cancellation){
+        return new FetchRequest(url, headers, hasDeadline, deadlineNanos, Objects.requireNonNull(cancellation, "cancellation must not be null"), onLink);
+    }
+
+    /**
+     * Returns the signal that completes when the response is no longer needed, if one is set.
+     */
+    Optional<CompletableFuture<Void>> cancellation(){
+        return Optional.ofNullable(cancellation);
+    }
+
+    /**
+     * Returns nanoseconds left until the deadline, or {@link Long#MAX_VALUE} if there is no deadline.
+     */
+    long remainingNanos(){
+        return hasDeadline ? deadlineNanos - System.nanoTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Fails if the deadline has passed or would pass before a wait of the given length is over.
+     * @param waitNanos time the caller is about to wait
+     * @throws DeadlineExceededException if the wait would exceed the deadline
+     */
+    void checkDeadline(long waitNanos) throws DeadlineExceededException {
+        if(hasDeadline && remainingNanos() - Math.max(0, waitNanos) <= 0) throw new DeadlineExceededException(url);
+    }
+
+    private static long saturatedNanos(Duration duration){
+        try{
+            return duration.toNanos();
+        }catch(ArithmeticException ex){
+            return duration.isNegative() ? Long.MIN_VALUE / 2 : Long.MAX_VALUE / 2;
+        }
+    }
+
+    /**
+     * Passes on every link once, whichever attempt of the request found it.
+     */
+    private static final class DistinctLinks implements Consumer<URI> {
+        private final Consumer<URI> onLink;
+        private final Set<URI> seen = new HashSet<>();
+
+        DistinctLinks(Consumer<URI> onLink){
+            this.onLink = onLink;
+        }
+
+        @Override
+        public synchronized void accept(URI link) {
+            if(seen.add(link)) onLink.accept(link);
+        }
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof FetchRequest other
+            && url.equals(other.url)
+            && headers.equals(other.headers)
+            && hasDeadline == other.hasDeadline
+            && deadlineNanos == other.deadlineNanos
+            && cancellation == other.cancellation
+            && onLink == other.onLink;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(url, headers, hasDeadline, deadlineNanos, System.identityHashCode(cancellation), System.identityHashCode(onLink));
+    }
+
+    @Override
+    public String toString() {
+        return headers.isEmpty() ? url.toString() : String.format("%s %s", url, headers);
+    }
+}
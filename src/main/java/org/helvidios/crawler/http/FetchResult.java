@@ -0,0 +1,66 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.util.Objects;
+import java.util.Optional;
+import org.helvidios.crawler.model.HtmlDocument;
+
+/**
+ * Outcome of a single download in a bulk fetch: either a downloaded document or the {@link FetchException} that prevented it.
+ */
+public final class FetchResult {
+    private final URI url;
+    private final HtmlDocument document;
+    private final FetchException error;
+
+    private FetchResult(URI url, HtmlDocument document, FetchException error){
+        this.url = Objects.requireNonNull(url, "url must not be null");
+        this.document = document;
+        this.error = error;
+    }
+
+    static FetchResult success(URI url, HtmlDocument document){
+        return new FetchResult(url, Objects.requireNonNull(document, "document must not be null"), null);
+    }
+
+    static FetchResult failure(URI url, FetchException error){
+        return new FetchResult(url, null, Objects.requireNonNull(error, "error must not be null"));
+    }
+
+    /**
+     * Returns URL that was requested.
+     * @return URL
+     */
+    public URI url(){
+        return url;
+    }
+
+    /**
+     * Returns true if the page was downloaded.
+     * @return true if {@link #document()} is present
+     */
+    public boolean isSuccess(){
+        return document != null;
+    }
+
+    /**
+     * Returns downloaded document, if the download succeeded.
+     * @return downloaded HTML document
+     */
+    public Optional<HtmlDocument> document(){
+        return Optional.ofNullable(document);
+    }
+
+    /**
+     * Returns the failure, if the download failed.
+     * @return {@link FetchException}
+     */
+    public Optional<FetchException> error(){
+        return Optional.ofNullable(error);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[%s] %s", url, isSuccess() ? "OK" : error.getCause());
+    }
+}
@@ -0,0 +1,42 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Tracks hosts that asked the client to back off with 429 Too Many Requests.
+ * Every host has its own deadline, so requests to other hosts keep flowing while one host is backed off.
+ */
+class HostBackoff {
+    private final ConcurrentMap<String, Long> deadlines = new ConcurrentHashMap<>();
+
+    /**
+     * Backs off the host of the given URL. An existing back-off is only ever extended, never shortened.
+     * @param url URL whose host responded with 429
+     * @param duration how long to hold back requests to the host
+     */
+    void backOff(URI url, Duration duration){
+        var deadline = System.nanoTime() + duration.toNanos();
+        deadlines.merge(PerHostRateLimit.host(url), deadline, (current, requested) -> current - requested > 0 ? current : requested);
+    }
+
+    /**
+     * Returns how long a request to the given URL has to wait before it may be sent.
+     * @param url URL that is about to be fetched
+     * @return remaining back-off in nanoseconds, zero if the host is not backed off
+     */
+    long remainingNanos(URI url){
+        var host = PerHostRateLimit.host(url);
+        var deadline = deadlines.get(host);
+        if(deadline == null) return 0;
+
+        var remaining = deadline - System.nanoTime();
+        if(remaining <= 0){
+            deadlines.remove(host, deadline);
+            return 0;
+        }
+        return remaining;
+    }
+}
@@ -0,0 +1,27 @@
+package org.helvidios.crawler.http;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Resolves host names to IP addresses.
+ */
+@FunctionalInterface
+interface HostResolver {
+
+    /**
+     * Resolves a host name.
+     * @param host host name
+     * @return addresses of the host
+     * @throws UnknownHostException if the host cannot be resolved
+     */
+    InetAddress[] resolve(String host) throws UnknownHostException;
+
+    /**
+     * Returns resolver that asks the system resolver, through the JVM-wide {@link InetAddress} cache.
+     * @return {@link HostResolver}
+     */
+    static HostResolver system(){
+        return InetAddress::getAllByName;
+    }
+}
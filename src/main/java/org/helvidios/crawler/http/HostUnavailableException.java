@@ -0,0 +1,14 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+
+/**
+ * Indicates that the request was not sent because the host has recently been failing and its circuit breaker is open.
+ * The host is probed again once the breaker lets a trial request through.
+ */
+public class HostUnavailableException extends FetchException {
+
+    HostUnavailableException(URI url, Throwable causedBy) {
+        super(url, causedBy);
+    }
+}
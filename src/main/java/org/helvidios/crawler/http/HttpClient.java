@@ -1,8 +1,18 @@
 package org.helvidios.crawler.http;
 
 import java.net.URI;
+import java.net.http.HttpClient.Version;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 import org.helvidios.crawler.model.HtmlDocument;
 
 /**
@@ -12,6 +22,24 @@ import org.helvidios.crawler.model.HtmlDocument;
  */
 public interface HttpClient {
     
+    /**
+     * Performs a download described by a {@link FetchRequest}.
+     * This method is synchronous and will block the calling thread until the network communication is completed.
+     * @param request URL and extra headers
+     * @return downloaded HTML document
+     * @throws FetchException if network communication error occurs
+     */
+    HtmlDocument send(FetchRequest request) throws FetchException;
+
+    /**
+     * Performs a download described by a {@link FetchRequest} without blocking the calling thread.
+     * No thread is held while the request is in flight, so a small pool can keep many downloads open at once.
+     * The returned future completes exceptionally with a {@link FetchException} if network communication error occurs.
+     * @param request URL and extra headers
+     * @return future that completes with the downloaded HTML document
+     */
+    CompletableFuture<HtmlDocument> sendAsync(FetchRequest request);
+
     /**
      * Downloads raw web page content from a supplied URL. 
      * This method is synchronous and will block the calling thread until the network communication is completed.
@@ -19,7 +47,100 @@ public interface HttpClient {
      * @return downloaded HTML document
      * @throws FetchException if network communication error occurs
      */
-    HtmlDocument fetch(URI url) throws FetchException;
+    default HtmlDocument fetch(URI url) throws FetchException {
+        return send(FetchRequest.of(url));
+    }
+
+    /**
+     * Downloads raw web page content from a supplied URL within a time budget that covers rate limit waits,
+     * all retries and their backoff. Fails with {@link DeadlineExceededException} as soon as the budget is known to be
+     * insufficient, e.g. when the next rate limit permit or retry would come after the deadline.
+     * @param url URL from which the page will be fetched
+     * @param timeout time budget for the whole download
+     * @return downloaded HTML document
+     * @throws FetchException if network communication error occurs or the budget runs out
+     */
+    default HtmlDocument fetch(URI url, Duration timeout) throws FetchException {
+        return send(FetchRequest.of(url).withTimeout(timeout));
+    }
+
+    /**
+     * Downloads raw web page content from a supplied URL without blocking the calling thread.
+     * @param url URL from which the page will be fetched
+     * @return future that completes with the downloaded HTML document
+     * @see #sendAsync(FetchRequest)
+     */
+    default CompletableFuture<HtmlDocument> fetchAsync(URI url) {
+        return sendAsync(FetchRequest.of(url));
+    }
+
+    /**
+     * Downloads raw web page content from a supplied URL within a time budget without blocking the calling thread.
+     * @param url URL from which the page will be fetched
+     * @param timeout time budget for the whole download
+     * @return future that completes with the downloaded HTML document
+     * @see #fetch(URI, Duration)
+     */
+    default CompletableFuture<HtmlDocument> fetchAsync(URI url, Duration timeout) {
+        return sendAsync(FetchRequest.of(url).withTimeout(timeout));
+    }
+
+    /**
+     * Downloads raw web page content from a supplied URL without blocking the calling thread, and reports the links
+     * of the page as they are found in the body while it downloads.
+     * @param url URL from which the page will be fetched
+     * @param onLink consumer of the distinct absolute http(s) links on the page
+     * @return future that completes with the downloaded HTML document
+     * @see FetchRequest#withLinkConsumer(Consumer)
+     */
+    default CompletableFuture<HtmlDocument> fetchAsync(URI url, Consumer<URI> onLink) {
+        return sendAsync(FetchRequest.of(url).withLinkConsumer(onLink));
+    }
+
+    /**
+     * Resolves the hosts of the given URLs and opens connections to them in the background, so that DNS lookup and
+     * TCP/TLS handshakes overlap with other work instead of delaying the first request to every host.
+     * Useful for hosts that will be fetched soon, e.g. the next hosts in a batch. Failures are ignored.
+     * A warm-up counts against the rate limit of its host and is skipped for hosts whose robots.txt disallows the crawler.
+     * @param urls URLs that will be fetched soon
+     * @return future that completes once all hosts have been warmed up or failed to
+     */
+    default CompletableFuture<Void> prewarm(Collection<URI> urls) {
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Downloads pages from all supplied URLs with at most {@code maxConcurrency} requests in flight and returns the results
+     * in completion order. Requests go through {@link #fetchAsync(URI)}, so rate limiting and retries still apply.
+     * The returned stream blocks while waiting for the next result; closing it stops starting new requests.
+     * A new request is started only once a result is taken, so a slow consumer holds at most {@code maxConcurrency}
+     * results in memory, and an unclosed stream that is no longer consumed stops downloading.
+     * @param urls URLs from which the pages will be fetched
+     * @param maxConcurrency max number of requests in flight
+     * @return stream of results in completion order
+     * @throws IllegalArgumentException if maxConcurrency < 1
+     */
+    default Stream<FetchResult> fetchAll(Collection<URI> urls, int maxConcurrency) {
+        Objects.requireNonNull(urls, "urls must not be null");
+        return BulkFetch.stream(this, urls.iterator(), maxConcurrency);
+    }
+
+    /**
+     * Downloads pages from URLs pulled lazily from a stream with at most {@code maxConcurrency} requests in flight,
+     * handing every result to {@code onResult} in completion order. The callback is never invoked concurrently.
+     * Requests go through {@link #fetchAsync(URI)}, so rate limiting and retries still apply.
+     * If the URL stream or the callback throws, no more URLs are started and the returned future fails with that
+     * exception once the requests in flight have completed.
+     * @param urls URLs from which the pages will be fetched
+     * @param maxConcurrency max number of requests in flight
+     * @param onResult callback receiving every downloaded document or {@link FetchException}
+     * @return future that completes once all results have been delivered
+     * @throws IllegalArgumentException if maxConcurrency < 1
+     */
+    default CompletableFuture<Void> fetchAll(Stream<URI> urls, int maxConcurrency, Consumer<FetchResult> onResult) {
+        Objects.requireNonNull(urls, "urls must not be null");
+        return BulkFetch.start(this, urls.iterator(), maxConcurrency, onResult).done();
+    }
 
     /**
      * Returns builder that can be used for constructing {@link HttpClient}
@@ -33,9 +154,35 @@ public interface HttpClient {
      * Builder for constructing an {@link HttpClient} instance.
      */
     static class Builder {
+        private static final double UNLIMITED_REQUESTS_PER_SECOND = 1000;
+
         private Duration requestTimeout = Duration.ofMinutes(1);
+        private Duration totalTimeout;
+        private long maxBodySize = BasicHttpClient.DEFAULT_MAX_BODY_SIZE;
         private Integer retries;
+        private RetryPolicy retryPolicy = RetryPolicy.transientFailures();
+        private Double retryBudgetRatio;
         private Integer requestsPerSecond;
+        private Double requestsPerSecondPerHost;
+        private Double minRequestsPerSecondPerHost;
+        private Double maxRequestsPerSecondPerHost;
+        private final Map<String, Double> hostRequestsPerSecond = new HashMap<>();
+        private Duration idleHostTimeout = Duration.ofMinutes(10);
+        private ValidatorStore validatorStore;
+        private Executor executor;
+        private Duration connectTimeout;
+        private Version httpVersion = Version.HTTP_2;
+        private final Map<String, Version> hostHttpVersions = new HashMap<>();
+        private boolean sharedConnectionPool;
+        private Duration circuitBreakerWait;
+        private Double hedgeRatio;
+        private boolean coalescing;
+        private Duration dnsNegativeTtl;
+        private long dnsMaxHosts;
+        private String robotsUserAgent;
+        private RobotsTxtCache robotsTxtCache;
+        private ScheduledExecutorService scheduler;
+        private HttpMetrics metrics;
 
         private Builder(){}
 
@@ -49,6 +196,34 @@ public interface HttpClient {
             return this;
         }
 
+        /**
+         * Set a time budget for every download, covering rate limit waits, all retry attempts and their backoff.
+         * Each attempt's request timeout shrinks to the remaining budget and a download fails with
+         * {@link DeadlineExceededException} once the budget is gone. By default only the request timeout applies,
+         * per attempt.
+         * @param totalTimeout time budget of a single download
+         * @return {@link Builder}
+         */
+        public Builder withTotalTimeout(Duration totalTimeout){
+            Objects.requireNonNull(totalTimeout, "totalTimeout must not be null");
+            if(totalTimeout.isNegative() || totalTimeout.isZero()) throw new IllegalArgumentException("totalTimeout must be positive");
+            this.totalTimeout = totalTimeout;
+            return this;
+        }
+
+        /**
+         * Set max number of response body bytes to read. Longer bodies are cut off and the resulting
+         * {@link HtmlDocument} is marked as truncated. Default is 10 MB.
+         * @param maxBodySize max body size in bytes
+         * @throws IllegalArgumentException if maxBodySize < 1
+         * @return {@link Builder}
+         */
+        public Builder withMaxBodySize(long maxBodySize){
+            if(maxBodySize < 1) throw new IllegalArgumentException("maxBodySize must be greater than zero");
+            this.maxBodySize = maxBodySize;
+            return this;
+        }
+
         /**
          * Set a custom value for max number of attempts to perform an HTTP request before giving up and throwing an exception.
          * @param retries max number of attempts to perform an HTTP request
@@ -61,6 +236,30 @@ public interface HttpClient {
             return this;
         }
 
+        /**
+         * Set a custom policy deciding which failures are retried. Default is {@link RetryPolicy#transientFailures()}.
+         * Only takes effect with {@link #withRetries(int)}.
+         * @param retryPolicy retry policy
+         * @return {@link Builder}
+         */
+        public Builder withRetryPolicy(RetryPolicy retryPolicy){
+            this.retryPolicy = Objects.requireNonNull(retryPolicy, "retryPolicy must not be null");
+            return this;
+        }
+
+        /**
+         * Cap retries to a share of total traffic, e.g. 0.1 allows at most one retry per ten requests on average,
+         * plus a reserve of 10 retries saved up while requests succeed. Only takes effect with {@link #withRetries(int)}.
+         * @param ratio max number of retries per request
+         * @throws IllegalArgumentException if ratio is not positive
+         * @return {@link Builder}
+         */
+        public Builder withRetryBudget(double ratio){
+            if(!(ratio > 0)) throw new IllegalArgumentException("ratio must be greater than zero");
+            this.retryBudgetRatio = ratio;
+            return this;
+        }
+
         /**
          * Set rate limit for max number of HTTP requests per second.
          * @param requestsPerSecond max number of QPS (Queries Per Second)
@@ -71,22 +270,344 @@ public interface HttpClient {
             return this;
         }
 
+        /**
+         * Enable rate limiting with a separate limit for every host, so that one slow or strict host does not
+         * eat the budget of other hosts. Can be combined with {@link #withRateLimiter(int)} to also cap total QPS.
+         * @param requestsPerSecond default max number of QPS (Queries Per Second) per host
+         * @throws IllegalArgumentException if requestsPerSecond is not positive
+         * @return {@link Builder}
+         */
+        public Builder withPerHostRateLimiter(double requestsPerSecond){
+            if(!(requestsPerSecond > 0)) throw new IllegalArgumentException("requestsPerSecond must be greater than zero");
+            this.requestsPerSecondPerHost = requestsPerSecond;
+            return this;
+        }
+
+        /**
+         * Enable per-host rate limiting that adapts to every host: the rate grows additively while the host answers
+         * promptly and is cut in half on 429 Too Many Requests, 503 Service Unavailable or a sharp rise in p95 latency.
+         * Hosts start at the rate set by {@link #withPerHostRateLimiter(double)} or {@link #withHostRateLimit(String, double)},
+         * or at the min rate if none is set.
+         * @param minRequestsPerSecond lower bound of a host's QPS (Queries Per Second)
+         * @param maxRequestsPerSecond upper bound of a host's QPS (Queries Per Second)
+         * @throws IllegalArgumentException if minRequestsPerSecond is not positive or maxRequestsPerSecond < minRequestsPerSecond
+         * @return {@link Builder}
+         */
+        public Builder withAdaptiveRateLimiter(double minRequestsPerSecond, double maxRequestsPerSecond){
+            if(!(minRequestsPerSecond > 0)) throw new IllegalArgumentException("minRequestsPerSecond must be greater than zero");
+            if(maxRequestsPerSecond < minRequestsPerSecond) throw new IllegalArgumentException("maxRequestsPerSecond must not be less than minRequestsPerSecond");
+            this.minRequestsPerSecondPerHost = minRequestsPerSecond;
+            this.maxRequestsPerSecondPerHost = maxRequestsPerSecond;
+            return this;
+        }
+
+        /**
+         * Override the per-host rate limit for a specific host. Only takes effect with {@link #withPerHostRateLimiter(double)}
+         * or {@link #withAdaptiveRateLimiter(double, double)}.
+         * @param host host name, e.g. en.wikipedia.org
+         * @param requestsPerSecond max number of QPS (Queries Per Second) for this host
+         * @throws IllegalArgumentException if requestsPerSecond is not positive
+         * @return {@link Builder}
+         */
+        public Builder withHostRateLimit(String host, double requestsPerSecond){
+            Objects.requireNonNull(host, "host must not be null");
+            if(!(requestsPerSecond > 0)) throw new IllegalArgumentException("requestsPerSecond must be greater than zero");
+            this.hostRequestsPerSecond.put(host, requestsPerSecond);
+            return this;
+        }
+
+        /**
+         * Set how long a host may stay unused before its per-host rate limiter is evicted. Default is 10 minutes.
+         * @param idleHostTimeout idle duration
+         * @return {@link Builder}
+         */
+        public Builder withIdleHostTimeout(Duration idleHostTimeout){
+            this.idleHostTimeout = Objects.requireNonNull(idleHostTimeout, "idleHostTimeout must not be null");
+            return this;
+        }
+
+        /**
+         * Stop sending requests to a host for 30 seconds once at least half of its last 10 requests failed with a network
+         * error or a 5xx response. Such requests fail immediately with {@link HostUnavailableException} and are not retried.
+         * @return {@link Builder}
+         */
+        public Builder withCircuitBreaker(){
+            return withCircuitBreaker(Duration.ofSeconds(30));
+        }
+
+        /**
+         * Stop sending requests to a failing host for the given duration, after which a few trial requests are let through.
+         * @param waitInOpenState how long requests to a failing host fail immediately, at least one second
+         * @throws IllegalArgumentException if waitInOpenState is shorter than one second
+         * @return {@link Builder}
+         * @see #withCircuitBreaker()
+         */
+        public Builder withCircuitBreaker(Duration waitInOpenState){
+            this.circuitBreakerWait = HttpClientWithCircuitBreaker.checkWaitInOpenState(waitInOpenState);
+            return this;
+        }
+
+        /**
+         * Send a second request for the same URL when the first has not completed within the p95 latency of its host,
+         * keep the first response and cancel the other request. Hedges are capped to a share of all requests, e.g. 0.05
+         * allows at most one hedge per twenty requests, and are only sent when the rate limit has a permit free right away.
+         * @param maxRatio max number of hedges per request
+         * @throws IllegalArgumentException if maxRatio is not positive
+         * @return {@link Builder}
+         */
+        public Builder withHedging(double maxRatio){
+            if(!(maxRatio > 0)) throw new IllegalArgumentException("maxRatio must be greater than zero");
+            this.hedgeRatio = maxRatio;
+            return this;
+        }
+
+        /**
+         * Share one download between concurrent requests for the same URL, so that workers that find the same link at
+         * the same time do not download it twice. All of them receive the same document or exception.
+         * @return {@link Builder}
+         */
+        public Builder withRequestCoalescing(){
+            this.coalescing = true;
+            return this;
+        }
+
+        /**
+         * Only fetch URLs allowed by the host's robots.txt and honor its Crawl-delay. robots.txt is downloaded through
+         * the client being built and the rules are cached per host, see {@link RobotsTxtCache#create(HttpClient, String)}.
+         * URLs that are not allowed fail with {@link DisallowedByRobotsException}.
+         * @param userAgent product token of the crawler, e.g. helvidios-bot
+         * @return {@link Builder}
+         */
+        public Builder withRobotsTxt(String userAgent){
+            this.robotsUserAgent = Objects.requireNonNull(userAgent, "userAgent must not be null");
+            this.robotsTxtCache = null;
+            return this;
+        }
+
+        /**
+         * Only fetch URLs allowed by robots.txt rules from a given cache and honor their Crawl-delay.
+         * The same cache can be used by the crawler to drop disallowed links before they are queued.
+         * @param robotsTxtCache cache of robots.txt rules
+         * @return {@link Builder}
+         */
+        public Builder withRobotsTxt(RobotsTxtCache robotsTxtCache){
+            this.robotsTxtCache = Objects.requireNonNull(robotsTxtCache, "robotsTxtCache must not be null");
+            this.robotsUserAgent = null;
+            return this;
+        }
+
+        /**
+         * Revalidate previously downloaded pages with conditional requests (ETag / Last-Modified), keeping up to
+         * 10,000 most recently downloaded pages in memory.
+         * @return {@link Builder}
+         */
+        public Builder withRevalidation(){
+            return withRevalidation(ValidatorStore.inMemory(10_000));
+        }
+
+        /**
+         * Revalidate previously downloaded pages with conditional requests (ETag / Last-Modified) using a custom store.
+         * Asynchronous requests look up the store on the executor set by {@link #withExecutor(Executor)}, or a shared
+         * pool of daemon threads, so the store may block.
+         * @param validatorStore store of previously downloaded pages
+         * @return {@link Builder}
+         */
+        public Builder withRevalidation(ValidatorStore validatorStore){
+            this.validatorStore = Objects.requireNonNull(validatorStore, "validatorStore must not be null");
+            return this;
+        }
+
+        /**
+         * Set executor that runs asynchronous tasks of the underlying JDK client, such as response body handling.
+         * Any executor can be used, e.g. a virtual-thread-per-task executor on runtimes that provide one.
+         * The caller remains responsible for shutting it down. Default is a cached thread pool created by the JDK.
+         * @param executor executor
+         * @return {@link Builder}
+         */
+        public Builder withExecutor(Executor executor){
+            this.executor = Objects.requireNonNull(executor, "executor must not be null");
+            return this;
+        }
+
+        /**
+         * Set timer on which asynchronous requests wait for a rate limit permit or for the backoff before a retry.
+         * Waiting requests hold no thread; the timer only completes their futures. The caller remains responsible for
+         * shutting it down. Default is a single daemon thread shared by all clients.
+         * @param scheduler timer
+         * @return {@link Builder}
+         */
+        public Builder withScheduler(ScheduledExecutorService scheduler){
+            this.scheduler = Objects.requireNonNull(scheduler, "scheduler must not be null");
+            return this;
+        }
+
+        /**
+         * Record latency histograms per host and per status code, bytes received, retries, 429 responses and time spent
+         * waiting for rate limit permits and in back-off. Read them with {@link HttpMetrics#snapshot()}.
+         * @param metrics metrics to record requests in
+         * @return {@link Builder}
+         */
+        public Builder withMetrics(HttpMetrics metrics){
+            this.metrics = Objects.requireNonNull(metrics, "metrics must not be null");
+            return this;
+        }
+
+        /**
+         * Cache failed DNS lookups of up to 10,000 hosts for 1 minute.
+         * @return {@link Builder}
+         * @see #withDnsCache(Duration, long)
+         */
+        public Builder withDnsCache(){
+            return withDnsCache(Duration.ofMinutes(1), 10_000);
+        }
+
+        /**
+         * Resolve hosts before connecting and cache failed lookups. A host that failed to resolve fails immediately
+         * until {@code negativeTtl} passes, instead of paying the resolver timeout again for each of its URLs.
+         * Successful lookups are cached by the JVM, see the {@code networkaddress.cache.ttl} security property.
+         * Lookups run on the executor set by {@link #withExecutor(Executor)}, or a shared bounded pool of daemon threads.
+         * @param negativeTtl how long a failed lookup is kept
+         * @param maxHosts max number of failed hosts kept in cache
+         * @return {@link Builder}
+         */
+        public Builder withDnsCache(Duration negativeTtl, long maxHosts){
+            this.dnsNegativeTtl = Objects.requireNonNull(negativeTtl, "negativeTtl must not be null");
+            if(maxHosts < 1) throw new IllegalArgumentException("maxHosts must be greater than zero");
+            this.dnsMaxHosts = maxHosts;
+            return this;
+        }
+
+        /**
+         * Set max time to establish a TCP/TLS connection. Unlike {@link #withRequestTimeout(Duration)}, this does not
+         * cover waiting for the response. Default is no limit besides the request timeout.
+         * @param connectTimeout timeout duration
+         * @return {@link Builder}
+         */
+        public Builder withConnectTimeout(Duration connectTimeout){
+            Objects.requireNonNull(connectTimeout, "connectTimeout must not be null");
+            if(connectTimeout.isNegative() || connectTimeout.isZero()) throw new IllegalArgumentException("connectTimeout must be positive");
+            this.connectTimeout = connectTimeout;
+            return this;
+        }
+
+        /**
+         * Set preferred HTTP version for all hosts. Default is HTTP/2 with fallback to HTTP/1.1 when the server does not support it.
+         * @param version HTTP version
+         * @return {@link Builder}
+         */
+        public Builder withHttpVersion(Version version){
+            this.httpVersion = Objects.requireNonNull(version, "version must not be null");
+            return this;
+        }
+
+        /**
+         * Override HTTP version for a specific host, e.g. force HTTP/1.1 for a server with a broken HTTP/2 implementation.
+         * @param host host name, e.g. en.wikipedia.org
+         * @param version HTTP version
+         * @return {@link Builder}
+         */
+        public Builder withHostHttpVersion(String host, Version version){
+            Objects.requireNonNull(host, "host must not be null");
+            Objects.requireNonNull(version, "version must not be null");
+            this.hostHttpVersions.put(host.toLowerCase(Locale.ROOT), version);
+            return this;
+        }
+
+        /**
+         * Reuse one underlying JDK client, and thereby its open connections and TLS sessions, with every other client
+         * built with this option and the same executor, connect timeout and HTTP version.
+         * By default every call to {@link #build()} creates a new connection pool. A shared pool is released once no
+         * client using it is referenced any more.
+         * @return {@link Builder}
+         */
+        public Builder withSharedConnectionPool(){
+            this.sharedConnectionPool = true;
+            return this;
+        }
+
         /**
          * Builds a fully initialized instance of {@code HttpClient}.
          * @return {@code HttpClient}
          */
         public HttpClient build(){
-            HttpClient httpClient = new BasicHttpClient(requestTimeout);
+            var scheduler = this.scheduler == null ? Delays.sharedScheduler() : this.scheduler;
+            var settings = new JdkHttpClients.Settings(executor, connectTimeout, httpVersion);
+            var jdkClient = sharedConnectionPool ? JdkHttpClients.shared(settings) : JdkHttpClients.create(settings);
+            var resolver = dnsNegativeTtl == null ? null : new CachingHostResolver(
+                HostResolver.system(), dnsNegativeTtl, dnsMaxHosts,
+                executor == null ? BlockingExecutor.shared() : executor);
+            HttpClient httpClient = new BasicHttpClient(jdkClient, requestTimeout, maxBodySize, hostHttpVersions, resolver);
+
+            if(metrics != null){
+                httpClient = new HttpClientWithMetrics(metrics, httpClient);
+            }
+
+            if(validatorStore != null){
+                httpClient = new HttpClientWithRevalidation(validatorStore,
+                    executor == null ? BlockingExecutor.shared() : executor, httpClient);
+            }
+
+            var perHostRateLimit = perHostRateLimit();
+            if(perHostRateLimit != null && minRequestsPerSecondPerHost != null){
+                var controller = new AimdRateController(
+                    perHostRateLimit, minRequestsPerSecondPerHost, maxRequestsPerSecondPerHost, idleHostTimeout);
+                httpClient = new HttpClientWithAdaptiveRateLimit(controller, httpClient);
+            }
+
+            // below the rate limit, so that latencies exclude permit waits and hedges only use free permits
+            var rateLimit = rateLimit(perHostRateLimit);
+            if(hedgeRatio != null){
+                httpClient = new HttpClientWithHedging(new RetryBudget(hedgeRatio, 10), rateLimit, idleHostTimeout, scheduler, httpClient);
+            }
 
-            if(requestsPerSecond != null){
-                httpClient = new HttpClientWithRateLimit(requestsPerSecond, httpClient);
+            if(rateLimit != null){
+                httpClient = new HttpClientWithRateLimit(rateLimit, scheduler, metrics, httpClient);
             }
-            
+
+            if(circuitBreakerWait != null){
+                httpClient = new HttpClientWithCircuitBreaker(circuitBreakerWait, idleHostTimeout, httpClient);
+            }
+
             if(retries != null) {
-                httpClient = new HttpClientWithRetry(retries, httpClient);
+                var retryBudget = retryBudgetRatio == null ? null : new RetryBudget(retryBudgetRatio, 10);
+                httpClient = new HttpClientWithRetry(retries, retryPolicy, retryBudget, scheduler, metrics, httpClient);
+            }
+
+            if(robotsUserAgent != null || robotsTxtCache != null){
+                var robots = robotsTxtCache != null ? robotsTxtCache : RobotsTxtCache.create(httpClient, robotsUserAgent);
+                httpClient = new HttpClientWithRobotsTxt(robots, perHostRateLimit, httpClient);
+            }
+
+            if(totalTimeout != null){
+                httpClient = new HttpClientWithDeadline(totalTimeout, httpClient);
+            }
+
+            if(coalescing){
+                httpClient = new HttpClientWithCoalescing(scheduler, httpClient);
             }
 
             return httpClient;
         }
+
+        private PerHostRateLimit perHostRateLimit(){
+            if(requestsPerSecondPerHost != null){
+                return new PerHostRateLimit(requestsPerSecondPerHost, hostRequestsPerSecond, idleHostTimeout);
+            }
+            if(minRequestsPerSecondPerHost != null){
+                return new PerHostRateLimit(minRequestsPerSecondPerHost, hostRequestsPerSecond, idleHostTimeout);
+            }
+            if(robotsUserAgent != null || robotsTxtCache != null){
+                // Crawl-delay is enforced by per-host buckets; hosts without one stay practically unlimited
+                return new PerHostRateLimit(UNLIMITED_REQUESTS_PER_SECOND, hostRequestsPerSecond, idleHostTimeout);
+            }
+            return null;
+        }
+
+        private RateLimit rateLimit(PerHostRateLimit perHost){
+            RateLimit global = requestsPerSecond == null ? null : RateLimit.global(requestsPerSecond);
+
+            if(global != null && perHost != null) return RateLimit.both(global, perHost);
+            return global != null ? global : perHost;
+        }
     }
 }
@@ -0,0 +1,53 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import org.helvidios.crawler.model.HtmlDocument;
+
+/**
+ * An implementation of {@link HttpClient} that reports the latency and outcome of every request to an
+ * {@link AimdRateController}, which tunes the per-host rate limit to what each host tolerates.
+ * It sits below {@link HttpClientWithRateLimit}, so time spent waiting for a permit is not counted as latency.
+ */
+class HttpClientWithAdaptiveRateLimit implements HttpClient {
+    private final HttpClient httpClient;
+    private final AimdRateController controller;
+
+    /**
+     * Creates a new instance of {@link HttpClientWithAdaptiveRateLimit}
+     * @param controller controller that adjusts per-host rates
+     * @param httpClient underlying http client to which actual page downloading will be delegated
+     */
+    HttpClientWithAdaptiveRateLimit(AimdRateController controller, HttpClient httpClient){
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+        this.controller = Objects.requireNonNull(controller, "controller must not be null");
+    }
+
+    @Override
+    public HtmlDocument send(FetchRequest request) throws FetchException {
+        var start = System.nanoTime();
+        try{
+            var doc = httpClient.send(request);
+            controller.onResponse(request.url(), start, System.nanoTime() - start, null);
+            return doc;
+        }
+        catch(FetchException ex){
+            controller.onResponse(request.url(), start, System.nanoTime() - start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public CompletableFuture<HtmlDocument> sendAsync(FetchRequest request) {
+        var start = System.nanoTime();
+        return httpClient.sendAsync(request)
+            .whenComplete((doc, ex) -> controller.onResponse(request.url(), start, System.nanoTime() - start, ex));
+    }
+
+    @Override
+    public CompletableFuture<Void> prewarm(Collection<URI> urls) {
+        return httpClient.prewarm(urls);
+    }
+}
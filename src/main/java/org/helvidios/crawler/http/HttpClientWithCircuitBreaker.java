@@ -0,0 +1,159 @@
+package org.helvidios.crawler.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerOpenException;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.helvidios.crawler.model.HtmlDocument;
+
+/**
+ * An implementation of {@link HttpClient} with a separate circuit breaker for every host.
+ * When most recent requests to a host fail with network errors or 5xx responses, the breaker opens and further requests
+ * to the host fail immediately with {@link HostUnavailableException}. After a wait the breaker goes half-open and lets
+ * a few trial requests through, closing again if they succeed.
+ */
+class HttpClientWithCircuitBreaker implements HttpClient {
+    private final HttpClient httpClient;
+    private final CircuitBreakerConfig config;
+    private final Cache<String, CircuitBreaker> breakers;
+
+    /**
+     * Shortest wait in open state that resilience4j accepts.
+     */
+    static final Duration MIN_WAIT_IN_OPEN_STATE = Duration.ofSeconds(1);
+
+    /**
+     * Creates a new instance of {@link HttpClientWithCircuitBreaker}
+     * @param waitInOpenState how long a host fails fast before trial requests are let through, at least one second
+     * @param idleHostTimeout how long the breaker of an unused host is kept
+     * @param httpClient underlying http client to which actual page downloading will be delegated
+     * @throws IllegalArgumentException if waitInOpenState is shorter than {@link #MIN_WAIT_IN_OPEN_STATE}
+     */
+    HttpClientWithCircuitBreaker(Duration waitInOpenState, Duration idleHostTimeout, HttpClient httpClient){
+        this(CircuitBreakerConfig.custom()
+                .failureRateThreshold(50)
+                .ringBufferSizeInClosedState(10)
+                .ringBufferSizeInHalfOpenState(3)
+                .waitDurationInOpenState(checkWaitInOpenState(waitInOpenState))
+                .build(),
+            idleHostTimeout,
+            httpClient);
+    }
+
+    /**
+     * Creates a new instance of {@link HttpClientWithCircuitBreaker}
+     * @param config configuration of every host's breaker
+     * @param idleHostTimeout how long the breaker of an unused host is kept
+     * @param httpClient underlying http client to which actual page downloading will be delegated
+     */
+    HttpClientWithCircuitBreaker(CircuitBreakerConfig config, Duration idleHostTimeout, HttpClient httpClient){
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+        this.config = Objects.requireNonNull(config, "config must not be null");
+        // an open breaker is only forgotten if the host has not been requested for a whole idle timeout
+        this.breakers = CacheBuilder.newBuilder()
+            .expireAfterAccess(Objects.requireNonNull(idleHostTimeout, "idleHostTimeout must not be null"))
+            .build();
+    }
+
+    /**
+     * Fails if the wait is shorter than resilience4j accepts, so that an invalid setting is reported with a clear message
+     * by {@link HttpClient.Builder} rather than when the client is built.
+     * @param waitInOpenState how long a host fails fast
+     * @return the wait
+     * @throws IllegalArgumentException if the wait is shorter than {@link #MIN_WAIT_IN_OPEN_STATE}
+     */
+    static Duration checkWaitInOpenState(Duration waitInOpenState){
+        Objects.requireNonNull(waitInOpenState, "waitInOpenState must not be null");
+        if(waitInOpenState.compareTo(MIN_WAIT_IN_OPEN_STATE) < 0){
+            throw new IllegalArgumentException("waitInOpenState must be at least " + MIN_WAIT_IN_OPEN_STATE.toMillis() + " ms");
+        }
+        return waitInOpenState;
+    }
+
+    @Override
+    public HtmlDocument send(FetchRequest request) throws FetchException {
+        var breaker = acquire(request.url());
+        var start = System.nanoTime();
+        try{
+            var doc = httpClient.send(request);
+            breaker.onSuccess(System.nanoTime() - start);
+            return doc;
+        }
+        catch(FetchException ex){
+            record(breaker, System.nanoTime() - start, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public CompletableFuture<HtmlDocument> sendAsync(FetchRequest request) {
+        CircuitBreaker breaker;
+        try{
+            breaker = acquire(request.url());
+        }catch(HostUnavailableException ex){
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        var start = System.nanoTime();
+        return httpClient.sendAsync(request).whenComplete((doc, ex) -> {
+            if(ex == null) breaker.onSuccess(System.nanoTime() - start);
+            else record(breaker, System.nanoTime() - start, ex);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> prewarm(Collection<URI> urls) {
+        return httpClient.prewarm(urls);
+    }
+
+    /**
+     * Returns state of the breaker of a host.
+     * @param host host name
+     * @return breaker state
+     */
+    CircuitBreaker.State state(String host){
+        var breaker = breakers.getIfPresent(host);
+        return breaker == null ? CircuitBreaker.State.CLOSED : breaker.getState();
+    }
+
+    private CircuitBreaker acquire(URI url) throws HostUnavailableException {
+        var host = PerHostRateLimit.host(url);
+        CircuitBreaker breaker;
+        try{
+            breaker = breakers.get(host, () -> CircuitBreaker.of(host, config));
+        }catch(ExecutionException ex){
+            throw new IllegalStateException(ex.getCause());
+        }
+        if(!breaker.isCallPermitted()){
+            throw new HostUnavailableException(url, new CircuitBreakerOpenException(
+                String.format("CircuitBreaker '%s' is open", host)));
+        }
+        return breaker;
+    }
+
+    /**
+     * Counts only failures that suggest the host is down. Other failures, e.g. 404 or 429, mean the host is up.
+     * A request whose deadline ran out before it reached the host says nothing about the host and is not counted.
+     */
+    private static void record(CircuitBreaker breaker, long durationNanos, Throwable t){
+        if(AsyncFetch.unwrap(t) instanceof DeadlineExceededException) return;
+        if(isHostFailure(t)) breaker.onError(durationNanos, AsyncFetch.unwrap(t));
+        else breaker.onSuccess(durationNanos);
+    }
+
+    static boolean isHostFailure(Throwable t){
+        var status = AsyncFetch.statusCode(t);
+        if(status.isPresent()) return status.getAsInt() >= 500;
+        var cause = AsyncFetch.unwrap(t);
+        if(cause instanceof FetchException) cause = cause.getCause();
+        return cause instanceof IOException;
+    }
+}
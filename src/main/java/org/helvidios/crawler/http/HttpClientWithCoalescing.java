@@ -0,0 +1,141 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Consumer;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.helvidios.crawler.model.Url;
+
+/**
+ * An implementation of {@link HttpClient} that coalesces concurrent requests for the same URL into a single download.
+ * The first caller starts the download and callers arriving while it is in flight wait for it and all receive the same
+ * {@link HtmlDocument} or {@link FetchException}. Nothing is cached: a request arriving after the download completed
+ * starts a new one. Requests are only coalesced if their canonical URLs (see {@link Url#of(URI)}) and their headers are
+ * equal. The download
+ * itself is bounded by the first caller's deadline; a joining caller stops waiting for it once its own deadline passes
+ * or its own request is cancelled, without affecting the download. Requests with different link consumers are not
+ * coalesced.
+ */
+class HttpClientWithCoalescing implements HttpClient {
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService scheduler;
+    private final Map<Key, CompletableFuture<HtmlDocument>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new instance of {@link HttpClientWithCoalescing}
+     * @param scheduler timer that ends the wait of joining callers at their deadline
+     * @param httpClient underlying http client to which actual page downloading will be delegated
+     */
+    HttpClientWithCoalescing(ScheduledExecutorService scheduler, HttpClient httpClient){
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+        this.scheduler = Objects.requireNonNull(scheduler, "scheduler must not be null");
+    }
+
+    @Override
+    public HtmlDocument send(FetchRequest request) throws FetchException {
+        var key = Key.of(request);
+        if(key == null) return httpClient.send(request);
+        var download = new CompletableFuture<HtmlDocument>();
+        var existing = inFlight.putIfAbsent(key, download);
+        if(existing != null) return await(request, join(request, existing));
+
+        try{
+            var doc = httpClient.send(request);
+            inFlight.remove(key, download);
+            download.complete(doc);
+            return doc;
+        }
+        catch(Throwable t){
+            inFlight.remove(key, download);
+            download.completeExceptionally(t);
+            throw t;
+        }
+    }
+
+    @Override
+    public CompletableFuture<HtmlDocument> sendAsync(FetchRequest request) {
+        var key = Key.of(request);
+        if(key == null) return httpClient.sendAsync(request);
+        var download = new CompletableFuture<HtmlDocument>();
+        var existing = inFlight.putIfAbsent(key, download);
+        if(existing != null) return join(request, existing);
+
+        CompletableFuture<HtmlDocument> response;
+        try{
+            response = httpClient.sendAsync(request);
+        }catch(Throwable t){
+            response = CompletableFuture.failedFuture(t);
+        }
+        response.whenComplete((doc, ex) -> {
+            // removed before completion, so that callers woken up by it cannot join a finished download
+            inFlight.remove(key, download);
+            if(ex == null) download.complete(doc);
+            else download.completeExceptionally(AsyncFetch.toFetchException(request.url(), ex));
+        });
+        return download.copy();
+    }
+
+    /**
+     * Returns a joining caller's view of a download. Every caller gets its own copy, so that one caller cancelling its
+     * future does not affect the others, and the copy fails with {@link DeadlineExceededException} at the caller's
+     * deadline and is cancelled when the caller's request is.
+     */
+    private CompletableFuture<HtmlDocument> join(FetchRequest request, CompletableFuture<HtmlDocument> download){
+        var copy = download.copy();
+        var remaining = request.remainingNanos();
+        if(remaining != Long.MAX_VALUE){
+            var timeout = Delays.after(scheduler, remaining);
+            timeout.thenRun(() -> copy.completeExceptionally(new DeadlineExceededException(request.url())));
+            copy.whenComplete((doc, ex) -> timeout.cancel(false));
+        }
+        request.cancellation().ifPresent(signal -> signal.whenComplete((ignored, ex) -> copy.cancel(false)));
+        return copy;
+    }
+
+    @Override
+    public CompletableFuture<Void> prewarm(Collection<URI> urls) {
+        return httpClient.prewarm(urls);
+    }
+
+    /**
+     * Returns number of downloads currently in flight.
+     * @return number of distinct requests
+     */
+    int inFlight(){
+        return inFlight.size();
+    }
+
+    private static HtmlDocument await(FetchRequest request, CompletableFuture<HtmlDocument> download) throws FetchException {
+        try{
+            return download.get();
+        }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new FetchException(request.url(), ex);
+        }catch(ExecutionException ex){
+            throw AsyncFetch.toFetchException(request.url(), ex);
+        }catch(CancellationException ex){
+            throw new FetchException(request.url(), ex);
+        }
+    }
+
+    /**
+     * Identifies requests that can share a download. Requests with a link consumer only share a download with
+     * requests that report to the same consumer, since links are reported while the download is in flight.
+     */
+    private record Key(Url url, Map<String, String> headers, Consumer<URI> onLink){
+        /**
+         * @return key, or null if the URL is relative and has no canonical form
+         */
+        static Key of(FetchRequest request){
+            if(!request.url().isAbsolute()) return null;
+            return new Key(Url.of(request.url()), request.headers(), request.linkConsumer().orElse(null));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import org.helvidios.crawler.model.HtmlDocument;
+
+/**
+ * An implementation of {@link HttpClient} that gives every request a total time budget covering rate limit waits,
+ * all retry attempts and their backoff. Requests that already carry an earlier deadline keep it.
+ * Each layer below checks the remaining budget and {@link BasicHttpClient} shrinks the request timeout to it.
+ */
+class HttpClientWithDeadline implements HttpClient {
+    private final HttpClient httpClient;
+    private final Duration totalTimeout;
+
+    /**
+     * Creates a new instance of {@link HttpClientWithDeadline}
+     * @param totalTimeout time budget of a single download
+     * @param httpClient underlying http client to which actual page downloading will be delegated
+     */
+    HttpClientWithDeadline(Duration totalTimeout, HttpClient httpClient){
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+        this.totalTimeout = Objects.requireNonNull(totalTimeout, "totalTimeout must not be null");
+    }
+
+    @Override
+    public HtmlDocument send(FetchRequest request) throws FetchException {
+        return httpClient.send(request.withTimeout(totalTimeout));
+    }
+
+    @Override
+    public CompletableFuture<HtmlDocument> sendAsync(FetchRequest request) {
+        return httpClient.sendAsync(request.withTimeout(totalTimeout));
+    }
+
+    @Override
+    public CompletableFuture<Void> prewarm(Collection<URI> urls) {
+        return httpClient.prewarm(urls);
+    }
+}
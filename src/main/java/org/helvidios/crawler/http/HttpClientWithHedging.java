@@ -0,0 +1,204 @@
+package org.helvidios.crawler.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.helvidios.crawler.model.HtmlDocument;
+
+/**
+ * An implementation of {@link HttpClient} that cuts tail latency with hedged requests: if a request has not completed
+ * within the p95 latency observed for its host, the same URL is requested a second time. The first successful response
+ * is kept and the other request is cancelled. Hedges are capped by a {@link RetryBudget} to a share of all requests.
+ * This decorator sits below the rate limit, so latencies are measured from the moment a request has its permit, and a
+ * hedge is only sent if the rate limit has a permit free right away. A hedge never waits for a permit, so it cannot
+ * hold one while the race is decided without it.
+ * Hosts with fewer than {@link #MIN_SAMPLES} successful responses are not hedged.
+ */
+class HttpClientWithHedging implements HttpClient {
+    /**
+     * Number of most recent latencies used for the p95 estimate.
+     */
+    static final int LATENCY_WINDOW = 50;
+
+    /**
+     * Number of latencies a host needs before its requests are hedged.
+     */
+    static final int MIN_SAMPLES = 20;
+
+    private final HttpClient httpClient;
+    private final RetryBudget hedgeBudget;
+    private final RateLimit rateLimit;
+    private final ScheduledExecutorService scheduler;
+    private final Cache<String, HostLatency> hosts;
+
+    /**
+     * Creates a new instance of {@link HttpClientWithHedging}
+     * @param hedgeBudget caps hedges to a share of all requests
+     * @param idleHostTimeout how long the latencies of an unused host are kept
+     * @param scheduler timer on which hedges are started
+     * @param httpClient underlying http client to which actual page downloading will be delegated
+     */
+    HttpClientWithHedging(RetryBudget hedgeBudget, Duration idleHostTimeout, ScheduledExecutorService scheduler, HttpClient httpClient){
+        this(hedgeBudget, null, idleHostTimeout, scheduler, httpClient);
+    }
+
+    /**
+     * Creates a new instance of {@link HttpClientWithHedging}
+     * @param hedgeBudget caps hedges to a share of all requests
+     * @param rateLimit rate limit that every hedge needs a free permit from, or null if requests are not rate limited
+     * @param idleHostTimeout how long the latencies of an unused host are kept
+     * @param scheduler timer on which hedges are started
+     * @param httpClient underlying http client to which actual page downloading will be delegated
+     */
+    HttpClientWithHedging(RetryBudget hedgeBudget, RateLimit rateLimit, Duration idleHostTimeout, ScheduledExecutorService scheduler, HttpClient httpClient){
+        this.rateLimit = rateLimit;
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+        this.hedgeBudget = Objects.requireNonNull(hedgeBudget, "hedgeBudget must not be null");
+        this.scheduler = Objects.requireNonNull(scheduler, "scheduler must not be null");
+        this.hosts = CacheBuilder.newBuilder()
+            .expireAfterAccess(Objects.requireNonNull(idleHostTimeout, "idleHostTimeout must not be null"))
+            .build();
+    }
+
+    /**
+     * Hedging needs two requests in flight at once, so the download runs on {@link #sendAsync(FetchRequest)} and the
+     * calling thread only waits for its result.
+     */
+    @Override
+    public HtmlDocument send(FetchRequest request) throws FetchException {
+        try{
+            return sendAsync(request).get();
+        }catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new FetchException(request.url(), ex);
+        }catch(ExecutionException ex){
+            throw AsyncFetch.toFetchException(request.url(), ex);
+        }
+    }
+
+    @Override
+    public CompletableFuture<HtmlDocument> sendAsync(FetchRequest request) {
+        hedgeBudget.onRequest();
+        var latency = latency(request.url());
+        var hedgeDelay = latency.hedgeDelayNanos();
+        if(hedgeDelay < 0 || hedgeDelay >= request.remainingNanos()){
+            return attempt(request, latency);
+        }
+
+        var race = new Race(request);
+        race.start(attempt(race.primary, latency), true);
+        var timer = scheduler.schedule(() -> {
+            if(!race.result.isDone() && hedgeBudget.tryRetry() && (rateLimit == null || rateLimit.tryReserve(request.url()))){
+                race.start(attempt(race.hedge, latency), false);
+            }
+        }, hedgeDelay, TimeUnit.NANOSECONDS);
+        race.result.whenComplete((doc, ex) -> timer.cancel(false));
+        return race.result;
+    }
+
+    @Override
+    public CompletableFuture<Void> prewarm(Collection<URI> urls) {
+        return httpClient.prewarm(urls);
+    }
+
+    /**
+     * Returns the hedge delay of a host: its p95 latency, or -1 if it has not enough samples yet.
+     * @param host host name
+     * @return delay in nanoseconds
+     */
+    long hedgeDelayNanos(String host){
+        var latency = hosts.getIfPresent(host);
+        return latency == null ? -1 : latency.hedgeDelayNanos();
+    }
+
+    private CompletableFuture<HtmlDocument> attempt(FetchRequest request, HostLatency latency){
+        var start = System.nanoTime();
+        return httpClient.sendAsync(request).whenComplete((doc, ex) -> {
+            if(ex == null) latency.record(System.nanoTime() - start);
+        });
+    }
+
+    private HostLatency latency(URI url){
+        try{
+            return hosts.get(PerHostRateLimit.host(url), HostLatency::new);
+        }catch(ExecutionException ex){
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+
+    /**
+     * A primary request and possibly a hedge racing for the same URL. The first success wins and cancels the other;
+     * a failure only ends the race once no other request is in flight.
+     */
+    private static class Race {
+        private final CompletableFuture<HtmlDocument> result = new CompletableFuture<>();
+        private final CompletableFuture<Void> cancelPrimary = new CompletableFuture<>();
+        private final CompletableFuture<Void> cancelHedge = new CompletableFuture<>();
+        private final FetchRequest primary;
+        private final FetchRequest hedge;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile Throwable primaryFailure;
+
+        Race(FetchRequest request){
+            this.primary = request.withCancellation(cancelPrimary);
+            this.hedge = request.withCancellation(cancelHedge);
+            // whatever ends the race, including the caller cancelling it, abandons the requests still in flight
+            result.whenComplete((doc, ex) -> {
+                cancelPrimary.complete(null);
+                cancelHedge.complete(null);
+            });
+        }
+
+        void start(CompletableFuture<HtmlDocument> attempt, boolean isPrimary){
+            inFlight.incrementAndGet();
+            attempt.whenComplete((doc, ex) -> {
+                if(ex == null){
+                    inFlight.decrementAndGet();
+                    result.complete(doc);
+                    return;
+                }
+                if(isPrimary) primaryFailure = ex;
+                if(inFlight.decrementAndGet() == 0){
+                    // the primary failure is reported if both failed, since the hedge may only have been cancelled
+                    var failure = primaryFailure != null ? primaryFailure : ex;
+                    result.completeExceptionally(AsyncFetch.toFetchException(primary.url(), failure));
+                }
+            });
+        }
+    }
+
+    /**
+     * Latencies of the most recent successful requests to a host. Guarded by its own monitor.
+     */
+    static class HostLatency {
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        private int next;
+        private int samples;
+        private volatile long hedgeDelayNanos = -1;
+
+        synchronized void record(long latencyNanos){
+            latencies[next] = latencyNanos;
+            next = (next + 1) % LATENCY_WINDOW;
+            if(samples < LATENCY_WINDOW) samples++;
+            // sorting the window on every response would be wasteful; the p95 is refreshed every few samples instead
+            if(samples >= MIN_SAMPLES && next % 5 == 0){
+                var window = Arrays.copyOf(latencies, samples);
+                Arrays.sort(window);
+                hedgeDelayNanos = window[(int) Math.ceil(0.95 * window.length) - 1];
+            }
+        }
+
+        long hedgeDelayNanos(){
+            return hedgeDelayNanos;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import org.helvidios.crawler.model.HtmlDocument;
+
+/**
+ * An implementation of {@link HttpClient} that records latency, status code and size of every attempt in {@link HttpMetrics}.
+ * It wraps {@link BasicHttpClient} directly, so every retry is recorded as a separate attempt and time spent waiting
+ * for a rate limit permit is not counted as latency.
+ */
+class HttpClientWithMetrics implements HttpClient {
+    private final HttpClient httpClient;
+    private final HttpMetrics metrics;
+
+    /**
+     * Creates a new instance of {@link HttpClientWithMetrics}
+     * @param metrics metrics to record attempts in
+     * @param httpClient underlying http client to which actual page downloading will be delegated
+     */
+    HttpClientWithMetrics(HttpMetrics metrics, HttpClient httpClient){
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+        this.metrics = Objects.requireNonNull(metrics, "metrics must not be null");
+    }
+
+    @Override
+    public HtmlDocument send(FetchRequest request) throws FetchException {
+        var start = System.nanoTime();
+        try{
+            var doc = httpClient.send(request);
+            record(request, start, doc, null);
+            return doc;
+        }
+        catch(FetchException | RuntimeException ex){
+            record(request, start, null, ex);
+            throw ex;
+        }
+    }
+
+    @Override
+    public CompletableFuture<HtmlDocument> sendAsync(FetchRequest request) {
+        var start = System.nanoTime();
+        return httpClient.sendAsync(request).whenComplete((doc, ex) -> record(request, start, doc, ex));
+    }
+
+    @Override
+    public CompletableFuture<Void> prewarm(Collection<URI> urls) {
+        return httpClient.prewarm(urls);
+    }
+
+    private void record(FetchRequest request, long start, HtmlDocument doc, Throwable failure){
+        var latency = System.nanoTime() - start;
+        if(doc != null){
+            metrics.onResponse(request.url(), 200, latency, doc.transferSize(), doc.contentBytes().length);
+        }else{
+            metrics.onResponse(request.url(), AsyncFetch.statusCode(failure).orElse(HttpMetrics.NO_RESPONSE), latency, 0, 0);
+        }
+    }
+}
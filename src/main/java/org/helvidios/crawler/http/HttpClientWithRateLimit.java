@@ -1,88 +1,174 @@
 package org.helvidios.crawler.http;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-import com.google.common.util.concurrent.RateLimiter;
+import java.util.concurrent.TimeUnit;
 import org.helvidios.crawler.model.HtmlDocument;
 
 /**
- * An implementation of {@link HttpClient} with rate limiting based on Guava's {@link RateLimiter}.
+ * An implementation of {@link HttpClient} with rate limiting based on {@link RateLimit}.
+ * The limit can be shared by all requests or kept separately for every host.
+ * A 429 Too Many Requests response backs off only the host that sent it.
  */
 class HttpClientWithRateLimit implements HttpClient {
-    private final RateLimiter rateLimiter;
+    private final RateLimit rateLimit;
     private final HttpClient httpClient;
+    private final HostBackoff backoff = new HostBackoff();
+    private final ScheduledExecutorService scheduler;
+    private final HttpMetrics metrics;
 
-    private final Lock lock = new ReentrantLock();
-    private final Condition signal = lock.newCondition();
-    private boolean blocked = false;
+    /**
+     * Creates a new instance of {@link HttpClientWithRateLimit} with a single limit shared by all requests.
+     * @param requestsPerSecond max number of QPS (Queries Per Second)
+     * @param httpClient underlying http client to which actual page downloading will be delegated
+     */
+    HttpClientWithRateLimit(int requestsPerSecond, HttpClient httpClient){
+        this(RateLimit.global(requestsPerSecond), httpClient);
+    }
 
     /**
      * Creates a new instance of {@link HttpClientWithRateLimit}
+     * @param rateLimit source of request permits
      * @param httpClient underlying http client to which actual page downloading will be delegated
      */
-    HttpClientWithRateLimit(int requestsPerSecond, HttpClient httpClient){
+    HttpClientWithRateLimit(RateLimit rateLimit, HttpClient httpClient){
+        this(rateLimit, Delays.sharedScheduler(), httpClient);
+    }
+
+    /**
+     * Creates a new instance of {@link HttpClientWithRateLimit}
+     * @param rateLimit source of request permits
+     * @param scheduler timer on which asynchronous requests wait for their permit
+     * @param httpClient underlying http client to which actual page downloading will be delegated
+     */
+    HttpClientWithRateLimit(RateLimit rateLimit, ScheduledExecutorService scheduler, HttpClient httpClient){
+        this(rateLimit, scheduler, null, httpClient);
+    }
+
+    /**
+     * Creates a new instance of {@link HttpClientWithRateLimit}
+     * @param rateLimit source of request permits
+     * @param scheduler timer on which asynchronous requests wait for their permit
+     * @param metrics metrics to record waiting times in, or null
+     * @param httpClient underlying http client to which actual page downloading will be delegated
+     */
+    HttpClientWithRateLimit(RateLimit rateLimit, ScheduledExecutorService scheduler, HttpMetrics metrics, HttpClient httpClient){
+        this.metrics = metrics;
+        this.scheduler = Objects.requireNonNull(scheduler, "scheduler must not be null");
         this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
-        this.rateLimiter = RateLimiter.create(requestsPerSecond);
+        this.rateLimit = Objects.requireNonNull(rateLimit, "rateLimit must not be null");
     }
 
     @Override
-    public HtmlDocument fetch(URI url) throws FetchException {
+    public HtmlDocument send(FetchRequest request) throws FetchException {
+        var url = request.url();
         try{
-            awaitWhileBlocked();
-            rateLimiter.acquire();
-            return httpClient.fetch(url);
+            sleep(request, backoffNanos(url));
+            // a request that has run out of time must not take a permit from requests that can still use it
+            request.checkDeadline(0);
+            sleep(request, permitNanos(url));
+            return httpClient.send(request);
         }
         catch(TooManyRequestsException ex){
-            blockAllRequests();
-            var jitter = ThreadLocalRandom.current().nextInt(200, 1500);
-            await((ex.retryAfter() * 1000) + jitter);
-            unblockAllRequests();
+            backOff(ex);
             throw ex;
         }
+        catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new FetchException(url, ex);
+        }
     }
 
-    private void await(long waitTime){
-        try {
-            Thread.sleep(waitTime);
-        } catch (InterruptedException e) {}
+    @Override
+    public CompletableFuture<HtmlDocument> sendAsync(FetchRequest request) {
+        var url = request.url();
+        return delay(request, backoffNanos(url))
+            .thenCompose(ignored -> permit(request))
+            .thenCompose(ignored -> httpClient.sendAsync(request))
+            .exceptionallyCompose(ex -> {
+                var cause = AsyncFetch.unwrap(ex);
+                if(cause instanceof TooManyRequestsException tmrex){
+                    backOff(tmrex);
+                }
+                return AsyncFetch.failed(url, cause);
+            });
     }
 
-    private void awaitWhileBlocked(){
-        try{
-            lock.lock();
-            while(blocked){
-                try{
-                    signal.await();
-                }catch(InterruptedException ex){}
-            }
-        }
-        finally{
-            lock.unlock();
-        }
+    /**
+     * A warm-up sends a request to every distinct origin, so each origin waits for a permit like a page request would.
+     */
+    @Override
+    public CompletableFuture<Void> prewarm(Collection<URI> urls) {
+        var warmups = urls.stream()
+            .filter(url -> url.getHost() != null)
+            .map(BasicHttpClient::origin)
+            .distinct()
+            .map(origin -> Delays.after(scheduler, backoffNanos(origin))
+                .thenCompose(ignored -> Delays.after(scheduler, permitNanos(origin)))
+                .thenCompose(ignored -> httpClient.prewarm(List.of(origin))))
+            .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(warmups);
+    }
+
+    /**
+     * Holds back requests to the host that responded with 429 for the duration requested by the server plus some jitter.
+     * Requests to other hosts are not affected.
+     * @param ex 429 response received from the server
+     */
+    private void backOff(TooManyRequestsException ex){
+        var jitter = ThreadLocalRandom.current().nextInt(200, 1500);
+        backoff.backOff(ex.url(), Duration.ofSeconds(ex.retryAfter()).plusMillis(jitter));
+    }
+
+    private long backoffNanos(URI url){
+        var nanos = backoff.remainingNanos(url);
+        if(metrics != null) metrics.onBackoffWait(nanos);
+        return nanos;
+    }
+
+    private long permitNanos(URI url){
+        var nanos = rateLimit.reserve(url);
+        if(metrics != null) metrics.onRateLimitWait(nanos);
+        return nanos;
+    }
+
+    /**
+     * Waits for the given time unless the wait would outlast the request deadline, in which case fails right away.
+     */
+    private static void sleep(FetchRequest request, long nanos) throws InterruptedException, DeadlineExceededException {
+        request.checkDeadline(nanos);
+        if(nanos > 0) TimeUnit.NANOSECONDS.sleep(nanos);
     }
 
-    private void blockAllRequests(){
+    /**
+     * Reserves a permit and returns a future that completes when it may be used. A request whose deadline has passed,
+     * e.g. while it was backing off, fails without reserving a permit.
+     */
+    private CompletableFuture<Void> permit(FetchRequest request){
         try{
-            lock.lock();
-            blocked = true;
-        }
-        finally{
-            lock.unlock();
+            request.checkDeadline(0);
+        }catch(DeadlineExceededException ex){
+            return CompletableFuture.failedFuture(ex);
         }
+        return delay(request, permitNanos(request.url()));
     }
 
-    private void unblockAllRequests(){
+    /**
+     * Returns a future that completes after the given delay, without parking the calling thread.
+     * Fails right away if the wait would outlast the request deadline.
+     */
+    private CompletableFuture<Void> delay(FetchRequest request, long nanos){
         try{
-            lock.lock();
-            blocked = false;
-            signal.signalAll();
-        }
-        finally{
-            lock.unlock();
+            request.checkDeadline(nanos);
+        }catch(DeadlineExceededException ex){
+            return CompletableFuture.failedFuture(ex);
         }
+        return Delays.after(scheduler, nanos);
     }
 }
@@ -1,49 +1,130 @@
 package org.helvidios.crawler.http;
 
 import java.net.URI;
+import java.util.Collection;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.helvidios.crawler.model.HtmlDocument;
 import io.github.resilience4j.retry.IntervalFunction;
-import io.github.resilience4j.retry.Retry;
-import io.github.resilience4j.retry.RetryConfig;
-import io.vavr.CheckedFunction1;
 
+/**
+ * An implementation of {@link HttpClient} that retries failed requests with exponential random backoff.
+ * Only failures accepted by the {@link RetryPolicy} are retried, and if a {@link RetryBudget} is set
+ * a retry also needs a token from the budget.
+ */
 class HttpClientWithRetry implements HttpClient {
     private final HttpClient httpClient;
-    private final Retry fetchRetry;
+    private final int retries;
+    private final IntervalFunction intervalFn;
+    private final RetryPolicy retryPolicy;
+    private final RetryBudget retryBudget;
+    private final ScheduledExecutorService scheduler;
+    private final HttpMetrics metrics;
 
     private final int INITIAL_INTERVAL = 500;
     private final double MULTIPLIER = 1.75;
     private final double RANDOMIZATION_FACTOR = 0.5;
 
     HttpClientWithRetry(int retries, HttpClient httpClient){
-        this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+        this(retries, RetryPolicy.transientFailures(), null, httpClient);
+    }
 
-        var intervalFn = IntervalFunction.ofExponentialRandomBackoff(INITIAL_INTERVAL, MULTIPLIER, RANDOMIZATION_FACTOR);
+    HttpClientWithRetry(int retries, RetryPolicy retryPolicy, RetryBudget retryBudget, HttpClient httpClient){
+        this(retries, retryPolicy, retryBudget, Delays.sharedScheduler(), null, httpClient);
+    }
 
-        var retryConfig = RetryConfig.custom()
-            .maxAttempts(retries)
-            .intervalFunction(intervalFn)
-            .build();
-        
-        fetchRetry = Retry.of("fetch", retryConfig);
+    /**
+     * Creates a new instance of {@link HttpClientWithRetry}
+     * @param retries max number of attempts
+     * @param retryPolicy decides which failures are retried
+     * @param retryBudget caps retries to a share of all requests, or null for no cap
+     * @param scheduler timer on which asynchronous re-attempts are scheduled
+     * @param metrics metrics to record retries and backoff in, or null
+     * @param httpClient underlying http client to which actual page downloading will be delegated
+     */
+    HttpClientWithRetry(int retries, RetryPolicy retryPolicy, RetryBudget retryBudget, ScheduledExecutorService scheduler, HttpMetrics metrics, HttpClient httpClient){
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+        this.retryPolicy = Objects.requireNonNull(retryPolicy, "retryPolicy must not be null");
+        this.retryBudget = retryBudget;
+        this.scheduler = Objects.requireNonNull(scheduler, "scheduler must not be null");
+        this.metrics = metrics;
+        this.retries = retries;
+        this.intervalFn = IntervalFunction.ofExponentialRandomBackoff(INITIAL_INTERVAL, MULTIPLIER, RANDOMIZATION_FACTOR);
     }
 
+    /**
+     * Sleeps between attempts on the calling thread. Use {@link #sendAsync(FetchRequest)} to hand the thread back during backoff.
+     */
     @Override
-    public HtmlDocument fetch(URI url) throws FetchException {
-        
-        CheckedFunction1<URI, HtmlDocument> fetchFunction = Retry.decorateCheckedFunction(
-            fetchRetry, httpClient::fetch);
-        
-        try{
-            return fetchFunction.apply(url);
-        }
-        catch(Throwable t){
-            if(t instanceof FetchException ex){
-                throw ex;
+    public HtmlDocument send(FetchRequest request) throws FetchException {
+        if(retryBudget != null) retryBudget.onRequest();
+
+        for(int attempt = 1; ; attempt++){
+            long backoff;
+            try{
+                return httpClient.send(request);
             }
+            catch(FetchException ex){
+                backoff = nextBackoff(request, ex, attempt);
+                if(backoff < 0) throw ex;
+            }
+            catch(RuntimeException ex){
+                backoff = nextBackoff(request, ex, attempt);
+                if(backoff < 0) throw new FetchException(request.url(), ex);
+            }
+
+            try{
+                Thread.sleep(backoff);
+            }catch(InterruptedException ex){
+                Thread.currentThread().interrupt();
+                throw new FetchException(request.url(), ex);
+            }
+        }
+    }
+
+    @Override
+    public CompletableFuture<HtmlDocument> sendAsync(FetchRequest request) {
+        if(retryBudget != null) retryBudget.onRequest();
+        return attemptAsync(request, 1);
+    }
+
+    @Override
+    public CompletableFuture<Void> prewarm(Collection<URI> urls) {
+        return httpClient.prewarm(urls);
+    }
+
+    /**
+     * Performs an asynchronous attempt and, on failure, schedules the next one on the shared timer after the backoff
+     * interval instead of sleeping on the calling thread.
+     */
+    private CompletableFuture<HtmlDocument> attemptAsync(FetchRequest request, int attempt){
+        return httpClient.sendAsync(request).exceptionallyCompose(ex -> {
+            var backoff = nextBackoff(request, AsyncFetch.unwrap(ex), attempt);
+            if(backoff < 0) return AsyncFetch.failed(request.url(), ex);
+
+            return Delays.after(scheduler, TimeUnit.MILLISECONDS.toNanos(backoff))
+                .thenCompose(ignored -> attemptAsync(request, attempt + 1));
+        });
+    }
+
+    /**
+     * Decides whether a failed attempt is retried and draws its backoff.
+     * A retry is skipped if its backoff would outlast the request deadline; the caller then gets the last real failure.
+     * The budget is consulted last, so a token is only spent on a retry that will actually be sent.
+     * @return backoff in milliseconds, or -1 if the request must not be retried
+     */
+    private long nextBackoff(FetchRequest request, Throwable failure, int attempt){
+        if(attempt >= retries || !retryPolicy.isRetryable(failure)) return -1;
 
-            throw new FetchException(url, t);
+        long backoff = intervalFn.apply(attempt);
+        if(TimeUnit.MILLISECONDS.toNanos(backoff) >= request.remainingNanos()) return -1;
+        if(retryBudget != null && !retryBudget.tryRetry()) return -1;
+        if(metrics != null){
+            metrics.onRetry();
+            metrics.onBackoffWait(TimeUnit.MILLISECONDS.toNanos(backoff));
         }
+        return backoff;
     }
 }
@@ -0,0 +1,85 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import org.helvidios.crawler.model.HtmlDocument;
+
+/**
+ * An implementation of {@link HttpClient} that revalidates previously downloaded pages with conditional requests.
+ * If a page was served with an ETag or Last-Modified validator, the next request for it carries
+ * If-None-Match / If-Modified-Since headers and a 304 Not Modified response is turned into the stored copy,
+ * without transferring the body again. On the asynchronous path the stored copy is looked up on an executor, since a
+ * store may read it from a database and the calling thread may be a timer thread that must not block.
+ */
+class HttpClientWithRevalidation implements HttpClient {
+    private final HttpClient httpClient;
+    private final ValidatorStore validatorStore;
+    private final Executor executor;
+
+    /**
+     * Creates a new instance of {@link HttpClientWithRevalidation}
+     * @param validatorStore store of previously downloaded pages
+     * @param executor executor that runs store lookups for {@link #sendAsync(FetchRequest)}
+     * @param httpClient underlying http client to which actual page downloading will be delegated
+     */
+    HttpClientWithRevalidation(ValidatorStore validatorStore, Executor executor, HttpClient httpClient){
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+        this.validatorStore = Objects.requireNonNull(validatorStore, "validatorStore must not be null");
+        this.executor = Objects.requireNonNull(executor, "executor must not be null");
+    }
+
+    @Override
+    public HtmlDocument send(FetchRequest request) throws FetchException {
+        var stored = validatorStore.get(request.url());
+        try{
+            var doc = httpClient.send(conditional(request, stored));
+            validatorStore.put(doc);
+            return doc;
+        }
+        catch(NotModifiedException ex){
+            if(stored.isEmpty()) throw ex;
+            return stored.get();
+        }
+    }
+
+    @Override
+    public CompletableFuture<HtmlDocument> sendAsync(FetchRequest request) {
+        return CompletableFuture.supplyAsync(() -> validatorStore.get(request.url()), executor)
+            .thenCompose(stored -> sendAsync(request, stored));
+    }
+
+    private CompletableFuture<HtmlDocument> sendAsync(FetchRequest request, Optional<HtmlDocument> stored) {
+        return httpClient.sendAsync(conditional(request, stored))
+            .handle((doc, ex) -> {
+                if(ex == null){
+                    validatorStore.put(doc);
+                    return CompletableFuture.completedFuture(doc);
+                }
+                if(AsyncFetch.unwrap(ex) instanceof NotModifiedException && stored.isPresent()){
+                    return CompletableFuture.completedFuture(stored.get());
+                }
+                return AsyncFetch.<HtmlDocument>failed(request.url(), ex);
+            })
+            .thenCompose(result -> result);
+    }
+
+    @Override
+    public CompletableFuture<Void> prewarm(Collection<URI> urls) {
+        return httpClient.prewarm(urls);
+    }
+
+    private static FetchRequest conditional(FetchRequest request, Optional<HtmlDocument> stored){
+        if(stored.isEmpty()) return request;
+
+        var conditional = request;
+        var etag = stored.get().etag();
+        if(etag.isPresent()) conditional = conditional.withHeader("If-None-Match", etag.get());
+        var lastModified = stored.get().lastModified();
+        if(lastModified.isPresent()) conditional = conditional.withHeader("If-Modified-Since", lastModified.get());
+        return conditional;
+    }
+}
@@ -0,0 +1,91 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import org.helvidios.crawler.model.HtmlDocument;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * An implementation of {@link HttpClient} that only fetches URLs allowed by the host's robots.txt.
+ * Disallowed URLs fail with {@link DisallowedByRobotsException} without a request. A Crawl-delay found in
+ * robots.txt caps the host's rate in the per-host rate limit, if there is one. The cap is set once per download of
+ * robots.txt rather than on every request.
+ */
+class HttpClientWithRobotsTxt implements HttpClient {
+    private final HttpClient httpClient;
+    private final RobotsTxtCache robots;
+    private final PerHostRateLimit rateLimit;
+    // rules whose Crawl-delay has been applied, compared by identity and held weakly, so a new download applies again
+    private final Cache<RobotsTxt, Boolean> appliedRules = CacheBuilder.newBuilder().weakKeys().build();
+
+    /**
+     * Creates a new instance of {@link HttpClientWithRobotsTxt}
+     * @param robots cache of robots.txt rules
+     * @param rateLimit per-host rate limit that honors Crawl-delay, or null to ignore Crawl-delay
+     * @param httpClient underlying http client to which actual page downloading will be delegated
+     */
+    HttpClientWithRobotsTxt(RobotsTxtCache robots, PerHostRateLimit rateLimit, HttpClient httpClient){
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+        this.robots = Objects.requireNonNull(robots, "robots must not be null");
+        this.rateLimit = rateLimit;
+    }
+
+    @Override
+    public HtmlDocument send(FetchRequest request) throws FetchException {
+        if(!isRobotsTxt(request.url())) check(request.url(), robots.get(request.url()));
+        return httpClient.send(request);
+    }
+
+    @Override
+    public CompletableFuture<HtmlDocument> sendAsync(FetchRequest request) {
+        if(isRobotsTxt(request.url())) return httpClient.sendAsync(request);
+        return robots.getAsync(request.url()).thenCompose(rules -> {
+            try{
+                check(request.url(), rules);
+            }catch(DisallowedByRobotsException ex){
+                return CompletableFuture.failedFuture(ex);
+            }
+            return httpClient.sendAsync(request);
+        });
+    }
+
+    /**
+     * Warms up only origins whose robots.txt allows the crawler to fetch their root, which is what a warm-up requests.
+     * Downloading robots.txt itself already opens a connection to the origin.
+     */
+    @Override
+    public CompletableFuture<Void> prewarm(Collection<URI> urls) {
+        var warmups = urls.stream()
+            .filter(url -> url.getHost() != null)
+            .map(BasicHttpClient::origin)
+            .distinct()
+            .map(origin -> robots.getAsync(origin)
+                .thenCompose(rules -> rules.isAllowed(origin)
+                    ? httpClient.prewarm(List.of(origin))
+                    : CompletableFuture.<Void>completedFuture(null)))
+            .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(warmups);
+    }
+
+    private void check(URI url, RobotsTxt rules) throws DisallowedByRobotsException {
+        if(!rules.isAllowed(url)) throw new DisallowedByRobotsException(url);
+        if(rateLimit != null){
+            rules.crawlDelay().ifPresent(delay -> {
+                if(appliedRules.asMap().putIfAbsent(rules, Boolean.TRUE) == null){
+                    rateLimit.limitRate(PerHostRateLimit.host(url), delay);
+                }
+            });
+        }
+    }
+
+    /**
+     * robots.txt itself is always allowed, which also keeps a cache built on top of this client from waiting on itself.
+     */
+    private static boolean isRobotsTxt(URI url){
+        return "/robots.txt".equals(url.getRawPath());
+    }
+}
@@ -0,0 +1,171 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects request metrics of an {@link HttpClient}: latency histograms per host and per status code, bytes received
+ * before and after Content-Encoding was removed,
+ * retries, 429 responses and time spent waiting for rate limit permits and in back-off.
+ * Recording is lock-free and cheap enough to stay on in production; {@link #snapshot()} reads the current values.
+ * Pass an instance to {@link HttpClient.Builder#withMetrics(HttpMetrics)}; one instance can be shared by several clients.
+ */
+public final class HttpMetrics {
+    /**
+     * Host key under which requests to hosts beyond the max number of tracked hosts are recorded.
+     */
+    public static final String OTHER_HOSTS = "*";
+
+    /**
+     * Status key under which requests that failed without an HTTP response are recorded, e.g. on a network error.
+     */
+    public static final int NO_RESPONSE = 0;
+
+    private final int maxHosts;
+    private final Map<String, LatencyHistogram> latencyByHost = new ConcurrentHashMap<>();
+    private final Map<Integer, LatencyHistogram> latencyByStatus = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LongAdder bytesDecoded = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder tooManyRequests = new LongAdder();
+    private final LongAdder rateLimitWaitNanos = new LongAdder();
+    private final LongAdder backoffWaitNanos = new LongAdder();
+
+    private HttpMetrics(int maxHosts){
+        this.maxHosts = maxHosts;
+    }
+
+    /**
+     * Creates metrics that keep a separate latency histogram for up to 1,000 hosts.
+     * @return {@link HttpMetrics}
+     */
+    public static HttpMetrics create(){
+        return create(1_000);
+    }
+
+    /**
+     * Creates metrics that keep a separate latency histogram for up to {@code maxHosts} hosts.
+     * Requests to further hosts are recorded under {@link #OTHER_HOSTS}.
+     * @param maxHosts max number of hosts with their own histogram
+     * @return {@link HttpMetrics}
+     * @throws IllegalArgumentException if maxHosts < 1
+     */
+    public static HttpMetrics create(int maxHosts){
+        if(maxHosts < 1) throw new IllegalArgumentException("maxHosts must be greater than zero");
+        return new HttpMetrics(maxHosts);
+    }
+
+    /**
+     * Returns a point-in-time copy of all metrics. Values recorded concurrently may or may not be included.
+     * @return {@link Snapshot}
+     */
+    public Snapshot snapshot(){
+        var byHost = new TreeMap<String, LatencySummary>();
+        latencyByHost.forEach((host, histogram) -> byHost.put(host, histogram.summary()));
+        var byStatus = new TreeMap<Integer, LatencySummary>();
+        latencyByStatus.forEach((status, histogram) -> byStatus.put(status, histogram.summary()));
+
+        return new Snapshot(
+            requests.sum(),
+            failures.sum(),
+            bytesReceived.sum(),
+            bytesDecoded.sum(),
+            retries.sum(),
+            tooManyRequests.sum(),
+            Duration.ofNanos(rateLimitWaitNanos.sum()),
+            Duration.ofNanos(backoffWaitNanos.sum()),
+            Collections.unmodifiableMap(byHost),
+            Collections.unmodifiableMap(byStatus));
+    }
+
+    /**
+     * Records a completed attempt.
+     * @param url requested URL
+     * @param status HTTP status code, or {@link #NO_RESPONSE}
+     * @param latencyNanos time from sending the request until the body was read or the attempt failed
+     * @param encodedBytes number of body bytes received over the network
+     * @param decodedBytes number of body bytes after Content-Encoding was removed
+     */
+    void onResponse(URI url, int status, long latencyNanos, long encodedBytes, long decodedBytes){
+        requests.increment();
+        if(status != 200) failures.increment();
+        if(status == 429) tooManyRequests.increment();
+        bytesReceived.add(encodedBytes);
+        bytesDecoded.add(decodedBytes);
+        hostHistogram(PerHostRateLimit.host(url)).record(latencyNanos);
+        latencyByStatus.computeIfAbsent(status, s -> new LatencyHistogram()).record(latencyNanos);
+    }
+
+    /**
+     * Records a retry of a failed attempt.
+     */
+    void onRetry(){
+        retries.increment();
+    }
+
+    /**
+     * Records time a request waited for a rate limit permit.
+     * @param nanos wait time
+     */
+    void onRateLimitWait(long nanos){
+        if(nanos > 0) rateLimitWaitNanos.add(nanos);
+    }
+
+    /**
+     * Records time a request was held back after a 429 response or before a retry.
+     * @param nanos wait time
+     */
+    void onBackoffWait(long nanos){
+        if(nanos > 0) backoffWaitNanos.add(nanos);
+    }
+
+    private LatencyHistogram hostHistogram(String host){
+        var histogram = latencyByHost.get(host);
+        if(histogram != null) return histogram;
+        // the cap is approximate under contention, which only matters for a handful of extra hosts
+        var key = latencyByHost.size() < maxHosts ? host : OTHER_HOSTS;
+        return latencyByHost.computeIfAbsent(key, k -> new LatencyHistogram());
+    }
+
+    /**
+     * Latency percentiles of a group of requests. Percentiles are accurate to within 12.5%.
+     * @param count number of requests
+     * @param p50 median latency
+     * @param p95 95th percentile latency
+     * @param p99 99th percentile latency
+     * @param max max latency
+     */
+    public record LatencySummary(long count, Duration p50, Duration p95, Duration p99, Duration max) {}
+
+    /**
+     * Point-in-time copy of {@link HttpMetrics}.
+     * @param requests number of completed attempts, including retries
+     * @param failures number of attempts that did not end with 200 OK
+     * @param bytesReceived number of body bytes received over the network
+     * @param bytesDecoded number of body bytes after Content-Encoding such as gzip was removed
+     * @param retries number of retried attempts
+     * @param tooManyRequests number of 429 Too Many Requests responses
+     * @param rateLimitWait total time requests waited for a rate limit permit
+     * @param backoffWait total time requests were held back after a 429 response or before a retry
+     * @param latencyByHost latency of attempts per host
+     * @param latencyByStatus latency of attempts per HTTP status code, with {@link #NO_RESPONSE} for failures without one
+     */
+    public record Snapshot(
+        long requests,
+        long failures,
+        long bytesReceived,
+        long bytesDecoded,
+        long retries,
+        long tooManyRequests,
+        Duration rateLimitWait,
+        Duration backoffWait,
+        Map<String, LatencySummary> latencyByHost,
+        Map<Integer, LatencySummary> latencyByStatus) {}
+}
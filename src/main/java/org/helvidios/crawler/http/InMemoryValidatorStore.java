@@ -0,0 +1,45 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Objects;
+import java.util.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.helvidios.crawler.model.Url;
+
+/**
+ * Keeps the doc id, validators and encoded content of pages in a bounded Guava cache, keyed by canonical URL, and
+ * rebuilds the page for the requested spelling of its URL. The content is kept as bytes, never decoded.
+ */
+class InMemoryValidatorStore implements ValidatorStore {
+    private final Cache<Url, Entry> entries;
+
+    private record Entry(long docId, byte[] content, Charset charset, String etag, String lastModified){}
+
+    InMemoryValidatorStore(long maxDocuments){
+        this.entries = CacheBuilder.newBuilder()
+            .maximumSize(maxDocuments)
+            .build();
+    }
+
+    @Override
+    public Optional<HtmlDocument> get(URI url) {
+        var entry = entries.getIfPresent(Url.of(url));
+        if(entry == null) return Optional.empty();
+        return Optional.of(HtmlDocument.Builder()
+            .withId(entry.docId())
+            .withUrl(url)
+            .withContent(entry.content(), entry.charset())
+            .withValidators(entry.etag(), entry.lastModified())
+            .build());
+    }
+
+    @Override
+    public void put(HtmlDocument doc) {
+        Objects.requireNonNull(doc, "doc must not be null");
+        if(doc.etag().isEmpty() && doc.lastModified().isEmpty()) return;
+        entries.put(Url.of(doc.url()), new Entry(doc.docId(), doc.contentBytes(), doc.charset(), doc.etag().orElse(null), doc.lastModified().orElse(null)));
+    }
+}
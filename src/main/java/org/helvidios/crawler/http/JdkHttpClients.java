@@ -0,0 +1,63 @@
+package org.helvidios.crawler.http;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpClient.Redirect;
+import java.net.http.HttpClient.Version;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Creates the underlying {@link HttpClient} from standard library. Every JDK client owns its own connection pool, so
+ * clients built with the same settings can be shared to reuse open connections and TLS sessions.
+ * Shared clients are held weakly: once no crawler client built on top of one is referenced any more, the JDK client
+ * is collected, which also shuts down its connection pool and selector thread.
+ */
+final class JdkHttpClients {
+    private static final Cache<Settings, HttpClient> shared = CacheBuilder.newBuilder().weakValues().build();
+
+    private JdkHttpClients(){}
+
+    /**
+     * Connection level settings of a JDK client.
+     * @param executor executor for asynchronous tasks, or null for the JDK default
+     * @param connectTimeout max time to establish a connection, or null for no limit
+     * @param version preferred HTTP version
+     */
+    record Settings(Executor executor, Duration connectTimeout, Version version) {
+        Settings {
+            Objects.requireNonNull(version, "version must not be null");
+        }
+    }
+
+    /**
+     * Creates a new JDK client with its own connection pool.
+     * @param settings connection settings
+     * @return JDK client
+     */
+    static HttpClient create(Settings settings){
+        var builder = HttpClient.newBuilder()
+            .version(settings.version())
+            .followRedirects(Redirect.NORMAL);
+        if(settings.executor() != null) builder.executor(settings.executor());
+        if(settings.connectTimeout() != null) builder.connectTimeout(settings.connectTimeout());
+        return builder.build();
+    }
+
+    /**
+     * Returns a process-wide JDK client for the given settings, creating it on first use or after the previous one
+     * was collected.
+     * @param settings connection settings
+     * @return shared JDK client
+     */
+    static HttpClient shared(Settings settings){
+        try{
+            return shared.get(settings, () -> create(settings));
+        }catch(ExecutionException ex){
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+}
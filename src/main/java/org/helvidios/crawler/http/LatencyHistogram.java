@@ -0,0 +1,91 @@
+package org.helvidios.crawler.http;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear latency histogram with microsecond resolution. Every power of two is split into 8 buckets,
+ * so a percentile is off by at most 12.5%, and recording is a single atomic increment. Latencies above 2^31 µs
+ * (about 36 minutes) fall into the last bucket.
+ */
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 31;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    /**
+     * Records a latency.
+     * @param nanos latency in nanoseconds
+     */
+    void record(long nanos){
+        var micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        counts.incrementAndGet(bucket(micros));
+        total.incrementAndGet();
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    /**
+     * Returns number of recorded latencies.
+     * @return count
+     */
+    long count(){
+        return total.get();
+    }
+
+    /**
+     * Returns summary of recorded latencies. Counts recorded concurrently may or may not be included.
+     * @return {@link HttpMetrics.LatencySummary}
+     */
+    HttpMetrics.LatencySummary summary(){
+        var snapshot = new long[BUCKETS];
+        long count = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        var max = Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(maxMicros.get()));
+        return new HttpMetrics.LatencySummary(
+            count,
+            percentile(snapshot, count, 0.50, max),
+            percentile(snapshot, count, 0.95, max),
+            percentile(snapshot, count, 0.99, max),
+            max);
+    }
+
+    private static Duration percentile(long[] snapshot, long count, double quantile, Duration max){
+        if(count == 0) return Duration.ZERO;
+        var rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += snapshot[i];
+            if(seen >= rank){
+                var micros = Math.min(upperBound(i), TimeUnit.NANOSECONDS.toMicros(max.toNanos()));
+                return Duration.ofNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+            }
+        }
+        return max;
+    }
+
+    static int bucket(long micros){
+        if(micros < SUB_BUCKETS) return (int) micros;
+        var exponent = Math.min(MAX_EXPONENT, 63 - Long.numberOfLeadingZeros(micros));
+        if(exponent == MAX_EXPONENT && micros >= (1L << (MAX_EXPONENT + 1))) return BUCKETS - 1;
+        var subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBound(int bucket){
+        if(bucket < SUB_BUCKETS) return bucket;
+        var exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        var subBucket = bucket % SUB_BUCKETS;
+        var width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width - 1;
+    }
+}
@@ -0,0 +1,14 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+
+/**
+ * Indicates that the server responded with status 304 Not Modified to a conditional request.
+ * The copy of the page that the client already holds is still current.
+ */
+public class NotModifiedException extends FetchException {
+
+    NotModifiedException(URI url) {
+        super(url, null);
+    }
+}
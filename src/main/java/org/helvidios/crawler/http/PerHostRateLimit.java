@@ -0,0 +1,140 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link RateLimit} with an independent {@link TokenBucket} for every host, so that a slow or strict host
+ * does not consume the budget of other hosts. Buckets that have not been used for a while are evicted.
+ * Configured rates and min intervals are kept per host and applied again when an evicted host's bucket is recreated.
+ */
+class PerHostRateLimit implements RateLimit {
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Double> overrides;
+    private final ConcurrentMap<String, Duration> minIntervals = new ConcurrentHashMap<>();
+    private final double defaultRequestsPerSecond;
+    private final long idleTimeoutNanos;
+    private final AtomicLong lastEvictionNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * Creates a new instance of {@link PerHostRateLimit}
+     * @param defaultRequestsPerSecond max QPS per host unless overridden
+     * @param overrides max QPS for specific hosts
+     * @param idleTimeout how long a host bucket may stay unused before it is evicted
+     */
+    PerHostRateLimit(double defaultRequestsPerSecond, Map<String, Double> overrides, Duration idleTimeout){
+        if(!(defaultRequestsPerSecond > 0)) throw new IllegalArgumentException("defaultRequestsPerSecond must be greater than zero");
+        this.defaultRequestsPerSecond = defaultRequestsPerSecond;
+        this.idleTimeoutNanos = Objects.requireNonNull(idleTimeout, "idleTimeout must not be null").toNanos();
+        this.overrides = new ConcurrentHashMap<>();
+        Objects.requireNonNull(overrides, "overrides must not be null").forEach(this::setRate);
+    }
+
+    @Override
+    public long reserve(URI url) {
+        evictIdleBuckets();
+        var host = host(url);
+        return buckets.computeIfAbsent(host, h -> newBucket(h, rate(h))).reserve();
+    }
+
+    @Override
+    public boolean tryReserve(URI url) {
+        evictIdleBuckets();
+        var host = host(url);
+        return buckets.computeIfAbsent(host, h -> newBucket(h, rate(h))).tryReserve();
+    }
+
+    /**
+     * Changes the rate for a specific host. Takes effect immediately if the host already has a bucket.
+     * @param host host name
+     * @param requestsPerSecond max QPS for the host
+     */
+    void setRate(String host, double requestsPerSecond){
+        if(!(requestsPerSecond > 0)) throw new IllegalArgumentException("requestsPerSecond must be greater than zero");
+        var key = normalize(host);
+        overrides.put(key, requestsPerSecond);
+        var bucket = buckets.get(key);
+        if(bucket != null) bucket.setRate(requestsPerSecond);
+    }
+
+    /**
+     * Changes the rate of a host's bucket without changing its configured rate. The adjustment is lost when
+     * the bucket is evicted for being idle, after which the host starts again at its configured rate.
+     * @param host host name
+     * @param requestsPerSecond max QPS for the host
+     */
+    void adjustRate(String host, double requestsPerSecond){
+        if(!(requestsPerSecond > 0)) throw new IllegalArgumentException("requestsPerSecond must be greater than zero");
+        buckets.compute(normalize(host), (h, bucket) -> {
+            if(bucket == null) return newBucket(h, requestsPerSecond);
+            bucket.setRate(requestsPerSecond);
+            return bucket;
+        });
+    }
+
+    /**
+     * Makes sure requests to a host are at least the given time apart, whatever rate the host is configured or adjusted to.
+     * Unlike {@link #adjustRate(String, double)}, the cap survives eviction of the bucket, so it only needs to be
+     * set once, e.g. whenever robots.txt of the host is downloaded.
+     * @param host host name
+     * @param minInterval min time between two requests
+     */
+    void limitRate(String host, Duration minInterval){
+        Objects.requireNonNull(minInterval, "minInterval must not be null");
+        var key = normalize(host);
+        minIntervals.put(key, minInterval);
+        var bucket = buckets.get(key);
+        if(bucket != null) bucket.setMinInterval(minInterval);
+    }
+
+    /**
+     * Returns the configured rate for a host.
+     * @param host host name
+     * @return max QPS for the host
+     */
+    double rate(String host){
+        return overrides.getOrDefault(normalize(host), defaultRequestsPerSecond);
+    }
+
+    /**
+     * Returns number of hosts that currently have a bucket.
+     * @return host count
+     */
+    int size(){
+        return buckets.size();
+    }
+
+    private TokenBucket newBucket(String host, double requestsPerSecond){
+        var bucket = TokenBucket.create(requestsPerSecond);
+        var minInterval = minIntervals.get(host);
+        if(minInterval != null) bucket.setMinInterval(minInterval);
+        return bucket;
+    }
+
+    /**
+     * Sweeps idle buckets at most once per idle timeout. Only the thread that wins the race performs the sweep.
+     */
+    private void evictIdleBuckets(){
+        var now = System.nanoTime();
+        var last = lastEvictionNanos.get();
+        if(now - last < idleTimeoutNanos || !lastEvictionNanos.compareAndSet(last, now)) return;
+
+        buckets.forEach((host, bucket) -> {
+            if(bucket.isIdle(now, idleTimeoutNanos)) buckets.remove(host, bucket);
+        });
+    }
+
+    static String host(URI url){
+        return normalize(url.getHost());
+    }
+
+    private static String normalize(String host){
+        return host == null ? "" : host.toLowerCase(Locale.ROOT);
+    }
+}
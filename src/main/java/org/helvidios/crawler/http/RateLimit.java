@@ -0,0 +1,71 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.util.Objects;
+
+/**
+ * Hands out permits for outgoing HTTP requests.
+ * Permits are reserved rather than awaited, so both blocking and asynchronous callers can decide how to wait.
+ */
+interface RateLimit {
+
+    /**
+     * Reserves a permit for a request to the given URL.
+     * @param url URL that is about to be fetched
+     * @return number of nanoseconds to wait before sending the request, zero if it can be sent right away
+     */
+    long reserve(URI url);
+
+    /**
+     * Reserves a permit only if the request can be sent right away, e.g. for an optional request such as a hedge.
+     * Limits that cannot tell without reserving never grant a permit.
+     * @param url URL that is about to be fetched
+     * @return true if a permit was reserved, false if the request would have to wait
+     */
+    default boolean tryReserve(URI url){
+        return false;
+    }
+
+    /**
+     * Returns a single limit shared by all requests regardless of host.
+     * @param requestsPerSecond max number of QPS (Queries Per Second)
+     * @return {@link RateLimit}
+     */
+    static RateLimit global(double requestsPerSecond){
+        var bucket = TokenBucket.create(requestsPerSecond);
+        return new RateLimit() {
+            @Override
+            public long reserve(URI url) {
+                return bucket.reserve();
+            }
+
+            @Override
+            public boolean tryReserve(URI url) {
+                return bucket.tryReserve();
+            }
+        };
+    }
+
+    /**
+     * Combines two limits. A request has to obtain a permit from both and waits for the later of the two.
+     * {@link #tryReserve(URI)} may use up a permit of the first limit when the second one has none.
+     * @param first first limit
+     * @param second second limit
+     * @return {@link RateLimit}
+     */
+    static RateLimit both(RateLimit first, RateLimit second){
+        Objects.requireNonNull(first, "first must not be null");
+        Objects.requireNonNull(second, "second must not be null");
+        return new RateLimit() {
+            @Override
+            public long reserve(URI url) {
+                return Math.max(first.reserve(url), second.reserve(url));
+            }
+
+            @Override
+            public boolean tryReserve(URI url) {
+                return first.tryReserve(url) && second.tryReserve(url);
+            }
+        };
+    }
+}
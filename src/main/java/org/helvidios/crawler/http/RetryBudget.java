@@ -0,0 +1,56 @@
+package org.helvidios.crawler.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps retries to a share of total traffic, so that an outage does not turn into a retry storm.
+ * Every first attempt deposits {@code ratio} of a token, up to {@code maxTokens}; every retry withdraws a whole token.
+ * When the budget is empty, failed requests fail without being retried until enough new requests have been sent.
+ */
+class RetryBudget {
+    private static final long TOKEN = 1000;
+    private final AtomicLong milliTokens;
+    private final long deposit;
+    private final long capacity;
+
+    /**
+     * Creates a new instance of {@link RetryBudget} that starts full.
+     * @param ratio max number of retries per request, e.g. 0.1 allows retries of up to 10% of requests
+     * @param maxTokens max number of retries that can be saved up while requests succeed
+     * @throws IllegalArgumentException if ratio is not positive or maxTokens < 1
+     */
+    RetryBudget(double ratio, int maxTokens){
+        if(!(ratio > 0)) throw new IllegalArgumentException("ratio must be greater than zero");
+        if(maxTokens < 1) throw new IllegalArgumentException("maxTokens must be greater than zero");
+        this.deposit = Math.max(1, Math.round(ratio * TOKEN));
+        this.capacity = maxTokens * TOKEN;
+        this.milliTokens = new AtomicLong(capacity);
+    }
+
+    /**
+     * Records a first attempt of a request.
+     */
+    void onRequest(){
+        milliTokens.accumulateAndGet(deposit, (current, add) -> Math.min(capacity, current + add));
+    }
+
+    /**
+     * Withdraws a token for a retry.
+     * @return true if the retry may be sent
+     */
+    boolean tryRetry(){
+        while(true){
+            var current = milliTokens.get();
+            if(current < TOKEN) return false;
+            if(milliTokens.compareAndSet(current, current - TOKEN)) return true;
+        }
+    }
+
+    /**
+     * Returns number of retries currently available.
+     * @return whole tokens
+     */
+    long available(){
+        return milliTokens.get() / TOKEN;
+    }
+}
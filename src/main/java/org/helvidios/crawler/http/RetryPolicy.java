@@ -0,0 +1,38 @@
+package org.helvidios.crawler.http;
+
+import java.io.IOException;
+
+/**
+ * Decides whether a failed request is worth another attempt.
+ */
+@FunctionalInterface
+public interface RetryPolicy {
+
+    /**
+     * Returns true if the request that failed with the given failure may succeed if sent again.
+     * @param failure failure of the last attempt, usually a {@link FetchException}
+     * @return true if the request should be retried
+     */
+    boolean isRetryable(Throwable failure);
+
+    /**
+     * Returns the default policy that retries only transient failures: timeouts and other network errors,
+     * 5xx responses and 429 Too Many Requests. Other 4xx responses, malformed URLs, unsupported content types
+     * and encodings, and hosts whose circuit breaker is open are never retried.
+     * @return {@link RetryPolicy}
+     */
+    public static RetryPolicy transientFailures(){
+        return failure -> {
+            var cause = AsyncFetch.unwrap(failure);
+            if(cause instanceof HostUnavailableException) return false;
+
+            var status = AsyncFetch.statusCode(cause);
+            if(status.isPresent()){
+                return status.getAsInt() == 429 || status.getAsInt() >= 500;
+            }
+
+            if(cause instanceof FetchException) cause = cause.getCause();
+            return cause instanceof IOException;
+        };
+    }
+}
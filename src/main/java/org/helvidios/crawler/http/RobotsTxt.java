@@ -0,0 +1,200 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Rules of a robots.txt file that apply to one crawler, compiled for fast matching.
+ * Matching follows RFC 9309: the rule with the longest matching pattern wins and allow wins a tie.
+ * Patterns may contain {@code *} wildcards and end with {@code $} to anchor the end of the path.
+ */
+public final class RobotsTxt {
+    private static final RobotsTxt ALLOW_ALL = new RobotsTxt(new Rule[0], null);
+    private static final RobotsTxt DISALLOW_ALL = new RobotsTxt(new Rule[]{ new Rule("/", false) }, null);
+
+    // sorted by pattern length descending, allow before disallow, so the first match is the winning rule
+    private final Rule[] rules;
+    private final Duration crawlDelay;
+
+    private RobotsTxt(Rule[] rules, Duration crawlDelay){
+        this.rules = rules;
+        this.crawlDelay = crawlDelay;
+    }
+
+    /**
+     * Returns rules that allow every URL, used when a host has no robots.txt.
+     * @return {@link RobotsTxt}
+     */
+    public static RobotsTxt allowAll(){
+        return ALLOW_ALL;
+    }
+
+    /**
+     * Returns rules that disallow every URL, used while a host's robots.txt is unreachable.
+     * @return {@link RobotsTxt}
+     */
+    public static RobotsTxt disallowAll(){
+        return DISALLOW_ALL;
+    }
+
+    /**
+     * Parses robots.txt content and keeps the rules of the group matching the crawler's product token,
+     * or of the {@code *} group if no group names the crawler.
+     * @param content robots.txt content
+     * @param userAgent product token of the crawler, e.g. helvidios-bot
+     * @return {@link RobotsTxt}
+     */
+    public static RobotsTxt parse(String content, String userAgent){
+        Objects.requireNonNull(content, "content must not be null");
+        var token = Objects.requireNonNull(userAgent, "userAgent must not be null").trim().toLowerCase(Locale.ROOT);
+
+        var own = new Group();
+        var any = new Group();
+        var current = new ArrayList<Group>();
+        boolean inAgentLines = false;
+
+        for(var line : content.split("\r\n|\r|\n")){
+            var comment = line.indexOf('#');
+            if(comment >= 0) line = line.substring(0, comment);
+            var colon = line.indexOf(':');
+            if(colon < 0) continue;
+
+            var key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            var value = line.substring(colon + 1).trim();
+
+            if(key.equals("user-agent")){
+                // consecutive user-agent lines share one group
+                if(!inAgentLines) current.clear();
+                inAgentLines = true;
+                var agent = value.split("[/\\s]", 2)[0].toLowerCase(Locale.ROOT);
+                var group = agent.equals(token) ? own : agent.equals("*") ? any : null;
+                if(group != null){
+                    group.named = true;
+                    current.add(group);
+                }
+                continue;
+            }
+
+            inAgentLines = false;
+            switch(key){
+                case "allow", "disallow" -> {
+                    if(value.isEmpty()) continue;
+                    var rule = new Rule(value.startsWith("/") || value.startsWith("*") ? value : "/" + value, key.equals("allow"));
+                    current.forEach(group -> group.rules.add(rule));
+                }
+                case "crawl-delay" -> {
+                    try{
+                        var seconds = Double.parseDouble(value);
+                        if(seconds >= 0 && seconds < 86_400){
+                            var delay = Duration.ofNanos((long) (seconds * 1_000_000_000L));
+                            current.forEach(group -> group.crawlDelay = delay);
+                        }
+                    }catch(NumberFormatException ex){}
+                }
+                default -> {}
+            }
+        }
+
+        var group = own.named ? own : any;
+        if(!group.named) return ALLOW_ALL;
+        var rules = group.rules.toArray(Rule[]::new);
+        Arrays.sort(rules, Comparator.comparingInt((Rule rule) -> -rule.pattern.length())
+            .thenComparing(rule -> !rule.allow));
+        return new RobotsTxt(rules, group.crawlDelay);
+    }
+
+    /**
+     * Returns true if the crawler may fetch the URL.
+     * @param url URL to check
+     * @return true if allowed
+     */
+    public boolean isAllowed(URI url){
+        if(rules.length == 0) return true;
+        var path = url.getRawPath();
+        if(path == null || path.isEmpty()) path = "/";
+        if(url.getRawQuery() != null) path = path + "?" + url.getRawQuery();
+        return isAllowed(path);
+    }
+
+    /**
+     * Returns true if the crawler may fetch the path.
+     * @param path URL path including the query, e.g. /search?q=1
+     * @return true if allowed
+     */
+    public boolean isAllowed(String path){
+        for(var rule : rules){
+            if(rule.matches(path)) return rule.allow;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the Crawl-delay requested for the crawler, if any.
+     * @return min time between two requests to the host
+     */
+    public Optional<Duration> crawlDelay(){
+        return Optional.ofNullable(crawlDelay);
+    }
+
+    private static class Group {
+        final List<Rule> rules = new ArrayList<>();
+        Duration crawlDelay;
+        boolean named;
+    }
+
+    private static final class Rule {
+        final String pattern;
+        final boolean allow;
+        final boolean literal;
+        final boolean anchored;
+
+        Rule(String pattern, boolean allow){
+            this.anchored = pattern.endsWith("$");
+            this.pattern = anchored ? pattern.substring(0, pattern.length() - 1) : pattern;
+            this.allow = allow;
+            this.literal = this.pattern.indexOf('*') < 0;
+        }
+
+        boolean matches(String path){
+            if(literal){
+                return anchored ? path.equals(pattern) : path.startsWith(pattern);
+            }
+            return wildcardMatches(path);
+        }
+
+        /**
+         * Greedy wildcard match that backtracks only to the last {@code *}, so it runs in linear time for typical patterns.
+         * A pattern without {@code $} only needs to match a prefix of the path.
+         */
+        private boolean wildcardMatches(String path){
+            int p = 0, s = 0, star = -1, mark = 0;
+            while(s < path.length()){
+                if(p == pattern.length() && !anchored) return true;
+                if(p < pattern.length() && pattern.charAt(p) == '*'){
+                    star = p++;
+                    mark = s;
+                }
+                else if(p < pattern.length() && pattern.charAt(p) == path.charAt(s)){
+                    p++;
+                    s++;
+                }
+                else if(star >= 0){
+                    p = star + 1;
+                    s = ++mark;
+                }
+                else{
+                    return false;
+                }
+            }
+            while(p < pattern.length() && pattern.charAt(p) == '*') p++;
+            return p == pattern.length();
+        }
+    }
+}
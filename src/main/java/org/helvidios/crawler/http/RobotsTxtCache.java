@@ -0,0 +1,135 @@
+package org.helvidios.crawler.http;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Downloads robots.txt of every host once through an {@link HttpClient} and keeps the compiled rules of up to
+ * {@code maxHosts} most recently used hosts for {@code ttl}. Once a host's rules are cached, checking a URL is
+ * an in-memory match with no I/O.
+ * <p>
+ * As in RFC 9309, a missing robots.txt (4xx) allows everything, while a robots.txt that cannot be downloaded
+ * (5xx, 429 or a network error) disallows everything until it is tried again after {@code retryAfterFailure}.
+ */
+public final class RobotsTxtCache {
+    private final HttpClient httpClient;
+    private final String userAgent;
+    private final Duration ttl;
+    private final Duration retryAfterFailure;
+    private final Cache<String, Entry> entries;
+
+    private record Entry(CompletableFuture<RobotsTxt> robots, long createdNanos) {}
+
+    private RobotsTxtCache(HttpClient httpClient, String userAgent, Duration ttl, Duration retryAfterFailure, long maxHosts){
+        this.httpClient = Objects.requireNonNull(httpClient, "httpClient must not be null");
+        this.userAgent = Objects.requireNonNull(userAgent, "userAgent must not be null");
+        this.ttl = Objects.requireNonNull(ttl, "ttl must not be null");
+        this.retryAfterFailure = Objects.requireNonNull(retryAfterFailure, "retryAfterFailure must not be null");
+        this.entries = CacheBuilder.newBuilder()
+            .maximumSize(maxHosts)
+            .expireAfterWrite(ttl)
+            .build();
+    }
+
+    /**
+     * Creates a cache that keeps rules of up to 10,000 hosts for 24 hours and retries unreachable robots.txt after 5 minutes.
+     * @param httpClient client used to download robots.txt
+     * @param userAgent product token of the crawler, e.g. helvidios-bot
+     * @return {@link RobotsTxtCache}
+     */
+    public static RobotsTxtCache create(HttpClient httpClient, String userAgent){
+        return create(httpClient, userAgent, Duration.ofHours(24), Duration.ofMinutes(5), 10_000);
+    }
+
+    /**
+     * Creates a cache of robots.txt rules.
+     * @param httpClient client used to download robots.txt
+     * @param userAgent product token of the crawler, e.g. helvidios-bot
+     * @param ttl how long the rules of a host are kept
+     * @param retryAfterFailure how long a host is fully disallowed after its robots.txt could not be downloaded
+     * @param maxHosts max number of hosts kept in cache, least recently used hosts are evicted first
+     * @return {@link RobotsTxtCache}
+     */
+    public static RobotsTxtCache create(HttpClient httpClient, String userAgent, Duration ttl, Duration retryAfterFailure, long maxHosts){
+        if(maxHosts < 1) throw new IllegalArgumentException("maxHosts must be greater than zero");
+        return new RobotsTxtCache(httpClient, userAgent, ttl, retryAfterFailure, maxHosts);
+    }
+
+    /**
+     * Returns rules for the host of a URL, downloading its robots.txt on first use.
+     * Blocks the calling thread only while robots.txt is being downloaded.
+     * @param url any URL of the host
+     * @return {@link RobotsTxt}
+     */
+    public RobotsTxt get(URI url){
+        return getAsync(url).join();
+    }
+
+    /**
+     * Returns rules for the host of a URL without blocking the calling thread.
+     * Concurrent requests for a host that is not cached yet share one download.
+     * @param url any URL of the host
+     * @return future that completes with {@link RobotsTxt}; it never fails
+     */
+    public CompletableFuture<RobotsTxt> getAsync(URI url){
+        if(url.getHost() == null) return CompletableFuture.completedFuture(RobotsTxt.allowAll());
+        var origin = String.format("%s://%s", url.getScheme(), url.getRawAuthority()).toLowerCase(Locale.ROOT);
+
+        var entry = entries.getIfPresent(origin);
+        if(entry != null && isFresh(entry)) return entry.robots();
+        if(entry != null) entries.asMap().remove(origin, entry);
+
+        try{
+            return entries.get(origin, () -> download(origin)).robots();
+        }catch(ExecutionException ex){
+            return CompletableFuture.completedFuture(RobotsTxt.disallowAll());
+        }
+    }
+
+    /**
+     * Returns true if the crawler may fetch the URL.
+     * @param url URL to check
+     * @return true if allowed
+     */
+    public boolean isAllowed(URI url){
+        return get(url).isAllowed(url);
+    }
+
+    private Entry download(String origin){
+        var robots = httpClient.fetchAsync(URI.create(origin + "/robots.txt"))
+            .handle((doc, ex) -> {
+                if(ex == null) return RobotsTxt.parse(doc.content(), userAgent);
+                return unavailable(ex) ? RobotsTxt.disallowAll() : RobotsTxt.allowAll();
+            });
+        return new Entry(robots, System.nanoTime());
+    }
+
+    /**
+     * Rules of an unreachable robots.txt are only kept for a short time, so the host is not blocked for a whole TTL.
+     * A download that is still in progress is always fresh.
+     */
+    private boolean isFresh(Entry entry){
+        var robots = entry.robots();
+        if(!robots.isDone()) return true;
+        var maxAge = robots.join() == RobotsTxt.disallowAll() ? retryAfterFailure : ttl;
+        return System.nanoTime() - entry.createdNanos() < maxAge.toNanos();
+    }
+
+    /**
+     * Server errors, 429 and network errors mean robots.txt exists but could not be read, so the host is treated
+     * as fully disallowed. Any other failure, e.g. 404, a non-text Content-Type or a Content-Encoding that cannot be
+     * decoded, means there are no rules.
+     */
+    private static boolean unavailable(Throwable t){
+        var status = AsyncFetch.statusCode(t);
+        if(status.isPresent()) return status.getAsInt() == 429 || status.getAsInt() >= 500;
+        var cause = AsyncFetch.unwrap(t);
+        return !(cause instanceof UnsupportedContentTypeException || cause instanceof UnsupportedContentEncodingException);
+    }
+}
@@ -0,0 +1,112 @@
+package org.helvidios.crawler.http;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Instead of counting tokens, the bucket keeps the time at which the next permit
+ * becomes free and advances it with a compare-and-set, so concurrent callers never block each other.
+ * Idle time accumulates up to {@code burst} permits that can be handed out without waiting, unless a min interval
+ * is set, see {@link #setMinInterval(Duration)}.
+ */
+class TokenBucket {
+    private final AtomicLong nextFreeNanos;
+    private final int burst;
+    private volatile long intervalNanos;
+    private volatile long minIntervalNanos;
+    private volatile long lastUsedNanos;
+
+    /**
+     * Creates a new instance of {@link TokenBucket} that starts empty.
+     * @param permitsPerSecond sustained rate of permits
+     * @param burst max number of permits that can be accumulated while idle
+     * @throws IllegalArgumentException if permitsPerSecond is not positive or burst < 1
+     */
+    TokenBucket(double permitsPerSecond, int burst){
+        if(burst < 1) throw new IllegalArgumentException("burst must be greater than zero");
+        setRate(permitsPerSecond);
+        this.burst = burst;
+        var now = System.nanoTime();
+        this.nextFreeNanos = new AtomicLong(now);
+        this.lastUsedNanos = now;
+    }
+
+    /**
+     * Creates a token bucket that can accumulate up to one second worth of permits, same as Guava's bursty rate limiter.
+     * @param permitsPerSecond sustained rate of permits
+     * @return {@link TokenBucket}
+     */
+    static TokenBucket create(double permitsPerSecond){
+        return new TokenBucket(permitsPerSecond, (int) Math.max(1, Math.ceil(permitsPerSecond)));
+    }
+
+    /**
+     * Reserves one permit.
+     * @return number of nanoseconds the caller must wait before the permit may be used, zero if it can be used right away
+     */
+    long reserve(){
+        return reserve(false);
+    }
+
+    /**
+     * Reserves one permit only if it can be used right away.
+     * @return true if a permit was reserved, false if the caller would have to wait, in which case nothing is reserved
+     */
+    boolean tryReserve(){
+        return reserve(true) == 0;
+    }
+
+    private long reserve(boolean onlyIfFree){
+        while(true){
+            var now = System.nanoTime();
+            var interval = intervalNanos;
+            var burst = minIntervalNanos > 0 ? 1 : this.burst;
+            var current = nextFreeNanos.get();
+            var granted = Math.max(current, now - (burst - 1) * interval);
+            if(onlyIfFree && granted > now) return -1;
+            if(nextFreeNanos.compareAndSet(current, granted + interval)){
+                lastUsedNanos = now;
+                return Math.max(0, granted - now);
+            }
+        }
+    }
+
+    /**
+     * Changes the sustained rate. Permits that are already reserved are not affected.
+     * @param permitsPerSecond new rate
+     * @throws IllegalArgumentException if permitsPerSecond is not positive
+     */
+    void setRate(double permitsPerSecond){
+        if(!(permitsPerSecond > 0)) throw new IllegalArgumentException("permitsPerSecond must be greater than zero");
+        this.intervalNanos = Math.max(minIntervalNanos, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+    }
+
+    /**
+     * Caps the sustained rate, e.g. to honor a Crawl-delay. Later calls to {@link #setRate(double)} cannot exceed the cap.
+     * While a cap is set, idle time no longer accumulates a burst, so no two permits are ever closer than minInterval.
+     * @param minInterval min time between two permits
+     */
+    void setMinInterval(Duration minInterval){
+        this.minIntervalNanos = minInterval.toNanos();
+        if(intervalNanos < minIntervalNanos) this.intervalNanos = minIntervalNanos;
+    }
+
+    /**
+     * Returns the current sustained rate.
+     * @return permits per second
+     */
+    double rate(){
+        return (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos;
+    }
+
+    /**
+     * Returns true if this bucket has not been used for the given time and has no outstanding reservations.
+     * @param nowNanos current value of {@link System#nanoTime()}
+     * @param idleTimeoutNanos idle time in nanoseconds
+     * @return true if the bucket is idle
+     */
+    boolean isIdle(long nowNanos, long idleTimeoutNanos){
+        return nowNanos - lastUsedNanos >= idleTimeoutNanos && nextFreeNanos.get() <= nowNanos;
+    }
+}
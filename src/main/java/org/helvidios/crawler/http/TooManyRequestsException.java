@@ -1,11 +1,13 @@
 package org.helvidios.crawler.http;
 
 import java.net.URI;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.time.Duration;
 import java.time.Instant;
-import java.util.*;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -13,7 +15,7 @@ import java.util.Objects;
  * The client needs to back off and wait some time before sending new requests.
  */
 public class TooManyRequestsException extends FetchException {
-    private final Map<String, List<String>> headers;
+    private final long retryAfter;
 
     /**
      * Default wait duration in seconds before re-attempting an HTTP request.
@@ -22,7 +24,7 @@ public class TooManyRequestsException extends FetchException {
 
     TooManyRequestsException(URI url, Map<String, List<String>> headers) {
         super(url, null);
-        this.headers = Objects.requireNonNull(headers, "headers must not be null");
+        this.retryAfter = parseRetryAfter(Objects.requireNonNull(headers, "headers must not be null"));
     }
 
     /**
@@ -30,44 +32,35 @@ public class TooManyRequestsException extends FetchException {
      * @return wait in seconds
      */
     public long retryAfter(){
-        long retryAfterSeconds = DEFAULT_RETRY;
+        return retryAfter;
+    }
 
+    /**
+     * Parses the Retry-After header once, when the response is received.
+     * Retry-After syntax:
+     *     Retry-After: &lt;http-date&gt; e.g. Retry-After: Wed, 21 Oct 2015 07:28:00 GMT
+     *     Retry-After: &lt;delay-seconds&gt; e.g. Retry-After: 120
+     */
+    private static long parseRetryAfter(Map<String, List<String>> headers){
         final String retryAfterHeader = "retry-after";
-        for(var header : headers.keySet()){
-            if(header.toLowerCase().trim().equals(retryAfterHeader)){
-                /*
-                    Retry-After syntax:
-                        Retry-After: <http-date> e.g. Retry-After: Wed, 21 Oct 2015 07:28:00 GMT
-                        Retry-After: <delay-seconds> e.g. Retry-After: 120
-                */
+        for(var header : headers.entrySet()){
+            if(!header.getKey().trim().equalsIgnoreCase(retryAfterHeader)) continue;
+            if(header.getValue().isEmpty()) break;
 
-                if(headers.get(header).size() < 1) break;
+            final String retryAfterHeaderValue = header.getValue().get(0).trim();
+            try{
+                return Math.max(0, Long.parseLong(retryAfterHeaderValue));
+            }catch(NumberFormatException nfex){}
 
-                final String retryAfterHeaderValue = headers.get(header).get(0);
+            try{
+                // DateTimeFormatter is immutable and thread-safe, unlike SimpleDateFormat
+                var date = ZonedDateTime.parse(retryAfterHeaderValue, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+                return Math.max(0, Duration.between(Instant.now(), date).toSeconds());
+            }catch(DateTimeParseException ex){}
 
-                try{
-                    retryAfterSeconds = Duration.between(
-                        Instant.now(), 
-                        parseDate(retryAfterHeaderValue)).toSeconds();
-                }catch(ParseException ex){
-                    System.out.println(ex);
-                    try{
-                        retryAfterSeconds = Integer.parseInt(retryAfterHeaderValue);
-                    }catch(NumberFormatException nfex){
-                        System.out.println(nfex);
-                    }
-                }
-
-                break;
-            }
+            break;
         }
 
-        return retryAfterSeconds;
-    }
-
-    private static Instant parseDate(String date) throws ParseException {
-        var df = new SimpleDateFormat("E, dd MMM yyyy HH:mm:ss z");
-        df.setTimeZone(TimeZone.getTimeZone("GMT"));
-        return df.parse(date).toInstant();
+        return DEFAULT_RETRY;
     }
 }
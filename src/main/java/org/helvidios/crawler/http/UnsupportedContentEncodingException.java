@@ -0,0 +1,26 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.util.Objects;
+
+/**
+ * Indicates that the server responded with a Content-Encoding that cannot be decoded, e.g. br.
+ * The response body is not downloaded. The host is up and would respond the same way again, so the failure is
+ * neither retried nor held against the host.
+ */
+public class UnsupportedContentEncodingException extends FetchException {
+    private final String contentEncoding;
+
+    UnsupportedContentEncodingException(URI url, String contentEncoding) {
+        super(url, null);
+        this.contentEncoding = Objects.requireNonNull(contentEncoding, "contentEncoding must not be null");
+    }
+
+    /**
+     * Returns the Content-Encoding the server responded with.
+     * @return content coding
+     */
+    public String contentEncoding(){
+        return contentEncoding;
+    }
+}
@@ -0,0 +1,25 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.util.Objects;
+
+/**
+ * Indicates that the server responded with a Content-Type that cannot contain an HTML page, e.g. an image or a binary file.
+ * The response body is not downloaded.
+ */
+public class UnsupportedContentTypeException extends FetchException {
+    private final String contentType;
+
+    UnsupportedContentTypeException(URI url, String contentType) {
+        super(url, null);
+        this.contentType = Objects.requireNonNull(contentType, "contentType must not be null");
+    }
+
+    /**
+     * Returns the Content-Type the server responded with.
+     * @return media type
+     */
+    public String contentType(){
+        return contentType;
+    }
+}
@@ -0,0 +1,47 @@
+package org.helvidios.crawler.http;
+
+import java.net.URI;
+import java.util.Optional;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.helvidios.crawler.storage.DocumentDb;
+
+/**
+ * Remembers previously downloaded pages together with their ETag and Last-Modified validators,
+ * so that a recrawl can revalidate a page with a conditional request instead of downloading it again.
+ */
+public interface ValidatorStore {
+
+    /**
+     * Returns the previously downloaded copy of a page, if it is known.
+     * @param url page URL
+     * @return previously downloaded page with its validators
+     */
+    Optional<HtmlDocument> get(URI url);
+
+    /**
+     * Remembers a downloaded page. Pages without validators cannot be revalidated and may be ignored.
+     * @param doc downloaded page
+     */
+    void put(HtmlDocument doc);
+
+    /**
+     * Returns a store that keeps up to {@code maxDocuments} most recently used pages in memory.
+     * @param maxDocuments max number of pages to keep
+     * @return in-memory {@link ValidatorStore}
+     */
+    public static ValidatorStore inMemory(long maxDocuments){
+        return new InMemoryValidatorStore(maxDocuments);
+    }
+
+    /**
+     * Returns a store that keeps only validators in memory and reads page content back from a {@link DocumentDb}.
+     * Pages are expected to be written to the {@link DocumentDb} by the crawl pipeline; if a page is not found there,
+     * it is downloaded again in full.
+     * @param docDb document storage holding downloaded pages
+     * @param maxDocuments max number of validators to keep
+     * @return {@link DocumentDb}-backed {@link ValidatorStore}
+     */
+    public static ValidatorStore backedBy(DocumentDb docDb, long maxDocuments){
+        return new DocumentDbValidatorStore(docDb, maxDocuments);
+    }
+}
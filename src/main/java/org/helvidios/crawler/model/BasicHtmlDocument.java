@@ -1,32 +1,68 @@
 package org.helvidios.crawler.model;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Optional;
 
 /**
  * Implements {@link HtmlDocument}.
+ * Content may be supplied as text or as raw bytes; bytes are only decoded when {@link #content()} is called.
  */
 class BasicHtmlDocument implements HtmlDocument {
-    private final String content;
+    /**
+     * Marks a document whose transfer size was not recorded; the content length is reported instead.
+     */
+    static final long UNKNOWN_TRANSFER_SIZE = -1;
+
+    private final Content content;
     private final URI url;
     private final long id;
+    private final String etag;
+    private final String lastModified;
+    private final boolean truncated;
+    private final long transferSize;
+    private volatile HtmlLinkExtractor.Links links;
     
-    BasicHtmlDocument(long id, URI url, String content){
+    BasicHtmlDocument(long id, URI url, Content content, String etag, String lastModified, boolean truncated, long transferSize){
         this.id = id;
         this.url = Objects.requireNonNull(url, "url must not be null");
         this.content = Objects.requireNonNull(content, "content must not be null");
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.truncated = truncated;
+        this.transferSize = transferSize;
+    }
+
+    BasicHtmlDocument(long id, URI url, String content){
+        this(id, url, Content.of(content), null, null, false, UNKNOWN_TRANSFER_SIZE);
     }
 
     BasicHtmlDocument(URI url, String content){
-        this(ThreadLocalRandom.current().nextLong(), url, content);
+        this(HtmlDocument.idOf(url), url, content);
     }
 
     @Override
     public String content() {
-        return content;
+        return content.text();
+    }
+
+    @Override
+    public byte[] contentBytes() {
+        return content.bytes();
+    }
+
+    @Override
+    public ByteBuffer contentBuffer() {
+        return ByteBuffer.wrap(content.bytes()).asReadOnlyBuffer();
+    }
+
+    @Override
+    public Charset charset() {
+        return content.charset();
     }
 
     @Override
@@ -41,7 +77,32 @@ class BasicHtmlDocument implements HtmlDocument {
 
     @Override
     public List<URI> urls() {
-        return Collections.emptyList();
+        return links().urls();
+    }
+
+    @Override
+    public Optional<URI> canonicalUrl() {
+        return Optional.ofNullable(links().canonicalUrl());
+    }
+
+    @Override
+    public Optional<String> etag() {
+        return Optional.ofNullable(etag);
+    }
+
+    @Override
+    public Optional<String> lastModified() {
+        return Optional.ofNullable(lastModified);
+    }
+
+    @Override
+    public boolean truncated() {
+        return truncated;
+    }
+    
+    @Override
+    public long transferSize() {
+        return transferSize == UNKNOWN_TRANSFER_SIZE ? content.bytes().length : transferSize;
     }
     
     @Override
@@ -55,6 +116,18 @@ class BasicHtmlDocument implements HtmlDocument {
 
     @Override
     public String title() {
-        return "";
+        return links().title();
+    }
+
+    /**
+     * Extracts links and title on first use. Concurrent first calls may both extract them, which is harmless.
+     */
+    private HtmlLinkExtractor.Links links(){
+        var result = links;
+        if(result == null){
+            result = HtmlLinkExtractor.extract(url, content.bytes(), content.charset());
+            links = result;
+        }
+        return result;
     }
 }
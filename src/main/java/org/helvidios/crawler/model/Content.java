@@ -0,0 +1,65 @@
+package org.helvidios.crawler.model;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Raw page content held either as decoded text or as encoded bytes plus their charset.
+ * The other representation is produced lazily, the first time it is asked for, and then kept.
+ */
+final class Content {
+    private final Charset charset;
+    private volatile String text;
+    private volatile byte[] bytes;
+
+    private Content(String text, byte[] bytes, Charset charset){
+        this.text = text;
+        this.bytes = bytes;
+        this.charset = charset;
+    }
+
+    /**
+     * Wraps decoded text. Its byte representation is UTF-8.
+     * @param text decoded content
+     * @return {@link Content}
+     */
+    static Content of(String text){
+        return new Content(Objects.requireNonNull(text, "content must not be null"), null, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Wraps encoded bytes without copying them.
+     * @param bytes encoded content
+     * @param charset charset of the bytes
+     * @return {@link Content}
+     */
+    static Content of(byte[] bytes, Charset charset){
+        return new Content(
+            null,
+            Objects.requireNonNull(bytes, "content must not be null"),
+            Objects.requireNonNull(charset, "charset must not be null"));
+    }
+
+    String text(){
+        var result = text;
+        if(result == null){
+            result = new String(bytes, charset);
+            text = result;
+        }
+        return result;
+    }
+
+    byte[] bytes(){
+        var result = bytes;
+        if(result == null){
+            result = text.getBytes(charset);
+            bytes = result;
+        }
+        return result;
+    }
+
+    Charset charset(){
+        return charset;
+    }
+}
@@ -1,7 +1,11 @@
 package org.helvidios.crawler.model;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Represents a generic HTML page with content.
@@ -9,17 +13,38 @@ import java.util.List;
 public interface HtmlDocument {
 
     /**
-     * Returns document title extracted from the <title> HTML tag.
-     * @return document title
+     * Returns document title extracted from the <title> HTML tag, with whitespace collapsed.
+     * It is extracted together with {@link #urls()} in a single pass over the content, and memoized.
+     * @return document title, or an empty string if the page has none
      */
     public String title();
     
     /**
-     * Returns raw HTML content of this page
+     * Returns raw HTML content of this page.
+     * If the page was created from raw bytes, they are decoded on the first call.
      * @return HTML content
      */
     public String content();
 
+    /**
+     * Returns raw HTML content of this page encoded in {@link #charset()}.
+     * The returned array is not copied and must not be modified.
+     * @return encoded HTML content
+     */
+    public byte[] contentBytes();
+
+    /**
+     * Returns a read-only view of {@link #contentBytes()} that can be passed to channels without copying.
+     * @return encoded HTML content
+     */
+    public ByteBuffer contentBuffer();
+
+    /**
+     * Returns charset of {@link #contentBytes()}.
+     * @return charset
+     */
+    public Charset charset();
+
     /**
      * Returns url from which this page was fetched
      * @return URL
@@ -27,17 +52,63 @@ public interface HtmlDocument {
     public URI url();
 
     /**
-     * Returns unique id assigned to this page
+     * Returns unique id assigned to this page. Unless set explicitly, it is derived from the URL, see {@link #idOf(URI)}.
      * @return ID
      */
     public long docId();
 
     /**
-     * Returns a list of URLs on this page
+     * Returns absolute http(s) URLs of the {@code <a href>} links on this page, in document order without duplicates.
+     * Relative links are resolved against {@code <base href>} or the page URL, and fragments are dropped.
+     * The links are extracted on the first call and memoized.
      * @return URLs on this page
      */
     public List<URI> urls();
 
+    /**
+     * Returns the canonical URL declared by {@code <link rel="canonical">}, if any.
+     * @return canonical URL
+     */
+    public Optional<URI> canonicalUrl();
+
+    /**
+     * Returns the ETag validator the server sent with this page, if any.
+     * It can be used to revalidate the page with a conditional request when it is crawled again.
+     * @return ETag header value
+     */
+    public Optional<String> etag();
+
+    /**
+     * Returns the Last-Modified validator the server sent with this page, if any.
+     * It can be used to revalidate the page with a conditional request when it is crawled again.
+     * @return Last-Modified header value
+     */
+    public Optional<String> lastModified();
+
+    /**
+     * Returns true if the content of this page was cut off because the response body exceeded the max allowed size.
+     * @return true if content is incomplete
+     */
+    public boolean truncated();
+
+    /**
+     * Returns number of body bytes received over the network, before Content-Encoding such as gzip was removed.
+     * Equals the length of {@link #contentBytes()} if the body was not encoded.
+     * @return encoded body size in bytes
+     */
+    public long transferSize();
+
+    /**
+     * Returns the id of the document fetched from a URL: the {@link Url#fingerprint()} of its canonical form.
+     * Every download of a page gets the same id, so storing it again overwrites the previous copy.
+     * @param url absolute URL
+     * @return document id
+     * @throws IllegalArgumentException if the URL is not absolute
+     */
+    public static long idOf(URI url){
+        return Url.of(url).fingerprint();
+    }
+
     /**
      * Creates an {@link HtmlDocument}.
      * @param id document id
@@ -58,4 +129,126 @@ public interface HtmlDocument {
     public static HtmlDocument of(URI url, String content){
         return new BasicHtmlDocument(url, content);
     }
+
+    /**
+     * Creates an {@link HtmlDocument} from encoded content. The bytes are not copied and are decoded lazily.
+     * @param url URL
+     * @param content raw HTML content encoded in {@code charset}
+     * @param charset charset of the content
+     * @return {@link HtmlDocument} instance
+     */
+    public static HtmlDocument of(URI url, byte[] content, Charset charset){
+        return Builder().withUrl(url).withContent(content, charset).build();
+    }
+
+    /**
+     * Returns builder that can be used for constructing {@link HtmlDocument} with optional attributes.
+     * @return {@link Builder}
+     */
+    public static Builder Builder(){
+        return new Builder();
+    }
+
+    /**
+     * Builder for constructing an {@link HtmlDocument} instance.
+     */
+    static class Builder {
+        private Long id;
+        private URI url;
+        private Content content;
+        private String etag;
+        private String lastModified;
+        private boolean truncated;
+        private Long transferSize;
+
+        private Builder(){}
+
+        /**
+         * Set document id. An id derived from the URL is assigned if not set, see {@link HtmlDocument#idOf(URI)}.
+         * @param id document id
+         * @return {@link Builder}
+         */
+        public Builder withId(long id){
+            this.id = id;
+            return this;
+        }
+
+        /**
+         * Set URL from which the page was fetched.
+         * @param url URL
+         * @return {@link Builder}
+         */
+        public Builder withUrl(URI url){
+            this.url = Objects.requireNonNull(url, "url must not be null");
+            return this;
+        }
+
+        /**
+         * Set raw HTML content.
+         * @param content raw HTML content
+         * @return {@link Builder}
+         */
+        public Builder withContent(String content){
+            this.content = Content.of(content);
+            return this;
+        }
+
+        /**
+         * Set raw HTML content as encoded bytes. The bytes are not copied and are decoded lazily.
+         * @param content raw HTML content encoded in {@code charset}
+         * @param charset charset of the content
+         * @return {@link Builder}
+         */
+        public Builder withContent(byte[] content, Charset charset){
+            this.content = Content.of(content, charset);
+            return this;
+        }
+
+        /**
+         * Set cache validators received with the page.
+         * @param etag ETag header value or null
+         * @param lastModified Last-Modified header value or null
+         * @return {@link Builder}
+         */
+        public Builder withValidators(String etag, String lastModified){
+            this.etag = etag;
+            this.lastModified = lastModified;
+            return this;
+        }
+
+        /**
+         * Mark the content as cut off at the max allowed response size.
+         * @param truncated true if content is incomplete
+         * @return {@link Builder}
+         */
+        public Builder withTruncated(boolean truncated){
+            this.truncated = truncated;
+            return this;
+        }
+
+        /**
+         * Set number of body bytes received over the network. Defaults to the content length.
+         * @param transferSize encoded body size in bytes
+         * @return {@link Builder}
+         */
+        public Builder withTransferSize(long transferSize){
+            this.transferSize = transferSize;
+            return this;
+        }
+
+        /**
+         * Builds an {@link HtmlDocument}.
+         * @return {@link HtmlDocument}
+         */
+        public HtmlDocument build(){
+            return new BasicHtmlDocument(
+                id == null ? idOf(url) : id,
+                url,
+                content,
+                etag,
+                lastModified,
+                truncated,
+                transferSize == null ? BasicHtmlDocument.UNKNOWN_TRANSFER_SIZE : transferSize);
+        }
+    }
 }
@@ -0,0 +1,499 @@
+package org.helvidios.crawler.model;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Extracts {@code <a href>}, {@code <base href>}, {@code <link rel=canonical>} and {@code <title>} from HTML in a
+ * single pass over the encoded bytes. It is a hand-written tokenizer rather than a parser: it allocates strings only for
+ * the values it keeps, skips comments, scripts and styles, and tolerates malformed markup.
+ * Content can be fed incrementally while it downloads: a token cut off at the end of the available bytes is scanned
+ * again once more bytes arrive, and links can be handed to a callback as soon as they are found.
+ * Charsets that do not encode ASCII as single bytes, such as UTF-16, are handled by re-encoding the text as UTF-8.
+ */
+final class HtmlLinkExtractor {
+    private static final byte[] A = bytes("a");
+    private static final byte[] BASE = bytes("base");
+    private static final byte[] LINK = bytes("link");
+    private static final byte[] TITLE = bytes("title");
+    private static final byte[] SCRIPT = bytes("script");
+    private static final byte[] STYLE = bytes("style");
+    private static final byte[] HREF = bytes("href");
+    private static final byte[] REL = bytes("rel");
+    private static final byte[] COMMENT_END = bytes("-->");
+    private static final byte[] TITLE_END = bytes("</title");
+    private static final byte[] SCRIPT_END = bytes("</script");
+    private static final byte[] STYLE_END = bytes("</style");
+    private static final byte[] ASCII_PROBE = bytes("<a href=\"/\">");
+
+    /**
+     * Links and title of a page.
+     * @param title text of the first {@code <title>} element with entities decoded and whitespace collapsed, or empty
+     * @param urls absolute http(s) URLs of {@code <a href>} links without fragments, in document order without duplicates
+     * @param canonicalUrl URL of {@code <link rel=canonical>}, or null
+     */
+    record Links(String title, List<URI> urls, URI canonicalUrl){}
+
+    private final URI url;
+    private final Charset charset;
+    private final Consumer<URI> onLink;
+    private final Set<URI> emitted;
+    private byte[] html = new byte[0];
+    private int limit;
+    private boolean complete;
+    private int pos;
+    private int tokenStart;
+    private boolean incomplete;
+    private int resumeToken = -1;
+    private int resumeFrom;
+    private final List<String> hrefs = new ArrayList<>();
+    private String baseHref;
+    private URI base;
+    private String canonicalHref;
+    private String title;
+
+    /**
+     * Creates an extractor for content that arrives in chunks.
+     * @param url URL of the page
+     * @param charset charset of the content, which must be ASCII-compatible, see {@link #isAsciiCompatible(Charset)}
+     * @param onLink receives every distinct http(s) link as soon as it is found, or null
+     */
+    HtmlLinkExtractor(URI url, Charset charset, Consumer<URI> onLink){
+        this.url = url;
+        this.charset = charset;
+        this.onLink = onLink;
+        this.emitted = onLink == null ? null : new HashSet<>();
+    }
+
+    /**
+     * Extracts links and title from a page. Relative URLs are resolved against {@code <base href>} if present, or else
+     * against the page URL.
+     * @param url URL of the page
+     * @param html encoded HTML content
+     * @param charset charset of the content
+     * @return {@link Links}
+     */
+    static Links extract(URI url, byte[] html, Charset charset){
+        if(!isAsciiCompatible(charset)){
+            html = new String(html, charset).getBytes(StandardCharsets.UTF_8);
+            charset = StandardCharsets.UTF_8;
+        }
+        var extractor = new HtmlLinkExtractor(url, charset, null);
+        extractor.feed(html, html.length);
+        return extractor.finish();
+    }
+
+    /**
+     * Scans content that became available. The buffer must start with all bytes fed before, as it does when a download
+     * appends to a growing buffer; it may be a different array than last time.
+     * @param buffer content received so far
+     * @param length number of valid bytes in the buffer
+     */
+    void feed(byte[] buffer, int length){
+        html = buffer;
+        limit = length;
+        tokenize();
+    }
+
+    /**
+     * Scans the rest of the content once no more bytes will arrive.
+     * Links emitted while streaming were resolved against the base URL known at the time; the returned links are
+     * resolved against the final one.
+     * @return {@link Links}
+     */
+    Links finish(){
+        complete = true;
+        tokenize();
+        return links();
+    }
+
+    /**
+     * Returns true if the charset encodes ASCII characters as single ASCII bytes, so that markup can be scanned
+     * without decoding it.
+     * @param charset charset
+     * @return true for UTF-8, ISO-8859-x, windows-125x and similar charsets
+     */
+    static boolean isAsciiCompatible(Charset charset){
+        return charset.equals(StandardCharsets.UTF_8)
+            || charset.equals(StandardCharsets.ISO_8859_1)
+            || charset.equals(StandardCharsets.US_ASCII)
+            || (charset.canEncode() && Arrays.equals(ASCII_PROBE, "<a href=\"/\">".getBytes(charset)));
+    }
+
+    /**
+     * Scans tokens up to the end of the available bytes. A token cut off by the end is rolled back, unless the content
+     * is complete, and scanned again on the next call.
+     */
+    private void tokenize(){
+        while(true){
+            var lt = indexOf('<', pos);
+            if(lt < 0){
+                pos = limit;
+                return;
+            }
+            if(lt + 3 >= limit && !complete){
+                // too short to tell a comment from a tag yet
+                pos = lt;
+                return;
+            }
+            if(lt + 1 >= limit){
+                pos = limit;
+                return;
+            }
+
+            tokenStart = lt;
+            incomplete = false;
+            pos = lt + 1;
+            var c = html[pos];
+            if(c == '!'){
+                pos = startsWith(pos + 1, (byte) '-', (byte) '-') ? skipPast(COMMENT_END, pos + 3) : skipPast('>', pos);
+            }else if(c == '/' || c == '?'){
+                pos = skipPast('>', pos);
+            }else if(isLetter(c)){
+                startTag();
+            }
+
+            if(incomplete && !complete){
+                pos = tokenStart;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads a start tag and its attributes, keeping href and rel values of the tags of interest.
+     */
+    private void startTag(){
+        var nameStart = pos;
+        while(pos < limit && !isSpace(html[pos]) && html[pos] != '>' && html[pos] != '/') pos++;
+        var nameEnd = pos;
+        var isA = equalsIgnoreCase(nameStart, nameEnd, A);
+        var isBase = !isA && equalsIgnoreCase(nameStart, nameEnd, BASE);
+        var isLink = !isA && !isBase && equalsIgnoreCase(nameStart, nameEnd, LINK);
+        var wantsHref = isA || isBase || isLink;
+
+        String href = null;
+        String rel = null;
+        while(true){
+            while(pos < limit && (isSpace(html[pos]) || html[pos] == '/')) pos++;
+            if(pos >= limit){
+                incomplete = true;
+                break;
+            }
+            if(html[pos] == '>'){
+                pos++;
+                break;
+            }
+
+            var attrStart = pos;
+            while(pos < limit && !isSpace(html[pos]) && html[pos] != '=' && html[pos] != '>' && html[pos] != '/') pos++;
+            var attrEnd = pos;
+            while(pos < limit && isSpace(html[pos])) pos++;
+            if(pos >= limit || html[pos] != '='){
+                // attribute without value, e.g. <input disabled>; a stray '=' is skipped so the loop advances
+                if(attrStart == attrEnd) pos++;
+                continue;
+            }
+
+            pos++;
+            while(pos < limit && isSpace(html[pos])) pos++;
+            int valueStart, valueEnd;
+            if(pos < limit && (html[pos] == '"' || html[pos] == '\'')){
+                var quote = html[pos];
+                valueStart = pos + 1;
+                var close = indexOf(quote, valueStart);
+                valueEnd = close < 0 ? limit : close;
+                pos = Math.min(valueEnd + 1, limit);
+            }else{
+                valueStart = pos;
+                while(pos < limit && !isSpace(html[pos]) && html[pos] != '>') pos++;
+                valueEnd = pos;
+            }
+            if(pos >= limit){
+                incomplete = true;
+                if(!complete) return;
+            }
+
+            if(wantsHref && href == null && equalsIgnoreCase(attrStart, attrEnd, HREF)){
+                href = value(valueStart, valueEnd);
+            }else if(isLink && rel == null && equalsIgnoreCase(attrStart, attrEnd, REL)){
+                rel = value(valueStart, valueEnd);
+            }
+        }
+
+        // a tag cut off by the end of the available bytes is scanned again in full, so nothing is recorded yet
+        if(incomplete && !complete) return;
+
+        if(isA){
+            if(href != null) addLink(href);
+        }else if(isBase){
+            if(baseHref == null && href != null){
+                baseHref = href;
+                base = null;
+            }
+        }else if(isLink){
+            if(canonicalHref == null && href != null && rel != null && isCanonical(rel)) canonicalHref = href;
+        }else if(equalsIgnoreCase(nameStart, nameEnd, TITLE)){
+            var end = findRawTextEnd(TITLE_END, pos);
+            if(incomplete && !complete) return;
+            if(title == null) title = collapseWhitespace(decodeEntities(new String(html, pos, end - pos, charset)));
+            pos = end;
+        }else if(equalsIgnoreCase(nameStart, nameEnd, SCRIPT)){
+            pos = findRawTextEnd(SCRIPT_END, pos);
+        }else if(equalsIgnoreCase(nameStart, nameEnd, STYLE)){
+            pos = findRawTextEnd(STYLE_END, pos);
+        }
+    }
+
+    private void addLink(String href){
+        hrefs.add(href);
+        if(onLink == null) return;
+        var resolved = resolve(base(), href);
+        if(resolved != null && isHttp(resolved) && emitted.add(resolved)) onLink.accept(resolved);
+    }
+
+    /**
+     * Returns the URL that links are resolved against: {@code <base href>} if seen so far, or else the page URL.
+     */
+    private URI base(){
+        if(base == null){
+            base = withPath(url);
+            if(baseHref != null){
+                var resolved = resolve(base, baseHref);
+                if(resolved != null) base = withPath(resolved);
+            }
+        }
+        return base;
+    }
+
+    private Links links(){
+        var base = base();
+        var urls = new LinkedHashSet<URI>();
+        for(var href : hrefs){
+            var resolved = resolve(base, href);
+            if(resolved != null && isHttp(resolved)) urls.add(resolved);
+        }
+        var canonical = canonicalHref == null ? null : resolve(base, canonicalHref);
+        return new Links(title == null ? "" : title, List.copyOf(urls), canonical);
+    }
+
+    private static boolean isCanonical(String rel){
+        for(var token : rel.split("\\s+")){
+            if(token.equalsIgnoreCase("canonical")) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Resolves a link against the base URL and drops its fragment.
+     * @return absolute URL, or null if the link is empty, points into the same page or is not a valid URL
+     */
+    static URI resolve(URI base, String href){
+        var link = href.strip();
+        if(link.isEmpty() || link.startsWith("#")) return null;
+        try{
+            var reference = new URI(escape(link));
+            URI resolved;
+            if(!reference.isAbsolute() && reference.getRawAuthority() == null && reference.getRawPath().isEmpty() && reference.getRawQuery() != null){
+                // java.net.URI follows RFC 2396 here and would drop the last path segment of the base
+                var page = base.toString();
+                var end = page.length();
+                if(page.indexOf('#') >= 0) end = page.indexOf('#');
+                if(page.indexOf('?') >= 0) end = Math.min(end, page.indexOf('?'));
+                resolved = new URI(page.substring(0, end) + "?" + reference.getRawQuery());
+            }else{
+                resolved = base.resolve(reference);
+            }
+            if(resolved.getRawFragment() == null) return resolved;
+            var text = resolved.toString();
+            return new URI(text.substring(0, text.indexOf('#')));
+        }catch(URISyntaxException | IllegalArgumentException ex){
+            return null;
+        }
+    }
+
+    private static boolean isHttp(URI url){
+        var scheme = url.getScheme();
+        return url.getHost() != null && ("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme));
+    }
+
+    /**
+     * java.net.URI resolves against an empty path as if it were relative, e.g. http://a.com + b = http://a.comb.
+     */
+    private static URI withPath(URI url){
+        return !url.isOpaque() && url.getRawAuthority() != null && url.getRawPath().isEmpty() ? url.resolve("/") : url;
+    }
+
+    /**
+     * Percent-encodes characters that browsers accept in links but {@link URI} does not, such as spaces and non-ASCII.
+     */
+    private static String escape(String link){
+        var needsEscaping = false;
+        for(int i = 0; i < link.length() && !needsEscaping; i++) needsEscaping = mustEscape(link.charAt(i));
+        if(!needsEscaping) return link;
+
+        var escaped = new StringBuilder(link.length() + 16);
+        for(var b : link.getBytes(StandardCharsets.UTF_8)){
+            var c = (char) (b & 0xff);
+            if(mustEscape(c)) escaped.append('%').append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+            else escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    private static boolean mustEscape(char c){
+        return c <= ' ' || c >= 0x7f || c == '"' || c == '<' || c == '>' || c == '\\' || c == '^' || c == '`' || c == '{' || c == '|' || c == '}';
+    }
+
+    private String value(int start, int end){
+        var value = new String(html, start, end - start, charset);
+        return value.indexOf('&') < 0 ? value : decodeEntities(value);
+    }
+
+    /**
+     * Decodes the character references that occur in links and titles in practice: numeric ones and the XML ones, plus nbsp.
+     */
+    static String decodeEntities(String text){
+        var amp = text.indexOf('&');
+        if(amp < 0) return text;
+
+        var decoded = new StringBuilder(text.length());
+        var from = 0;
+        while(amp >= 0){
+            decoded.append(text, from, amp);
+            var semicolon = text.indexOf(';', amp);
+            var codePoint = semicolon < 0 || semicolon - amp > 10 ? -1 : codePoint(text.substring(amp + 1, semicolon));
+            if(codePoint >= 0){
+                decoded.appendCodePoint(codePoint);
+                from = semicolon + 1;
+            }else{
+                decoded.append('&');
+                from = amp + 1;
+            }
+            amp = text.indexOf('&', from);
+        }
+        return decoded.append(text, from, text.length()).toString();
+    }
+
+    private static int codePoint(String entity){
+        try{
+            if(entity.startsWith("#x") || entity.startsWith("#X")) return validCodePoint(Integer.parseInt(entity.substring(2), 16));
+            if(entity.startsWith("#")) return validCodePoint(Integer.parseInt(entity.substring(1)));
+        }catch(NumberFormatException ex){
+            return -1;
+        }
+        return switch(entity){
+            case "amp" -> '&';
+            case "lt" -> '<';
+            case "gt" -> '>';
+            case "quot" -> '"';
+            case "apos" -> '\'';
+            case "nbsp" -> '\u00a0';
+            default -> -1;
+        };
+    }
+
+    private static int validCodePoint(int codePoint){
+        return Character.isValidCodePoint(codePoint) ? codePoint : -1;
+    }
+
+    private static String collapseWhitespace(String text){
+        var collapsed = new StringBuilder(text.length());
+        var space = false;
+        for(int i = 0; i < text.length(); i++){
+            var c = text.charAt(i);
+            if(Character.isWhitespace(c) || c == '\u00a0'){
+                space = collapsed.length() > 0;
+            }else{
+                if(space) collapsed.append(' ');
+                collapsed.append(c);
+                space = false;
+            }
+        }
+        return collapsed.toString();
+    }
+
+    private int indexOf(int b, int from){
+        for(int i = from; i < limit; i++){
+            if(html[i] == b) return i;
+        }
+        return -1;
+    }
+
+    private int skipPast(int b, int from){
+        var i = indexOf(b, from);
+        if(i >= 0) return i + 1;
+        incomplete = true;
+        return limit;
+    }
+
+    private int skipPast(byte[] needle, int from){
+        var i = findRawTextEnd(needle, from);
+        return i < limit ? i + needle.length : limit;
+    }
+
+    /**
+     * Finds the end of a comment, script, style or title. If the end has not arrived yet, the search is resumed where it
+     * stopped instead of scanning a long script again on every chunk.
+     * @return index of the needle, or the end of the available bytes if not found
+     */
+    private int findRawTextEnd(byte[] needle, int from){
+        if(tokenStart == resumeToken) from = Math.max(from, resumeFrom);
+        var i = indexOfIgnoreCase(needle, from);
+        if(i >= limit){
+            incomplete = true;
+            resumeToken = tokenStart;
+            resumeFrom = Math.max(from, limit - needle.length + 1);
+        }
+        return i;
+    }
+
+    /**
+     * Returns index of an ASCII lower-case needle, ignoring case, or the end of the available bytes if not found.
+     */
+    private int indexOfIgnoreCase(byte[] needle, int from){
+        var last = limit - needle.length;
+        for(int i = from; i <= last; i++){
+            if(toLower(html[i]) == needle[0] && equalsIgnoreCase(i, i + needle.length, needle)) return i;
+        }
+        return limit;
+    }
+
+    private boolean startsWith(int from, byte first, byte second){
+        return from + 1 < limit && html[from] == first && html[from + 1] == second;
+    }
+
+    private boolean equalsIgnoreCase(int start, int end, byte[] lowerCase){
+        if(end - start != lowerCase.length) return false;
+        for(int i = 0; i < lowerCase.length; i++){
+            if(toLower(html[start + i]) != lowerCase[i]) return false;
+        }
+        return true;
+    }
+
+    private static byte toLower(byte b){
+        return b >= 'A' && b <= 'Z' ? (byte) (b | 0x20) : b;
+    }
+
+    private static boolean isLetter(byte b){
+        return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z');
+    }
+
+    private static boolean isSpace(byte b){
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+    }
+
+    private static byte[] bytes(String ascii){
+        return ascii.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,64 @@
+package org.helvidios.crawler.model;
+
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Finds {@code <a href>} links in an HTML page while it is still downloading, so that they can be scheduled before the
+ * download completes. The page is scanned in the same way as by {@link HtmlDocument#urls()}, and every distinct
+ * absolute http(s) link is passed to a callback as soon as the bytes of its tag have arrived.
+ * Instances are not thread-safe; chunks are expected to be fed by the single thread that receives the body.
+ */
+public final class LinkScanner {
+    private final HtmlLinkExtractor extractor;
+    private boolean finished;
+
+    /**
+     * Creates a new instance of {@link LinkScanner}
+     * @param url URL of the page, against which relative links are resolved
+     * @param charset charset of the page, which must be supported, see {@link #supports(Charset)}
+     * @param onLink receives every distinct link on the page
+     * @throws IllegalArgumentException if the charset is not supported
+     */
+    public LinkScanner(URI url, Charset charset, Consumer<URI> onLink){
+        Objects.requireNonNull(url, "url must not be null");
+        Objects.requireNonNull(charset, "charset must not be null");
+        Objects.requireNonNull(onLink, "onLink must not be null");
+        if(!supports(charset)) throw new IllegalArgumentException("charset must encode ASCII as single bytes: " + charset);
+        this.extractor = new HtmlLinkExtractor(url, charset, onLink);
+    }
+
+    /**
+     * Returns true if pages in the given charset can be scanned as they download. Charsets that do not encode ASCII as
+     * single bytes, such as UTF-16, cannot; their links are only available from the complete {@link HtmlDocument}.
+     * @param charset charset of the page
+     * @return true if the charset is supported
+     */
+    public static boolean supports(Charset charset){
+        return HtmlLinkExtractor.isAsciiCompatible(charset);
+    }
+
+    /**
+     * Scans bytes that have arrived. The buffer must start with all bytes fed before, as it does when a download
+     * appends to a growing buffer; it may be a different array than last time. A tag cut off at the end of the
+     * buffer is scanned once the rest of it arrives.
+     * @param buffer body received so far
+     * @param length number of valid bytes in the buffer
+     */
+    public void feed(byte[] buffer, int length){
+        Objects.requireNonNull(buffer, "buffer must not be null");
+        if(length < 0 || length > buffer.length) throw new IllegalArgumentException("length must be within buffer");
+        if(!finished) extractor.feed(buffer, length);
+    }
+
+    /**
+     * Scans the rest of the body once the download is complete or was cut off. Calls after the first have no effect.
+     */
+    public void finish(){
+        if(finished) return;
+        finished = true;
+        extractor.finish();
+    }
+}
@@ -0,0 +1,197 @@
+package org.helvidios.crawler.model;
+
+import java.util.Objects;
+import java.util.OptionalLong;
+
+/**
+ * Computes 64-bit SimHash fingerprints of the visible text of HTML pages. Pages with similar text get fingerprints
+ * that differ in few bits, so near-duplicates such as mirrors, printer-friendly versions and copies with session
+ * parameters can be found by comparing {@link #distance(long, long) Hamming distances}.
+ * The text is split into lower-cased words, markup, comments, scripts and styles are skipped, and every run of
+ * {@link #SHINGLE_SIZE} consecutive words contributes one feature.
+ */
+public final class SimHash {
+
+    /**
+     * Number of consecutive words that form one feature.
+     */
+    public static final int SHINGLE_SIZE = 3;
+
+    private SimHash(){}
+
+    /**
+     * Computes the fingerprint of a page's visible text.
+     * @param doc HTML document
+     * @return fingerprint, or empty if the page has no text
+     */
+    public static OptionalLong of(HtmlDocument doc){
+        Objects.requireNonNull(doc, "doc must not be null");
+        return of(doc.content());
+    }
+
+    /**
+     * Computes the fingerprint of the visible text of HTML content.
+     * @param html HTML content
+     * @return fingerprint, or empty if the content has no text
+     */
+    public static OptionalLong of(String html){
+        Objects.requireNonNull(html, "html must not be null");
+        var accumulator = new Accumulator();
+        new TextScanner(html, accumulator).scan();
+        return accumulator.fingerprint();
+    }
+
+    /**
+     * Returns number of bits in which two fingerprints differ.
+     * @param a fingerprint
+     * @param b fingerprint
+     * @return Hamming distance between 0 and 64
+     */
+    public static int distance(long a, long b){
+        return Long.bitCount(a ^ b);
+    }
+
+    /**
+     * Sums the features: every bit of the fingerprint is set if more features have it set than cleared.
+     */
+    private static final class Accumulator {
+        private final int[] weights = new int[64];
+        private final long[] window = new long[SHINGLE_SIZE];
+        private int words;
+        private int features;
+
+        void word(long hash){
+            window[words % SHINGLE_SIZE] = hash;
+            words++;
+            if(words >= SHINGLE_SIZE) feature(shingle(words));
+        }
+
+        /**
+         * Combines the last words in order, so that the same words in a different order form a different feature.
+         */
+        private long shingle(int end){
+            var h = 0L;
+            for(int i = end - Math.min(end, SHINGLE_SIZE); i < end; i++){
+                h = mix(h * 31 + window[i % SHINGLE_SIZE]);
+            }
+            return h;
+        }
+
+        private void feature(long hash){
+            features++;
+            for(int bit = 0; bit < 64; bit++){
+                weights[bit] += ((hash >>> bit) & 1) == 0 ? -1 : 1;
+            }
+        }
+
+        OptionalLong fingerprint(){
+            // a page shorter than one shingle still gets a fingerprint from all of its words
+            if(features == 0 && words > 0) feature(shingle(words));
+            if(features == 0) return OptionalLong.empty();
+            var fingerprint = 0L;
+            for(int bit = 0; bit < 64; bit++){
+                if(weights[bit] > 0) fingerprint |= 1L << bit;
+            }
+            return OptionalLong.of(fingerprint);
+        }
+    }
+
+    /**
+     * Splits the text outside of tags into words. A deliberately simple scanner: it only needs to find the same words
+     * in similar pages, not to render them.
+     */
+    private static final class TextScanner {
+        private final String html;
+        private final Accumulator accumulator;
+        private int pos;
+
+        TextScanner(String html, Accumulator accumulator){
+            this.html = html;
+            this.accumulator = accumulator;
+        }
+
+        void scan(){
+            var length = html.length();
+            while(pos < length){
+                var c = html.charAt(pos);
+                if(c == '<'){
+                    skipMarkup();
+                }else if(c == '&'){
+                    skipEntity();
+                }else if(Character.isLetterOrDigit(c)){
+                    word();
+                }else{
+                    pos++;
+                }
+            }
+        }
+
+        private void word(){
+            var h = 0xcbf29ce484222325L;
+            while(pos < html.length()){
+                var c = html.charAt(pos);
+                if(!Character.isLetterOrDigit(c)) break;
+                h = (h ^ Character.toLowerCase(c)) * 0x100000001b3L;
+                pos++;
+            }
+            accumulator.word(mix(h));
+        }
+
+        /**
+         * Entities separate words instead of being decoded, which is consistent across pages.
+         */
+        private void skipEntity(){
+            var end = pos + 1;
+            while(end < html.length() && end - pos <= 10 && (Character.isLetterOrDigit(html.charAt(end)) || html.charAt(end) == '#')) end++;
+            pos = end < html.length() && html.charAt(end) == ';' ? end + 1 : pos + 1;
+        }
+
+        private void skipMarkup(){
+            if(html.startsWith("<!--", pos)){
+                skipPast("-->", pos + 4);
+                return;
+            }
+            var rawText = rawTextElement();
+            skipPast(">", pos + 1);
+            if(rawText != null) skipPast("</" + rawText, pos);
+        }
+
+        /**
+         * Returns the name of a script or style start tag at the current position, whose content is not text.
+         */
+        private String rawTextElement(){
+            for(var name : new String[]{ "script", "style" }){
+                var end = pos + 1 + name.length();
+                if(html.regionMatches(true, pos + 1, name, 0, name.length())
+                    && (end >= html.length() || !Character.isLetterOrDigit(html.charAt(end)))){
+                    return name;
+                }
+            }
+            return null;
+        }
+
+        private void skipPast(String needle, int from){
+            var i = indexOfIgnoreCase(needle, from);
+            pos = i < 0 ? html.length() : i + needle.length();
+        }
+
+        private int indexOfIgnoreCase(String needle, int from){
+            for(int i = from; i <= html.length() - needle.length(); i++){
+                if(html.regionMatches(true, i, needle, 0, needle.length())) return i;
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * MurmurHash3 finalizer, which makes every input bit affect every output bit.
+     */
+    private static long mix(long h){
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,112 @@
+package org.helvidios.crawler.model;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.hash.Hashing;
+
+/**
+ * A compact, immutable URL in canonical form, meant to be used as a key wherever many URLs are kept, such as URL
+ * caches and the crawl frontier. It holds only the canonical spelling as bytes and a 64-bit fingerprint of it, which is
+ * several times smaller than a {@link URI} with its parsed components, and compares trivially different spellings of
+ * the same page as equal, see {@link #of(URI)}.
+ */
+public final class Url {
+    private static final Interner<Url> INTERNER = Interners.newWeakInterner();
+
+    private final byte[] bytes;
+    private final long fingerprint;
+
+    private Url(byte[] bytes){
+        this.bytes = bytes;
+        this.fingerprint = fingerprint(bytes);
+    }
+
+    /**
+     * Creates a {@link Url} from the canonical spelling of a URL: scheme and host are lower-cased, the default port and
+     * the fragment are dropped, percent-escapes are normalized, dot segments are removed, and tracking parameters such
+     * as {@code utm_source} are dropped from the query, whose remaining parameters are sorted.
+     * @param url absolute URL
+     * @return {@link Url}
+     * @throws IllegalArgumentException if the URL is not absolute
+     */
+    public static Url of(URI url){
+        Objects.requireNonNull(url, "url must not be null");
+        return new Url(UrlCanonicalizer.canonicalize(url).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Creates a {@link Url} from a string, see {@link #of(URI)}.
+     * @param url absolute URL
+     * @return {@link Url}
+     * @throws IllegalArgumentException if the string is not a valid absolute URL
+     */
+    public static Url of(String url){
+        Objects.requireNonNull(url, "url must not be null");
+        return of(URI.create(url));
+    }
+
+    /**
+     * Returns a 64-bit fingerprint of the canonical URL. Distinct URLs collide with a probability of about 2^-64 per
+     * pair, so the fingerprint can serve as a compact stand-in for the URL where a rare false match is acceptable, such
+     * as a document id. It is stable across runs and releases.
+     * @return fingerprint
+     */
+    public long fingerprint(){
+        return fingerprint;
+    }
+
+    /**
+     * Returns a shared instance equal to this one, so that a URL discovered on many pages is kept in memory once.
+     * Shared instances are held weakly and disappear once no longer referenced.
+     * @return {@link Url} equal to this one
+     */
+    public Url intern(){
+        return INTERNER.intern(this);
+    }
+
+    /**
+     * Returns number of bytes in the canonical URL.
+     * @return length in bytes
+     */
+    public int length(){
+        return bytes.length;
+    }
+
+    /**
+     * Returns the canonical URL as a {@link URI}. A new instance is created on every call.
+     * @return URI
+     */
+    public URI toUri(){
+        return URI.create(toString());
+    }
+
+    /**
+     * Returns the canonical URL.
+     */
+    @Override
+    public String toString() {
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Url other && fingerprint == other.fingerprint && Arrays.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(fingerprint);
+    }
+
+    /**
+     * Lower 64 bits of MurmurHash3 x64 128, which is fast and well distributed, and whose output is fixed by its
+     * specification, so fingerprints stay stable across releases and can be persisted.
+     */
+    static long fingerprint(byte[] bytes){
+        return Hashing.murmur3_128().hashBytes(bytes).asLong();
+    }
+}
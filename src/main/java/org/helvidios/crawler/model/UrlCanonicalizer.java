@@ -0,0 +1,165 @@
+package org.helvidios.crawler.model;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Rewrites a URL into a canonical spelling, so that trivially different spellings of the same page compare equal:
+ * <ul>
+ * <li>scheme and host are lower-cased, a trailing dot of the host and the default port are dropped</li>
+ * <li>the fragment is dropped</li>
+ * <li>percent-escapes of unreserved characters are decoded, other escapes are upper-cased, and characters that are not
+ * allowed in a URL are escaped as UTF-8</li>
+ * <li>dot segments are removed and an empty path becomes "/"</li>
+ * <li>empty query parameters and tracking parameters such as {@code utm_source} or {@code gclid} are dropped, and the
+ * remaining parameters are sorted</li>
+ * </ul>
+ * The result is pure ASCII. Sorting parameters assumes that servers do not depend on their order, which holds for
+ * practically all sites and is the usual trade-off made by crawlers.
+ */
+final class UrlCanonicalizer {
+
+    /**
+     * Query parameters that identify a campaign or a click rather than content. Parameters starting with
+     * {@code utm_} are dropped as well.
+     */
+    static final Set<String> TRACKING_PARAMETERS = Set.of("gclid", "dclid", "fbclid", "msclkid", "yclid", "mc_cid", "mc_eid", "_ga", "_hsenc", "_hsmi");
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private UrlCanonicalizer(){}
+
+    /**
+     * Returns the canonical spelling of a URL.
+     * @param url absolute URL
+     * @return canonical URL
+     * @throws IllegalArgumentException if the URL is not absolute
+     */
+    static String canonicalize(URI url){
+        if(url.getScheme() == null) throw new IllegalArgumentException("url must be absolute: " + url);
+        var scheme = url.getScheme().toLowerCase(Locale.ROOT);
+        if(url.isOpaque()) return scheme + ":" + escape(url.getRawSchemeSpecificPart());
+
+        var sb = new StringBuilder(url.toString().length());
+        sb.append(scheme).append("://");
+        if(url.getRawUserInfo() != null) sb.append(escape(url.getRawUserInfo())).append('@');
+        var host = url.getHost();
+        if(host != null){
+            host = host.toLowerCase(Locale.ROOT);
+            if(host.endsWith(".") && host.length() > 1) host = host.substring(0, host.length() - 1);
+            sb.append(host);
+            var port = url.getPort();
+            if(port != -1 && port != defaultPort(scheme)) sb.append(':').append(port);
+        }else if(url.getRawAuthority() != null){
+            // registry-based authority that java.net.URI could not parse as a host: only the host part is
+            // case-insensitive, and it is lower-cased before escaping so that escapes stay upper-case
+            var authority = url.getRawAuthority();
+            var at = authority.lastIndexOf('@');
+            if(at >= 0) sb.append(escape(authority.substring(0, at))).append('@');
+            sb.append(escape(authority.substring(at + 1).toLowerCase(Locale.ROOT)));
+        }
+
+        var path = url.getRawPath() == null ? "" : removeDotSegments(escape(url.getRawPath()));
+        sb.append(path.isEmpty() ? "/" : path);
+
+        var query = url.getRawQuery() == null ? null : canonicalQuery(url.getRawQuery());
+        if(query != null) sb.append('?').append(query);
+        return sb.toString();
+    }
+
+    private static int defaultPort(String scheme){
+        return switch(scheme){
+            case "http" -> 80;
+            case "https" -> 443;
+            default -> -1;
+        };
+    }
+
+    /**
+     * Drops empty and tracking parameters and sorts the rest.
+     * @return canonical query, or null if no parameters are left
+     */
+    private static String canonicalQuery(String rawQuery){
+        var parameters = new ArrayList<String>();
+        for(var parameter : rawQuery.split("&")){
+            if(parameter.isEmpty() || isTracking(parameter)) continue;
+            parameters.add(escape(parameter));
+        }
+        if(parameters.isEmpty()) return null;
+        // stable sort: repeated names keep their relative order, which may matter to the server
+        parameters.sort((a, b) -> name(a).compareTo(name(b)));
+        return String.join("&", parameters);
+    }
+
+    private static boolean isTracking(String parameter){
+        var name = name(parameter).toLowerCase(Locale.ROOT);
+        return name.startsWith("utm_") || TRACKING_PARAMETERS.contains(name);
+    }
+
+    private static String name(String parameter){
+        var eq = parameter.indexOf('=');
+        return eq < 0 ? parameter : parameter.substring(0, eq);
+    }
+
+    /**
+     * Normalizes percent-escapes: escapes of unreserved characters are decoded and other escapes are upper-cased.
+     * Characters that may not appear in a URL, including non-ASCII characters, are escaped as UTF-8.
+     * Reserved characters such as '/', '&' and '=' keep their meaning: escaped ones stay escaped and vice versa.
+     */
+    static String escape(String raw){
+        var sb = new StringBuilder(raw.length());
+        for(int i = 0; i < raw.length(); i++){
+            var c = raw.charAt(i);
+            if(c == '%' && i + 2 < raw.length() && isHex(raw.charAt(i + 1)) && isHex(raw.charAt(i + 2))){
+                var decoded = (char) Integer.parseInt(raw, i + 1, i + 3, 16);
+                if(isUnreserved(decoded)) sb.append(decoded);
+                else sb.append('%').append(Character.toUpperCase(raw.charAt(i + 1))).append(Character.toUpperCase(raw.charAt(i + 2)));
+                i += 2;
+            }else if(c == '%' || c > 0x7e || c <= 0x20 || "\"<>\\^`{|}".indexOf(c) >= 0){
+                var end = Character.isHighSurrogate(c) && i + 1 < raw.length() ? i + 2 : i + 1;
+                for(var b : raw.substring(i, end).getBytes(StandardCharsets.UTF_8)){
+                    sb.append('%').append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+                }
+                i = end - 1;
+            }else{
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static boolean isHex(char c){
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isUnreserved(char c){
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    /**
+     * Removes "." and ".." segments as described in RFC 3986, section 5.2.4.
+     */
+    static String removeDotSegments(String path){
+        if(path.indexOf('.') < 0) return path;
+        var segments = new ArrayList<String>();
+        var parts = path.split("/", -1);
+        for(int i = 0; i < parts.length; i++){
+            var segment = parts[i];
+            var last = i == parts.length - 1;
+            if(segment.equals(".")){
+                if(last) segments.add("");
+            }else if(segment.equals("..")){
+                // never remove the empty segment before the leading slash
+                if(segments.size() > 1) segments.remove(segments.size() - 1);
+                if(last) segments.add("");
+            }else{
+                segments.add(segment);
+            }
+        }
+        var result = String.join("/", segments);
+        return path.startsWith("/") && !result.startsWith("/") ? "/" + result : result;
+    }
+}
@@ -5,6 +5,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.function.Function;
 import org.helvidios.crawler.model.HtmlDocument;
+import org.helvidios.crawler.model.Url;
 
 /**
  * Persistent storage for downloaded HTML documents. 
@@ -36,13 +37,24 @@ public interface DocumentDb extends Iterable<HtmlDocument> {
     HtmlDocument get(long docId) throws DocumentNotFoundException, DocumentDbException;
 
     /**
-     * Returns true if a document with a given URL exists in storage.
+     * Returns true if a document with a given URL, or another spelling of it (see {@link Url#of(URI)}), exists in
+     * storage.
      * @param url document url
      * @throws DocumentDbException if communication with storage fails
      * @return true if document exists
      */
     boolean contains(URI url) throws DocumentDbException;
 
+    /**
+     * Returns true if a document with a given canonical URL exists in storage.
+     * @param url document url
+     * @throws DocumentDbException if communication with storage fails
+     * @return true if document exists
+     */
+    default boolean contains(Url url) throws DocumentDbException {
+        return contains(url.toUri());
+    }
+
     /**
      * Writes an HTML document to the storage.
      * @throws DocumentWriteException if document failed to be written to storage
@@ -61,6 +73,7 @@ public interface DocumentDb extends Iterable<HtmlDocument> {
     static class Builder {
         private boolean useCompression;
         private boolean useCaching;
+        private NearDuplicateDetector nearDuplicateDetector;
         private DocumentDb storageProvider = new InMemoryDocumentDb();
         private UrlCache urlCache = new GuavaCache();
         private HtmlDocumentCompression compressionProvider = HtmlDocumentCompression.gzip();
@@ -111,6 +124,38 @@ public interface DocumentDb extends Iterable<HtmlDocument> {
             return this;
         }
 
+        /**
+         * Skip writing documents that are near-duplicates of documents written before, using a detector with the
+         * default max distance. Writing a near-duplicate fails with {@link DuplicateDocumentException}.
+         * @return {@link Builder}
+         */
+        public Builder withNearDuplicateDetection() {
+            return withNearDuplicateDetection(NearDuplicateDetector.create());
+        }
+
+        /**
+         * Skip writing documents that are near-duplicates of documents written before.
+         * Writing a near-duplicate fails with {@link DuplicateDocumentException}.
+         * @param maxDistance max number of bits in which SimHash fingerprints of near-duplicates may differ
+         * @throws IllegalArgumentException if maxDistance is out of range, see {@link NearDuplicateDetector#create(int)}
+         * @return {@link Builder}
+         */
+        public Builder withNearDuplicateDetection(int maxDistance) {
+            return withNearDuplicateDetection(NearDuplicateDetector.create(maxDistance));
+        }
+
+        /**
+         * Skip writing documents that are near-duplicates of documents known to a detector, which can be shared with
+         * other parts of the crawler, e.g. to check pages before parsing them.
+         * Writing a near-duplicate fails with {@link DuplicateDocumentException}.
+         * @param detector near-duplicate detector
+         * @return {@link Builder}
+         */
+        public Builder withNearDuplicateDetection(NearDuplicateDetector detector) {
+            this.nearDuplicateDetector = Objects.requireNonNull(detector, "detector must not be null");
+            return this;
+        }
+
         /**
          * Sets storage provider given a specific connection string. This method will attempt to resolve the correct provider.
          * If the provider indicated by the scheme element in the connection string is not supported, an {@link IllegalArgumentException} will be thrown.
@@ -149,6 +194,11 @@ public interface DocumentDb extends Iterable<HtmlDocument> {
                 docDb = new DocumentDbWithCompression(compressionProvider, docDb);
             }
 
+            // sees documents before compression, and skipped duplicates still reach the URL cache
+            if(nearDuplicateDetector != null) {
+                docDb = new DocumentDbWithNearDuplicateDetection(nearDuplicateDetector, docDb);
+            }
+
             if(useCaching) {
                 docDb = new DocumentDbWithUrlCache(urlCache, docDb);
             }
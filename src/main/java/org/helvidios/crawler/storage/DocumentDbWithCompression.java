@@ -5,6 +5,7 @@ import java.net.URI;
 import java.util.Iterator;
 import java.util.Objects;
 import org.helvidios.crawler.model.HtmlDocument;
+import org.helvidios.crawler.model.Url;
 
 class DocumentDbWithCompression implements DocumentDb {
     private final DocumentDb docDb;
@@ -55,6 +56,11 @@ class DocumentDbWithCompression implements DocumentDb {
 
     @Override
     public boolean contains(URI url) throws DocumentDbException {
+        return docDb.contains(Url.of(url));
+    }
+
+    @Override
+    public boolean contains(Url url) throws DocumentDbException {
         return docDb.contains(url);
     }
 
@@ -0,0 +1,70 @@
+package org.helvidios.crawler.storage;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.Objects;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.helvidios.crawler.model.Url;
+
+/**
+ * Skips writing documents that are near-duplicates of documents written before, such as mirrors, printer-friendly
+ * versions and copies with session parameters. A skipped write fails with {@link DuplicateDocumentException}, which
+ * tells the caller not to expand the page either.
+ * The detector only knows documents written through this instance since it was created.
+ */
+class DocumentDbWithNearDuplicateDetection implements DocumentDb {
+    private final NearDuplicateDetector detector;
+    private final DocumentDb docDb;
+
+    DocumentDbWithNearDuplicateDetection(NearDuplicateDetector detector, DocumentDb docDb) {
+        this.detector = Objects.requireNonNull(detector, "detector must not be null");
+        this.docDb = Objects.requireNonNull(docDb, "docDb must not be null");
+    }
+
+    @Override
+    public Iterator<HtmlDocument> iterator() {
+        return docDb.iterator();
+    }
+
+    @Override
+    public long size() throws DocumentDbException {
+        return docDb.size();
+    }
+
+    @Override
+    public void clear() throws DocumentDbException {
+        docDb.clear();
+        detector.clear();
+    }
+
+    @Override
+    public HtmlDocument get(long docId) throws DocumentNotFoundException, DocumentDbException {
+        return docDb.get(docId);
+    }
+
+    @Override
+    public boolean contains(URI url) throws DocumentDbException {
+        return docDb.contains(Url.of(url));
+    }
+
+    @Override
+    public boolean contains(Url url) throws DocumentDbException {
+        return docDb.contains(url);
+    }
+
+    @Override
+    public void write(HtmlDocument doc) throws DocumentWriteException {
+        Objects.requireNonNull(doc, "doc must not be null");
+        var admission = detector.admit(doc);
+        if(admission.duplicateOf().isPresent()) throw new DuplicateDocumentException(doc, admission.duplicateOf().getAsLong());
+
+        try{
+            docDb.write(doc);
+        }
+        catch(DocumentWriteException ex){
+            // not stored, so the fingerprint of the stored version, if any, still describes the page
+            detector.restore(doc.docId(), admission.previous());
+            throw ex;
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.net.URI;
 import java.util.Iterator;
 import java.util.Objects;
 import org.helvidios.crawler.model.HtmlDocument;
+import org.helvidios.crawler.model.Url;
 
 class DocumentDbWithUrlCache implements DocumentDb {
     private final UrlCache urlCache;
@@ -36,19 +37,31 @@ class DocumentDbWithUrlCache implements DocumentDb {
 
     @Override
     public boolean contains(URI url) throws DocumentDbException {
-        if(!urlCache.contains(url)) {
-            var urlProcessed = docDb.contains(url);
-            if (urlProcessed) {
-                urlCache.add(url);
-            }
-        }
+        // look up the canonical form, so that a miss finds the document under any spelling of its URL
+        return contains(Url.of(url));
+    }
+
+    @Override
+    public boolean contains(Url url) throws DocumentDbException {
+        if(urlCache.contains(url)) return true;
 
-        return urlCache.contains(url);
+        var urlProcessed = docDb.contains(url);
+        if (urlProcessed) {
+            urlCache.add(url);
+        }
+        return urlProcessed;
     }
 
     @Override
     public void write(HtmlDocument doc) throws DocumentWriteException {
-        docDb.write(doc);
-        urlCache.add(doc.url());
+        try{
+            docDb.write(doc);
+        }
+        catch(DuplicateDocumentException ex){
+            // the URL was processed even though its content was not stored
+            urlCache.add(Url.of(doc.url()));
+            throw ex;
+        }
+        urlCache.add(Url.of(doc.url()));
     }
 }
@@ -15,6 +15,11 @@ public class DocumentWriteException extends DocumentDbException {
             causedBy);
         this.document = document;
     }
+
+    DocumentWriteException(HtmlDocument document, String message) {
+        super(message, null);
+        this.document = Objects.requireNonNull(document, "document must not be null");
+    }
     
     /**
      * Returns HTML document which failed to be written to storage.
@@ -0,0 +1,24 @@
+package org.helvidios.crawler.storage;
+
+import org.helvidios.crawler.model.HtmlDocument;
+
+/**
+ * Indicates that a document was not written to storage because it is a near-duplicate of a stored document.
+ * The crawler should not expand the links of such a page either, since they were found on the original.
+ */
+public class DuplicateDocumentException extends DocumentWriteException {
+    private final long duplicateOf;
+
+    DuplicateDocumentException(HtmlDocument document, long duplicateOf) {
+        super(document, String.format("Document [%s] is a near-duplicate of document with ID=%d", document.url(), duplicateOf));
+        this.duplicateOf = duplicateOf;
+    }
+
+    /**
+     * Returns ID of the stored document that this document duplicates.
+     * @return document ID
+     */
+    public long duplicateOf(){
+        return duplicateOf;
+    }
+}
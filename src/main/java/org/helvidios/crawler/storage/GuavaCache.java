@@ -1,19 +1,37 @@
 package org.helvidios.crawler.storage;
 
-import java.net.URI;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.helvidios.crawler.model.Url;
 
+/**
+ * Keeps the most recently added URLs in a bounded Guava cache. Evicted URLs are looked up in the persistent store again.
+ */
 class GuavaCache implements UrlCache {
+    /**
+     * Default max number of URLs kept in the cache.
+     */
+    static final long DEFAULT_MAX_SIZE = 1_000_000;
+
+    private final Cache<Url, Boolean> urls;
+
+    GuavaCache(){
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    GuavaCache(long maxSize){
+        this.urls = CacheBuilder.newBuilder()
+            .maximumSize(maxSize)
+            .build();
+    }
 
     @Override
-    public void add(URI url) {
-        // TODO Auto-generated method stub
-        
+    public void add(Url url) {
+        urls.put(url, Boolean.TRUE);
     }
 
     @Override
-    public boolean contains(URI url) {
-        // TODO Auto-generated method stub
-        return false;
+    public boolean contains(Url url) {
+        return urls.getIfPresent(url) != null;
     }
-    
 }
@@ -1,13 +1,11 @@
 package org.helvidios.crawler.storage;
 
-import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
 import java.util.Objects;
-import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 import org.helvidios.crawler.model.HtmlDocument;
@@ -45,7 +43,11 @@ public interface HtmlDocumentCompression {
                 Objects.requireNonNull(doc, "doc must not be null");
                 try(var bos = new ByteArrayOutputStream()){
                     try(var gzip = new GZIPOutputStream(bos)){
-                        gzip.write(doc.content().getBytes("UTF-8"));
+                        // documents are stored as UTF-8; raw bytes in another charset are transcoded once
+                        var contentBytes = StandardCharsets.UTF_8.equals(doc.charset())
+                            ? doc.contentBytes()
+                            : doc.content().getBytes(StandardCharsets.UTF_8);
+                        gzip.write(contentBytes);
                         gzip.finish();
                         return HtmlDocument.of(
                             doc.docId(), 
@@ -61,12 +63,11 @@ public interface HtmlDocumentCompression {
                 byte[] contentBytes = Base64.getDecoder().decode(doc.content());
                 try(var bis = new ByteArrayInputStream(contentBytes)){
                     try(var gis = new GZIPInputStream(bis)){
-                        try(var br = new BufferedReader(new InputStreamReader(gis, "UTF-8"))){
-                            return HtmlDocument.of(
-                                doc.docId(), 
-                                doc.url(), 
-                                br.lines().collect(Collectors.joining("\n")));
-                        }
+                        return HtmlDocument.Builder()
+                            .withId(doc.docId())
+                            .withUrl(doc.url())
+                            .withContent(gis.readAllBytes(), StandardCharsets.UTF_8)
+                            .build();
                     }
                 }
             }
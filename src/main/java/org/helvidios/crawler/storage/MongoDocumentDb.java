@@ -7,11 +7,14 @@ import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 import com.mongodb.client.model.Filters;
-import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.ReplaceOptions;
 import org.bson.Document;
 import org.helvidios.crawler.model.HtmlDocument;
+import org.helvidios.crawler.model.Url;
 
 class MongoDocumentDb implements DocumentDb {
+    private static final ReplaceOptions UPSERT = new ReplaceOptions().upsert(true);
+
     private final MongoDatabase database;
     private final MongoCollection<Document> collection;
 
@@ -24,7 +27,6 @@ class MongoDocumentDb implements DocumentDb {
         var mongoClient = MongoClients.create(connectionString.toString());
         this.database = mongoClient.getDatabase(databaseName.replace("/", ""));
         this.collection = this.database.getCollection("documents");
-        this.collection.createIndex(Indexes.ascending("url"));
     }
 
     @Override
@@ -52,16 +54,30 @@ class MongoDocumentDb implements DocumentDb {
         }
     }
 
+    /**
+     * Looks the document up by the id derived from the URL, see {@link HtmlDocument#idOf(URI)}, so that the lookup
+     * uses the primary key and any spelling of the URL matches. Documents written with explicitly assigned ids are not
+     * found.
+     */
     @Override
     public boolean contains(URI url) throws DocumentDbException {
+        return contains(Url.of(url));
+    }
+
+    @Override
+    public boolean contains(Url url) throws DocumentDbException {
         try{
-            return collection.find(Filters.eq("url", url.toString())).first() != null;
+            return collection.find(Filters.eq("_id", url.fingerprint())).first() != null;
         }
         catch(Exception ex){
             throw new DocumentDbException(ex);
         }
     }
 
+    /**
+     * Inserts the document, or replaces the stored document with the same id. Since ids are derived from URLs,
+     * writing a page that was crawled before overwrites it in place.
+     */
     @Override
     public void write(HtmlDocument doc) throws DocumentWriteException {
         Objects.requireNonNull(doc, "doc must not be null");
@@ -69,7 +85,7 @@ class MongoDocumentDb implements DocumentDb {
             var bsonDocument = new Document("_id", doc.docId())
                 .append("url", doc.url().toString())
                 .append("content", doc.content());
-            collection.insertOne(bsonDocument);
+            collection.replaceOne(Filters.eq("_id", doc.docId()), bsonDocument, UPSERT);
         }
         catch(Exception ex){
             throw new DocumentWriteException(doc, ex);
@@ -0,0 +1,231 @@
+package org.helvidios.crawler.storage;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.OptionalLong;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.helvidios.crawler.model.SimHash;
+
+/**
+ * Remembers the {@link SimHash} fingerprints of known pages and finds pages whose fingerprint is within a maximum
+ * Hamming distance of a known one, i.e. near-duplicates.
+ * <p>Fingerprints are indexed in maxDistance + 1 bands of bits. Two fingerprints that differ in at most maxDistance bits
+ * agree on at least one band, so only pages sharing a band with the page in question are compared. With the default
+ * distance of 3 every band has 16 bits, and a lookup among millions of pages compares a few hundred candidates.</p>
+ * <p>Instances are thread-safe.</p>
+ */
+public final class NearDuplicateDetector {
+
+    /**
+     * Default max Hamming distance between fingerprints of near-duplicate pages.
+     */
+    public static final int DEFAULT_MAX_DISTANCE = 3;
+
+    /**
+     * Largest supported max distance. Larger distances make bands too narrow to narrow down candidates.
+     */
+    public static final int MAX_DISTANCE_LIMIT = 7;
+
+    private final int maxDistance;
+    private final int[] bandShifts;
+    private final long[] bandMasks;
+    private final Map<Long, Long> fingerprints = new HashMap<>();
+    private final Map<Long, Bucket> bands = new HashMap<>();
+
+    private NearDuplicateDetector(int maxDistance){
+        this.maxDistance = maxDistance;
+        var bandCount = maxDistance + 1;
+        this.bandShifts = new int[bandCount];
+        this.bandMasks = new long[bandCount];
+        var shift = 0;
+        for(int band = 0; band < bandCount; band++){
+            // spread 64 bits as evenly as possible, the first bands get one bit more
+            var width = 64 / bandCount + (band < 64 % bandCount ? 1 : 0);
+            bandShifts[band] = shift;
+            bandMasks[band] = width == 64 ? -1L : (1L << width) - 1;
+            shift += width;
+        }
+    }
+
+    /**
+     * Creates a detector with {@link #DEFAULT_MAX_DISTANCE}.
+     * @return {@link NearDuplicateDetector}
+     */
+    public static NearDuplicateDetector create(){
+        return create(DEFAULT_MAX_DISTANCE);
+    }
+
+    /**
+     * Creates a detector.
+     * @param maxDistance max number of bits in which fingerprints of near-duplicate pages may differ, 0 for exact
+     * duplicates of the text only
+     * @return {@link NearDuplicateDetector}
+     * @throws IllegalArgumentException if maxDistance is negative or greater than {@link #MAX_DISTANCE_LIMIT}
+     */
+    public static NearDuplicateDetector create(int maxDistance){
+        if(maxDistance < 0 || maxDistance > MAX_DISTANCE_LIMIT){
+            throw new IllegalArgumentException("maxDistance must be between 0 and " + MAX_DISTANCE_LIMIT);
+        }
+        return new NearDuplicateDetector(maxDistance);
+    }
+
+    /**
+     * Returns max number of bits in which fingerprints of near-duplicate pages may differ.
+     * @return max Hamming distance
+     */
+    public int maxDistance(){
+        return maxDistance;
+    }
+
+    /**
+     * Returns id of a known page that the document is a near-duplicate of, without remembering the document.
+     * The document itself, identified by its id, is not reported as its own duplicate.
+     * @param doc HTML document
+     * @return id of a known page, or empty if the document is not a near-duplicate or has no text
+     */
+    public OptionalLong findDuplicate(HtmlDocument doc){
+        Objects.requireNonNull(doc, "doc must not be null");
+        var fingerprint = SimHash.of(doc);
+        if(fingerprint.isEmpty()) return OptionalLong.empty();
+        synchronized(this){
+            return find(doc.docId(), fingerprint.getAsLong());
+        }
+    }
+
+    /**
+     * Remembers the document unless it is a near-duplicate of a known page, in one atomic step, so that concurrently
+     * crawled copies of a page cannot both be accepted. Adding a known document again replaces its fingerprint.
+     * Documents without text are never near-duplicates and are not remembered.
+     * @param doc HTML document
+     * @return id of the known page the document is a near-duplicate of, or empty if the document was accepted
+     */
+    public OptionalLong addIfUnique(HtmlDocument doc){
+        return admit(doc).duplicateOf();
+    }
+
+    /**
+     * Same as {@link #addIfUnique(HtmlDocument)}, and also reports the fingerprint the document replaced, so that it
+     * can be {@link #restore(long, OptionalLong) restored} if the document turns out not to be stored.
+     * @param doc HTML document
+     * @return {@link Admission}
+     */
+    Admission admit(HtmlDocument doc){
+        Objects.requireNonNull(doc, "doc must not be null");
+        var fingerprint = SimHash.of(doc);
+        if(fingerprint.isEmpty()) return new Admission(OptionalLong.empty(), OptionalLong.empty());
+        synchronized(this){
+            var previous = fingerprints.get(doc.docId());
+            var duplicate = find(doc.docId(), fingerprint.getAsLong());
+            if(duplicate.isPresent()) return new Admission(duplicate, OptionalLong.empty());
+            add(doc.docId(), fingerprint.getAsLong());
+            return new Admission(duplicate, previous == null ? OptionalLong.empty() : OptionalLong.of(previous));
+        }
+    }
+
+    /**
+     * Undoes an {@link #admit(HtmlDocument) admission}: remembers the previous fingerprint of a page again, or forgets
+     * the page if it was not known before.
+     * @param docId document id
+     * @param previous fingerprint reported by the admission
+     */
+    synchronized void restore(long docId, OptionalLong previous){
+        if(previous.isPresent()) add(docId, previous.getAsLong());
+        else remove(docId);
+    }
+
+    /**
+     * Forgets a page.
+     * @param docId document id
+     */
+    public synchronized void remove(long docId){
+        var fingerprint = fingerprints.remove(docId);
+        if(fingerprint == null) return;
+        for(int band = 0; band < bandMasks.length; band++){
+            var key = key(band, fingerprint);
+            var bucket = bands.get(key);
+            if(bucket != null && bucket.remove(docId) && bucket.size == 0) bands.remove(key);
+        }
+    }
+
+    /**
+     * Forgets all pages.
+     */
+    public synchronized void clear(){
+        fingerprints.clear();
+        bands.clear();
+    }
+
+    /**
+     * Returns number of known pages.
+     * @return page count
+     */
+    public synchronized int size(){
+        return fingerprints.size();
+    }
+
+    private OptionalLong find(long docId, long fingerprint){
+        for(int band = 0; band < bandMasks.length; band++){
+            var bucket = bands.get(key(band, fingerprint));
+            if(bucket == null) continue;
+            for(int i = 0; i < bucket.size; i++){
+                var candidate = bucket.ids[i];
+                if(candidate == docId) continue;
+                if(SimHash.distance(fingerprint, fingerprints.get(candidate)) <= maxDistance) return OptionalLong.of(candidate);
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    private void add(long docId, long fingerprint){
+        if(fingerprints.containsKey(docId)) remove(docId);
+        fingerprints.put(docId, fingerprint);
+        for(int band = 0; band < bandMasks.length; band++){
+            bands.computeIfAbsent(key(band, fingerprint), k -> new Bucket()).add(docId);
+        }
+    }
+
+    /**
+     * Outcome of {@link #admit(HtmlDocument)}.
+     * @param duplicateOf id of the known page the document is a near-duplicate of, or empty if it was accepted
+     * @param previous fingerprint the accepted document replaced, or empty if it was not known
+     */
+    record Admission(OptionalLong duplicateOf, OptionalLong previous) {}
+
+    /**
+     * Combines the band number with the bits of the fingerprint in that band. With more than one band, bands are at
+     * most 32 bits wide, so the band number in the top bits never overlaps them.
+     */
+    private long key(int band, long fingerprint){
+        var bits = (fingerprint >>> bandShifts[band]) & bandMasks[band];
+        return bandMasks.length == 1 ? bits : ((long) band << 60) ^ bits;
+    }
+
+    /**
+     * Ids of the pages that share the bits of one band, as an unboxed growable array.
+     */
+    private static final class Bucket {
+        private long[] ids = new long[2];
+        private int size;
+
+        void add(long docId){
+            if(size == ids.length) ids = Arrays.copyOf(ids, size * 2);
+            ids[size++] = docId;
+        }
+
+        /**
+         * Removes an id by moving the last id into its place.
+         * @return true if the id was found
+         */
+        boolean remove(long docId){
+            for(int i = 0; i < size; i++){
+                if(ids[i] == docId){
+                    ids[i] = ids[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
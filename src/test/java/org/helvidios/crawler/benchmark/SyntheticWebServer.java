@@ -0,0 +1,331 @@
+package org.helvidios.crawler.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-process web server that serves a generated graph of linked HTML pages at {@code /page/<n>}, so that crawler
+ * performance can be measured offline and reproducibly. Page size, gzip encoding, response latency and the share of
+ * 429 and 5xx responses are configurable. Responses are delayed on a timer, so slow pages do not tie up server threads.
+ */
+public class SyntheticWebServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ScheduledExecutorService timer;
+    private final ExecutorService handlers;
+    private final byte[][] pages;
+    private final byte[][] gzippedPages;
+    private final LatencyModel latency;
+    private final double tooManyRequestsRate;
+    private final int retryAfterSeconds;
+    private final double serverErrorRate;
+    private final ConcurrentHashMap<Integer, LongAdder> responses = new ConcurrentHashMap<>();
+
+    private SyntheticWebServer(Builder builder) throws IOException {
+        this.pages = generatePages(builder.pages, builder.linksPerPage, builder.pageSize, builder.seed);
+        this.gzippedPages = builder.gzip ? gzip(pages) : null;
+        this.latency = builder.latency;
+        this.tooManyRequestsRate = builder.tooManyRequestsRate;
+        this.retryAfterSeconds = builder.retryAfterSeconds;
+        this.serverErrorRate = builder.serverErrorRate;
+        this.timer = Executors.newScheduledThreadPool(2, r -> {
+            var thread = new Thread(r, "synthetic-web-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        this.handlers = Executors.newFixedThreadPool(4, r -> {
+            var thread = new Thread(r, "synthetic-web-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server.setExecutor(handlers);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * Returns builder for a server with 1,000 pages of 16 KB, 10 links each, no latency and no errors.
+     * @return {@link Builder}
+     */
+    public static Builder Builder(){
+        return new Builder();
+    }
+
+    /**
+     * Returns URL of page {@code n}.
+     * @param n page number
+     * @return URL
+     */
+    public URI url(int n){
+        return URI.create(String.format("http://127.0.0.1:%d/page/%d", server.getAddress().getPort(), n));
+    }
+
+    /**
+     * Returns URLs of all pages.
+     * @return URLs
+     */
+    public List<URI> urls(){
+        var urls = new ArrayList<URI>(pages.length);
+        for(int n = 0; n < pages.length; n++) urls.add(url(n));
+        return urls;
+    }
+
+    /**
+     * Returns number of responses sent with the given status code.
+     * @param status HTTP status code
+     * @return number of responses
+     */
+    public long responses(int status){
+        var count = responses.get(status);
+        return count == null ? 0 : count.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        timer.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange){
+        var page = pageNumber(exchange.getRequestURI().getPath());
+        var delay = latency.next(ThreadLocalRandom.current());
+
+        timer.schedule(() -> {
+            var random = ThreadLocalRandom.current();
+            try(exchange){
+                exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+                if(page < 0 || page >= pages.length){
+                    respond(exchange, 404, null);
+                }else if(random.nextDouble() < tooManyRequestsRate){
+                    exchange.getResponseHeaders().add("Retry-After", Integer.toString(retryAfterSeconds));
+                    respond(exchange, 429, null);
+                }else if(random.nextDouble() < serverErrorRate){
+                    respond(exchange, 503, null);
+                }else if(gzippedPages != null && acceptsGzip(exchange)){
+                    exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                    respond(exchange, 200, gzippedPages[page]);
+                }else{
+                    respond(exchange, 200, pages[page]);
+                }
+            }catch(IOException ex){
+                // client went away, nothing to do
+            }
+        }, delay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        responses.computeIfAbsent(status, s -> new LongAdder()).increment();
+        if(body == null){
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange){
+        var acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    private static byte[][] gzip(byte[][] pages) throws IOException {
+        var gzipped = new byte[pages.length][];
+        for(int n = 0; n < pages.length; n++){
+            var out = new ByteArrayOutputStream();
+            try(var gzip = new GZIPOutputStream(out)){
+                gzip.write(pages[n]);
+            }
+            gzipped[n] = out.toByteArray();
+        }
+        return gzipped;
+    }
+
+    private static int pageNumber(String path){
+        if(!path.startsWith("/page/")) return -1;
+        try{
+            return Integer.parseInt(path.substring("/page/".length()));
+        }catch(NumberFormatException ex){
+            return -1;
+        }
+    }
+
+    /**
+     * Generates pages with random links to other pages, padded with filler text up to the page size.
+     */
+    private static byte[][] generatePages(int count, int linksPerPage, int pageSize, long seed){
+        var random = new Random(seed);
+        var pages = new byte[count][];
+        for(int n = 0; n < count; n++){
+            var html = new StringBuilder(pageSize + 128)
+                .append("<html><head><title>Page ").append(n).append("</title></head><body>\n");
+            for(int i = 0; i < linksPerPage; i++){
+                var target = random.nextInt(count);
+                html.append("<a href=\"/page/").append(target).append("\">page ").append(target).append("</a>\n");
+            }
+            html.append("<p>");
+            while(html.length() < pageSize - 20){
+                html.append("lorem ipsum dolor sit amet ");
+            }
+            html.append("</p></body></html>");
+            pages[n] = html.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        return pages;
+    }
+
+    /**
+     * Draws the delay before a response is sent.
+     */
+    @FunctionalInterface
+    public interface LatencyModel {
+        Duration next(Random random);
+
+        /**
+         * Every response is delayed by the same time.
+         * @param latency delay
+         * @return {@link LatencyModel}
+         */
+        static LatencyModel constant(Duration latency){
+            Objects.requireNonNull(latency, "latency must not be null");
+            return random -> latency;
+        }
+
+        /**
+         * Delays follow a log-normal distribution, which has the long tail typical of real web servers.
+         * @param median median delay
+         * @param p99 99th percentile delay, not less than the median
+         * @return {@link LatencyModel}
+         */
+        static LatencyModel logNormal(Duration median, Duration p99){
+            Objects.requireNonNull(median, "median must not be null");
+            Objects.requireNonNull(p99, "p99 must not be null");
+            if(p99.compareTo(median) < 0) throw new IllegalArgumentException("p99 must not be less than median");
+            var mu = Math.log(median.toNanos());
+            // z-score of the 99th percentile of the standard normal distribution
+            var sigma = (Math.log(p99.toNanos()) - mu) / 2.326;
+            return random -> Duration.ofNanos((long) Math.exp(mu + sigma * random.nextGaussian()));
+        }
+    }
+
+    /**
+     * Builder for constructing a {@link SyntheticWebServer}.
+     */
+    public static class Builder {
+        private int pages = 1_000;
+        private int linksPerPage = 10;
+        private int pageSize = 16 * 1024;
+        private long seed = 42;
+        private LatencyModel latency = LatencyModel.constant(Duration.ZERO);
+        private double tooManyRequestsRate;
+        private int retryAfterSeconds = 1;
+        private double serverErrorRate;
+        private boolean gzip;
+
+        private Builder(){}
+
+        /**
+         * Set number of pages and outgoing links per page.
+         * @param pages number of pages
+         * @param linksPerPage number of links on every page
+         * @return {@link Builder}
+         */
+        public Builder withPages(int pages, int linksPerPage){
+            if(pages < 1) throw new IllegalArgumentException("pages must be greater than zero");
+            if(linksPerPage < 0) throw new IllegalArgumentException("linksPerPage must not be negative");
+            this.pages = pages;
+            this.linksPerPage = linksPerPage;
+            return this;
+        }
+
+        /**
+         * Set approximate size of every page.
+         * @param pageSize page size in bytes
+         * @return {@link Builder}
+         */
+        public Builder withPageSize(int pageSize){
+            if(pageSize < 1) throw new IllegalArgumentException("pageSize must be greater than zero");
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        /**
+         * Serve pages gzip-encoded to clients that accept it.
+         * @return {@link Builder}
+         */
+        public Builder withGzip(){
+            this.gzip = true;
+            return this;
+        }
+
+        /**
+         * Set seed of the generated link graph, so that runs with the same seed serve the same pages.
+         * @param seed random seed
+         * @return {@link Builder}
+         */
+        public Builder withSeed(long seed){
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Set delay before every response.
+         * @param latency latency distribution
+         * @return {@link Builder}
+         */
+        public Builder withLatency(LatencyModel latency){
+            this.latency = Objects.requireNonNull(latency, "latency must not be null");
+            return this;
+        }
+
+        /**
+         * Answer a share of requests with 429 Too Many Requests and a Retry-After header.
+         * @param rate share of requests between 0 and 1
+         * @param retryAfterSeconds value of the Retry-After header
+         * @return {@link Builder}
+         */
+        public Builder withTooManyRequests(double rate, int retryAfterSeconds){
+            if(rate < 0 || rate > 1) throw new IllegalArgumentException("rate must be between 0 and 1");
+            this.tooManyRequestsRate = rate;
+            this.retryAfterSeconds = retryAfterSeconds;
+            return this;
+        }
+
+        /**
+         * Answer a share of requests with 503 Service Unavailable.
+         * @param rate share of requests between 0 and 1
+         * @return {@link Builder}
+         */
+        public Builder withServerErrors(double rate){
+            if(rate < 0 || rate > 1) throw new IllegalArgumentException("rate must be between 0 and 1");
+            this.serverErrorRate = rate;
+            return this;
+        }
+
+        /**
+         * Starts the server on a free local port.
+         * @return {@link SyntheticWebServer}
+         * @throws IOException if the server cannot be started
+         */
+        public SyntheticWebServer start() throws IOException {
+            return new SyntheticWebServer(this);
+        }
+    }
+}
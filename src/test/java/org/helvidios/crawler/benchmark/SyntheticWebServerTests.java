@@ -0,0 +1,103 @@
+package org.helvidios.crawler.benchmark;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.net.http.HttpClient.Version;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Random;
+import org.helvidios.crawler.UnitTest;
+import org.helvidios.crawler.http.FetchException;
+import org.helvidios.crawler.http.HttpClient;
+import org.helvidios.crawler.http.TooManyRequestsException;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class SyntheticWebServerTests {
+
+    @Test
+    public void ShouldServeLinkedPagesOfConfiguredSize() throws Exception {
+        try(var server = SyntheticWebServer.Builder().withPages(5, 3).withPageSize(2_000).start()){
+            var httpClient = HttpClient.Builder().withHttpVersion(Version.HTTP_1_1).build();
+
+            var doc = httpClient.fetch(server.url(2));
+
+            assertTrue("page must link to other pages", doc.content().contains("href=\"/page/"));
+            assertTrue("page must be about 2,000 bytes", Math.abs(doc.contentBytes().length - 2_000) < 100);
+            assertEquals(5, server.urls().size());
+            assertEquals(1, server.responses(200));
+        }
+    }
+
+    @Test
+    public void ShouldInjectTooManyRequestsWithRetryAfter() throws Exception {
+        try(var server = SyntheticWebServer.Builder().withPages(1, 0).withTooManyRequests(1, 7).start()){
+            var httpClient = HttpClient.Builder().withHttpVersion(Version.HTTP_1_1).build();
+            try{
+                httpClient.fetch(server.url(0));
+                fail("TooManyRequestsException expected");
+            }catch(TooManyRequestsException ex){
+                assertEquals(7, ex.retryAfter());
+            }
+            assertEquals(1, server.responses(429));
+        }
+    }
+
+    @Test(expected = FetchException.class)
+    public void ShouldInjectServerErrors() throws Exception {
+        try(var server = SyntheticWebServer.Builder().withPages(1, 0).withServerErrors(1).start()){
+            HttpClient.Builder().withHttpVersion(Version.HTTP_1_1).build().fetch(server.url(0));
+        }
+    }
+
+    @Test
+    public void ShouldDelayResponses() throws Exception {
+        var latency = SyntheticWebServer.LatencyModel.constant(Duration.ofMillis(100));
+        try(var server = SyntheticWebServer.Builder().withPages(1, 0).withLatency(latency).start()){
+            var httpClient = HttpClient.Builder().withHttpVersion(Version.HTTP_1_1).build();
+
+            var start = System.nanoTime();
+            httpClient.fetch(server.url(0));
+
+            assertTrue("response must be delayed", System.nanoTime() - start >= Duration.ofMillis(100).toNanos());
+        }
+    }
+
+    @Test
+    public void ShouldDrawLogNormalLatency() {
+        var model = SyntheticWebServer.LatencyModel.logNormal(Duration.ofMillis(20), Duration.ofMillis(200));
+        var random = new Random(1);
+        var samples = new long[10_000];
+        for(int i = 0; i < samples.length; i++) samples[i] = model.next(random).toNanos();
+        Arrays.sort(samples);
+
+        assertEquals(20, samples[samples.length / 2] / 1_000_000, 2);
+        assertEquals(200, samples[samples.length * 99 / 100] / 1_000_000, 40);
+    }
+
+    @Test
+    public void ShouldReturnNotFoundForUnknownPage() throws Exception {
+        try(var server = SyntheticWebServer.Builder().withPages(1, 0).start()){
+            try{
+                HttpClient.Builder().withHttpVersion(Version.HTTP_1_1).build().fetch(server.url(9));
+                fail("FetchException expected");
+            }catch(FetchException expected){}
+            assertEquals(1, server.responses(404));
+        }
+    }
+
+    @Test
+    public void ShouldServeGzipToClientsThatAcceptIt() throws Exception {
+        try(var server = SyntheticWebServer.Builder().withPages(1, 0).withPageSize(10_000).withGzip().start()){
+            var doc = HttpClient.Builder().withHttpVersion(Version.HTTP_1_1).build().fetch(server.url(0));
+
+            assertTrue("body must be compressed on the wire", doc.transferSize() < doc.contentBytes().length / 4);
+            assertTrue(doc.content().startsWith("<html>"));
+        }
+    }
+}
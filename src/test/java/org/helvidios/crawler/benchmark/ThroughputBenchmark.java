@@ -0,0 +1,109 @@
+package org.helvidios.crawler.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import org.helvidios.crawler.http.FetchResult;
+import org.helvidios.crawler.http.HttpClient;
+import org.helvidios.crawler.http.HttpMetrics;
+
+/**
+ * Downloads a set of URLs with an {@link HttpClient} configuration and measures throughput, latency, CPU and heap.
+ * Intended to be run against a {@link SyntheticWebServer}, so that results of different configurations are comparable.
+ */
+public class ThroughputBenchmark {
+    private final List<URI> urls;
+    private final int maxConcurrency;
+
+    /**
+     * Creates a new instance of {@link ThroughputBenchmark}
+     * @param urls URLs downloaded by every run
+     * @param maxConcurrency max number of requests in flight
+     */
+    public ThroughputBenchmark(List<URI> urls, int maxConcurrency){
+        this.urls = List.copyOf(Objects.requireNonNull(urls, "urls must not be null"));
+        if(maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency must be greater than zero");
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Builds a client from the given configuration, with metrics added, and downloads all URLs with it.
+     * @param name name of the configuration shown in the report
+     * @param builder client configuration
+     * @return {@link Result}
+     */
+    public Result run(String name, HttpClient.Builder builder){
+        var metrics = HttpMetrics.create();
+        var httpClient = builder.withMetrics(metrics).build();
+        var os = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        var heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .toList();
+
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        var cpuStart = os.getProcessCpuTime();
+        var start = System.nanoTime();
+
+        long downloaded;
+        try(var results = httpClient.fetchAll(urls, maxConcurrency)){
+            downloaded = results.filter(FetchResult::isSuccess).count();
+        }
+
+        var elapsed = Duration.ofNanos(System.nanoTime() - start);
+        var cpu = Duration.ofNanos(os.getProcessCpuTime() - cpuStart);
+        var peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        return new Result(name, urls.size(), downloaded, elapsed, cpu, peakHeap, metrics.snapshot());
+    }
+
+    /**
+     * Outcome of a benchmark run.
+     * @param name name of the configuration
+     * @param urls number of URLs requested
+     * @param downloaded number of documents downloaded
+     * @param elapsed wall-clock time of the run
+     * @param cpu CPU time used by the whole process during the run
+     * @param peakHeapBytes peak heap usage during the run
+     * @param metrics request metrics recorded by the client
+     */
+    public record Result(String name, long urls, long downloaded, Duration elapsed, Duration cpu, long peakHeapBytes, HttpMetrics.Snapshot metrics) {
+
+        /**
+         * Returns number of downloaded documents per second of wall-clock time.
+         * @return throughput
+         */
+        public double documentsPerSecond(){
+            return downloaded / Math.max(1e-9, elapsed.toNanos() / 1e9);
+        }
+
+        /**
+         * Returns header row matching {@link #toString()}.
+         * @return header row
+         */
+        public static String header(){
+            return String.format("%-28s %9s %9s %9s %9s %9s %8s %8s %9s %9s %9s",
+                "configuration", "docs/s", "ok/total", "p50 ms", "p95 ms", "p99 ms", "retries", "429s", "wire MB", "cpu ms", "heap MB");
+        }
+
+        @Override
+        public String toString() {
+            var latency = metrics.latencyByStatus().getOrDefault(200, new HttpMetrics.LatencySummary(0, Duration.ZERO, Duration.ZERO, Duration.ZERO, Duration.ZERO));
+            return String.format("%-28s %9.1f %9s %9.1f %9.1f %9.1f %8d %8d %9.1f %9d %9.1f",
+                name,
+                documentsPerSecond(),
+                downloaded + "/" + urls,
+                latency.p50().toNanos() / 1e6,
+                latency.p95().toNanos() / 1e6,
+                latency.p99().toNanos() / 1e6,
+                metrics.retries(),
+                metrics.tooManyRequests(),
+                metrics.bytesReceived() / (1024.0 * 1024.0),
+                cpu.toMillis(),
+                peakHeapBytes / (1024.0 * 1024.0));
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.helvidios.crawler.benchmark;
+
+import static org.junit.Assert.assertTrue;
+import java.net.http.HttpClient.Version;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.helvidios.crawler.SlowTest;
+import org.helvidios.crawler.http.HttpClient;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+/**
+ * End-to-end throughput benchmark of {@link HttpClient} configurations against a local {@link SyntheticWebServer}.
+ * Run with {@code mvn test -P integration-tests}; results are printed as a table.
+ */
+@RunWith(MockitoJUnitRunner.class)
+@Category(SlowTest.class)
+public class ThroughputBenchmarkTests {
+
+    private static final int MAX_CONCURRENCY = 64;
+
+    private static Map<String, Supplier<HttpClient.Builder>> configurations(){
+        var configurations = new LinkedHashMap<String, Supplier<HttpClient.Builder>>();
+        configurations.put("basic", () -> HttpClient.Builder().withHttpVersion(Version.HTTP_1_1));
+        configurations.put("retries", () -> HttpClient.Builder().withHttpVersion(Version.HTTP_1_1).withRetries(3));
+        configurations.put("retries+budget", () -> HttpClient.Builder().withHttpVersion(Version.HTTP_1_1).withRetries(3).withRetryBudget(0.1));
+        configurations.put("retries+hedging 5%", () -> HttpClient.Builder().withHttpVersion(Version.HTTP_1_1).withRetries(3).withHedging(0.05));
+        configurations.put("per-host 200 qps+retries", () -> HttpClient.Builder().withHttpVersion(Version.HTTP_1_1).withPerHostRateLimiter(200).withRetries(3));
+        configurations.put("adaptive 50-500 qps+retries", () -> HttpClient.Builder().withHttpVersion(Version.HTTP_1_1).withAdaptiveRateLimiter(50, 500).withRetries(3));
+        configurations.put("full stack", () -> HttpClient.Builder().withHttpVersion(Version.HTTP_1_1)
+            .withDnsCache().withRevalidation().withAdaptiveRateLimiter(50, 500).withCircuitBreaker().withRetries(3)
+            .withTotalTimeout(Duration.ofSeconds(30)));
+        return configurations;
+    }
+
+    @Test
+    public void FastServer() throws Exception {
+        try(var server = SyntheticWebServer.Builder().withPages(2_000, 20).start()){
+            report("fast server, 2,000 x 16 KB pages", server);
+        }
+    }
+
+    @Test
+    public void GzipServer() throws Exception {
+        try(var server = SyntheticWebServer.Builder().withPages(2_000, 20).withGzip().start()){
+            report("fast server, 2,000 x 16 KB pages, gzip", server);
+        }
+    }
+
+    @Test
+    public void SlowServerWithLongTail() throws Exception {
+        var latency = SyntheticWebServer.LatencyModel.logNormal(Duration.ofMillis(20), Duration.ofMillis(250));
+        try(var server = SyntheticWebServer.Builder().withPages(1_000, 20).withLatency(latency).start()){
+            report("log-normal latency, p50 20 ms, p99 250 ms", server);
+        }
+    }
+
+    @Test
+    public void FlakyServer() throws Exception {
+        var latency = SyntheticWebServer.LatencyModel.logNormal(Duration.ofMillis(10), Duration.ofMillis(100));
+        try(var server = SyntheticWebServer.Builder()
+                .withPages(500, 20)
+                .withLatency(latency)
+                .withTooManyRequests(0.02, 1)
+                .withServerErrors(0.05)
+                .start()){
+            report("2% 429 (Retry-After: 1), 5% 503", server);
+        }
+    }
+
+    private static void report(String scenario, SyntheticWebServer server){
+        var benchmark = new ThroughputBenchmark(server.urls(), MAX_CONCURRENCY);
+        // warm up JIT and connections so that the first configuration is not penalized
+        benchmark.run("warm-up", HttpClient.Builder().withHttpVersion(Version.HTTP_1_1));
+
+        var results = new ArrayList<ThroughputBenchmark.Result>();
+        configurations().forEach((name, builder) -> results.add(benchmark.run(name, builder.get())));
+
+        System.out.println();
+        System.out.println(scenario);
+        System.out.println(ThroughputBenchmark.Result.header());
+        results.forEach(System.out::println);
+
+        results.forEach(result -> assertTrue(result.name() + " must download pages", result.downloaded() > 0));
+    }
+}
@@ -0,0 +1,114 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.net.HttpRetryException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import org.helvidios.crawler.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class AimdRateControllerTests {
+
+    private final URI url = URI.create("https://en.wikipedia.org/wiki/Stockholm");
+    private final String host = "en.wikipedia.org";
+    private final long millis = 1_000_000;
+
+    private final PerHostRateLimit rateLimit = new PerHostRateLimit(10, Map.of(), Duration.ofMinutes(1));
+    private final AimdRateController controller = new AimdRateController(rateLimit, 2, 20, Duration.ofMinutes(1));
+
+    private void succeed(int times, long latencyNanos){
+        for(int i = 0; i < times; i++){
+            controller.onResponse(url, System.nanoTime(), latencyNanos, null);
+        }
+    }
+
+    private static FetchException status(URI url, int statusCode){
+        return new FetchException(url, new HttpRetryException("", statusCode));
+    }
+
+    @Test
+    public void ShouldIncreaseRateAdditivelyWhileHostIsHealthy() {
+        succeed(10, 50 * millis);
+
+        assertEquals(11, controller.rate(host), 0.1);
+    }
+
+    @Test
+    public void ShouldNotExceedMaxRate() {
+        succeed(1000, 50 * millis);
+
+        assertEquals(20, controller.rate(host), 0);
+    }
+
+    @Test
+    public void ShouldHalveRateOnTooManyRequests() {
+        controller.onResponse(url, System.nanoTime(), 50 * millis, new TooManyRequestsException(url, Map.of()));
+
+        assertEquals(5, controller.rate(host), 0);
+    }
+
+    @Test
+    public void ShouldHalveRateOnServiceUnavailableButNotOnOtherErrors() {
+        controller.onResponse(url, System.nanoTime(), 50 * millis, status(url, 404));
+        controller.onResponse(url, System.nanoTime(), 50 * millis, new FetchException(url, new IOException()));
+        assertEquals(10, controller.rate(host), 0);
+
+        controller.onResponse(url, System.nanoTime(), 50 * millis, status(url, 503));
+        assertEquals(5, controller.rate(host), 0);
+    }
+
+    @Test
+    public void ShouldCutOnlyOnceForRequestsSentBeforeTheCut() {
+        var sentBeforeCut = System.nanoTime();
+        controller.onResponse(url, sentBeforeCut, 50 * millis, status(url, 503));
+        controller.onResponse(url, sentBeforeCut, 50 * millis, status(url, 503));
+        assertEquals(5, controller.rate(host), 0);
+
+        controller.onResponse(url, System.nanoTime(), 50 * millis, status(url, 503));
+        assertEquals(2.5, controller.rate(host), 0);
+    }
+
+    @Test
+    public void ShouldNotGoBelowMinRate() {
+        for(int i = 0; i < 10; i++){
+            controller.onResponse(url, System.nanoTime(), 50 * millis, status(url, 429));
+        }
+
+        assertEquals(2, controller.rate(host), 0);
+    }
+
+    @Test
+    public void ShouldCutRateWhenP95LatencyRises() {
+        succeed(AimdRateController.LATENCY_WINDOW, 50 * millis);
+        var rate = controller.rate(host);
+
+        succeed(AimdRateController.LATENCY_WINDOW, 500 * millis);
+
+        assertTrue("rate must be cut when latency rises", controller.rate(host) < rate);
+    }
+
+    @Test
+    public void ShouldKeepTrackingLatencyAfterWindowWrapsAround() {
+        succeed(10 * AimdRateController.LATENCY_WINDOW + 7, 50 * millis);
+        var rate = controller.rate(host);
+
+        succeed(AimdRateController.LATENCY_WINDOW, 500 * millis);
+
+        assertTrue("rate must be cut when latency rises", controller.rate(host) < rate);
+    }
+
+    @Test
+    public void ShouldTreatNotModifiedAsHealthyResponse() {
+        controller.onResponse(url, System.nanoTime(), 50 * millis, new NotModifiedException(url));
+
+        assertTrue(controller.rate(host) > 10);
+    }
+}
@@ -0,0 +1,243 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import org.helvidios.crawler.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class BoundedBodyHandlerTests {
+
+    private boolean cancelled;
+
+    private final Flow.Subscription subscription = new Flow.Subscription() {
+        @Override
+        public void request(long n) {}
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    };
+
+    @Test
+    public void ShouldReadWholeBodyBelowLimit() throws Exception {
+        var subscriber = new BoundedBodyHandler(1024).apply(response(200, "text/html; charset=UTF-8"));
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(List.of(bytes("<html>"), bytes("</html>")));
+        subscriber.onComplete();
+
+        var body = subscriber.getBody().toCompletableFuture().get();
+        assertEquals("<html></html>", text(body));
+        assertFalse(body.truncated());
+        assertFalse(cancelled);
+    }
+
+    @Test
+    public void ShouldCancelStreamWhenLimitIsExceeded() throws Exception {
+        var subscriber = new BoundedBodyHandler(8).apply(response(200, "text/html"));
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(List.of(bytes("<html>"), bytes("<body>")));
+
+        var body = subscriber.getBody().toCompletableFuture().get();
+        assertEquals("<html><b", text(body));
+        assertTrue("Document must be reported as truncated", body.truncated());
+        assertTrue("Stream must be cancelled", cancelled);
+    }
+
+    @Test
+    public void ShouldDecodeBodyUsingCharsetFromContentType() throws Exception {
+        var subscriber = new BoundedBodyHandler(1024).apply(response(200, "text/html; charset=ISO-8859-1"));
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(List.of(ByteBuffer.wrap("café".getBytes(StandardCharsets.ISO_8859_1))));
+        subscriber.onComplete();
+
+        var body = subscriber.getBody().toCompletableFuture().get();
+        assertEquals(StandardCharsets.ISO_8859_1, body.charset());
+        assertEquals("café", text(body));
+    }
+
+    @Test
+    public void ShouldDetectCharsetFromMetaTagIfContentTypeHasNone() throws Exception {
+        var html = "<html><head><meta charset=\"windows-1252\"><title>café</title></head></html>";
+        var subscriber = new BoundedBodyHandler(1024).apply(response(200, "text/html"));
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(List.of(ByteBuffer.wrap(html.getBytes("windows-1252"))));
+        subscriber.onComplete();
+
+        var body = subscriber.getBody().toCompletableFuture().get();
+        assertEquals("windows-1252", body.charset().name());
+        assertEquals(html, text(body));
+    }
+
+    @Test
+    public void ShouldDefaultToUtf8IfNoCharsetIsDeclared() throws Exception {
+        var subscriber = new BoundedBodyHandler(1024).apply(response(200, "text/html"));
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(List.of(bytes("<html>ü</html>")));
+        subscriber.onComplete();
+
+        var body = subscriber.getBody().toCompletableFuture().get();
+        assertEquals(StandardCharsets.UTF_8, body.charset());
+        assertEquals("<html>ü</html>", text(body));
+    }
+
+    @Test
+    public void ShouldNotReadBodyOfUnsupportedContentType() {
+        var headers = headers("image/png");
+        assertFalse(BoundedBodyHandler.isSupported(headers));
+        assertTrue(BoundedBodyHandler.isSupported(headers("application/xhtml+xml")));
+        assertTrue(BoundedBodyHandler.isSupported(HttpHeaders.of(Map.of(), (name, value) -> true)));
+    }
+
+    @Test
+    public void ShouldReportLinksBeforeBodyCompletes() throws Exception {
+        var links = new ArrayList<URI>();
+        var subscriber = new BoundedBodyHandler(1024)
+            .scanningLinks(URI.create("https://example.com/"), links::add)
+            .apply(response(200, "text/html; charset=UTF-8"));
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(List.of(bytes("<a href=\"/a\">a</a><a hr")));
+
+        assertEquals(List.of(URI.create("https://example.com/a")), links);
+        assertFalse(subscriber.getBody().toCompletableFuture().isDone());
+
+        subscriber.onNext(List.of(bytes("ef=\"/b\">b</a>")));
+        subscriber.onComplete();
+
+        assertEquals(List.of(URI.create("https://example.com/a"), URI.create("https://example.com/b")), links);
+        assertEquals("<a href=\"/a\">a</a><a href=\"/b\">b</a>", text(subscriber.getBody().toCompletableFuture().get()));
+    }
+
+    @Test
+    public void ShouldFailBodyIfLinkConsumerThrows() throws Exception {
+        var subscriber = new BoundedBodyHandler(1024)
+            .scanningLinks(URI.create("https://example.com/"), link -> { throw new IllegalStateException("rejected"); })
+            .apply(response(200, "text/html; charset=UTF-8"));
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(List.of(bytes("<a href=\"/a\">a</a>")));
+
+        assertTrue("Body must fail", subscriber.getBody().toCompletableFuture().isCompletedExceptionally());
+        assertTrue("Stream must be cancelled", cancelled);
+    }
+
+    @Test
+    public void ShouldGrowBufferBeyondInitialCapacity() throws Exception {
+        var length = BoundedBodyHandler.MAX_INITIAL_CAPACITY * 3;
+        var chunk = new byte[BoundedBodyHandler.MAX_INITIAL_CAPACITY];
+        var subscriber = new BoundedBodyHandler(Long.MAX_VALUE).apply(response(200, Map.of(
+            "Content-Type", List.of("text/html"),
+            "Content-Length", List.of(String.valueOf(length)))));
+        subscriber.onSubscribe(subscription);
+        for(int i = 0; i < 3; i++) subscriber.onNext(List.of(ByteBuffer.wrap(chunk)));
+        subscriber.onComplete();
+
+        assertEquals(length, subscriber.getBody().toCompletableFuture().get().content().length);
+    }
+
+    @Test
+    public void ShouldReadShortBodyDespiteHugeContentLength() throws Exception {
+        var subscriber = new BoundedBodyHandler(Long.MAX_VALUE).apply(response(200, Map.of(
+            "Content-Type", List.of("text/html"),
+            "Content-Length", List.of(String.valueOf(Integer.MAX_VALUE)))));
+        subscriber.onSubscribe(subscription);
+        subscriber.onNext(List.of(bytes("<html></html>")));
+        subscriber.onComplete();
+
+        assertEquals("<html></html>", text(subscriber.getBody().toCompletableFuture().get()));
+    }
+
+    @Test
+    public void ShouldStopReadingStalledBodyAtDeadline() throws Exception {
+        var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, 0);
+            exchange.getResponseBody().write("<html>".getBytes(StandardCharsets.UTF_8));
+            exchange.getResponseBody().flush();
+            try{
+                Thread.sleep(5_000);
+            }catch(InterruptedException ex){
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+        try{
+            var jdkClient = JdkHttpClients.create(new JdkHttpClients.Settings(null, null, Version.HTTP_1_1));
+            var httpClient = new BasicHttpClient(jdkClient, Duration.ofSeconds(10), 1024, Map.of());
+            var request = FetchRequest.of(URI.create(String.format("http://127.0.0.1:%d/", server.getAddress().getPort())));
+
+            var start = System.nanoTime();
+            try{
+                httpClient.send(request.withTimeout(Duration.ofMillis(300)));
+                fail("DeadlineExceededException expected");
+            }catch(DeadlineExceededException expected){}
+            try{
+                httpClient.sendAsync(request.withTimeout(Duration.ofMillis(300))).get();
+                fail("ExecutionException expected");
+            }catch(ExecutionException ex){
+                assertTrue(ex.getCause() instanceof DeadlineExceededException);
+            }
+            assertTrue("Body reads must end at the deadline", System.nanoTime() - start < TimeUnit.SECONDS.toNanos(3));
+        }finally{
+            server.stop(0);
+        }
+    }
+
+    private static String text(BoundedBodyHandler.Body body){
+        return new String(body.content(), body.charset());
+    }
+
+    private static ByteBuffer bytes(String s){
+        return ByteBuffer.wrap(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static HttpHeaders headers(String contentType){
+        return HttpHeaders.of(Map.of("Content-Type", List.of(contentType)), (name, value) -> true);
+    }
+
+    private static ResponseInfo response(int statusCode, String contentType){
+        return response(statusCode, Map.of("Content-Type", List.of(contentType)));
+    }
+
+    private static ResponseInfo response(int statusCode, Map<String, List<String>> headers){
+        return new ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return statusCode;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return HttpHeaders.of(headers, (name, value) -> true);
+            }
+
+            @Override
+            public Version version() {
+                return Version.HTTP_1_1;
+            }
+        };
+    }
+}
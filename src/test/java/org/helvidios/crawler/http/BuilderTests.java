@@ -1,6 +1,13 @@
 package org.helvidios.crawler.http;
 
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import java.net.http.HttpClient.Version;
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.concurrent.Executors;
 import org.helvidios.crawler.UnitTest;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
@@ -34,4 +41,113 @@ public class BuilderTests {
         var httpClient = HttpClient.Builder().withRateLimiter(1).withRetries(3).build();
         assertTrue("httpClient must be instanceof HttpClientWithRetry", httpClient instanceof HttpClientWithRetry);
     }
+
+    @Test
+    public void ShouldBuildHttpClientWithPerHostRateLimiter() {
+        var httpClient = HttpClient.Builder()
+                                   .withPerHostRateLimiter(2)
+                                   .withHostRateLimit("en.wikipedia.org", 10)
+                                   .build();
+        assertTrue("httpClient must be instanceof HttpClientWithRateLimit", httpClient instanceof HttpClientWithRateLimit);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ShouldThrowExceptionIfPerHostRateIsNotPositive() {
+        HttpClient.Builder().withPerHostRateLimiter(0);
+    }
+
+    @Test
+    public void ShouldBuildHttpClientWithRevalidation() {
+        var httpClient = HttpClient.Builder().withRevalidation().build();
+        assertTrue("httpClient must be instanceof HttpClientWithRevalidation", httpClient instanceof HttpClientWithRevalidation);
+    }
+
+    @Test
+    public void ShouldBuildBasicHttpClientWithConnectionSettings() {
+        var httpClient = HttpClient.Builder()
+            .withExecutor(Executors.newSingleThreadExecutor(r -> { var t = new Thread(r); t.setDaemon(true); return t; }))
+            .withConnectTimeout(Duration.ofSeconds(5))
+            .withHttpVersion(Version.HTTP_1_1)
+            .withHostHttpVersion("en.wikipedia.org", Version.HTTP_2)
+            .withSharedConnectionPool()
+            .build();
+        assertTrue("httpClient must be instanceof BasicHttpClient", httpClient instanceof BasicHttpClient);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ShouldThrowExceptionIfConnectTimeoutIsNotPositive() {
+        HttpClient.Builder().withConnectTimeout(Duration.ZERO);
+    }
+
+    @Test
+    public void ShouldShareJdkClientWithSameSettings() {
+        var settings = new JdkHttpClients.Settings(null, Duration.ofSeconds(3), Version.HTTP_1_1);
+        var client = JdkHttpClients.shared(settings);
+        assertSame(client, JdkHttpClients.shared(new JdkHttpClients.Settings(null, Duration.ofSeconds(3), Version.HTTP_1_1)));
+        assertNotSame(client, JdkHttpClients.shared(new JdkHttpClients.Settings(null, Duration.ofSeconds(4), Version.HTTP_1_1)));
+        assertNotSame(client, JdkHttpClients.create(settings));
+    }
+
+    @Test
+    public void ShouldReleaseSharedJdkClientThatIsNoLongerUsed() throws InterruptedException {
+        var client = new WeakReference<>(JdkHttpClients.shared(new JdkHttpClients.Settings(null, Duration.ofSeconds(5), Version.HTTP_1_1)));
+
+        for(int i = 0; i < 50 && client.get() != null; i++){
+            System.gc();
+            Thread.sleep(100);
+        }
+        assertNull("Unused shared client must be collected", client.get());
+    }
+
+    @Test
+    public void ShouldBuildHttpClientWithAdaptiveRateLimiter() {
+        var httpClient = HttpClient.Builder().withAdaptiveRateLimiter(1, 50).build();
+        assertTrue("httpClient must be instanceof HttpClientWithRateLimit", httpClient instanceof HttpClientWithRateLimit);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ShouldThrowExceptionIfAdaptiveMaxRateIsBelowMinRate() {
+        HttpClient.Builder().withAdaptiveRateLimiter(10, 5);
+    }
+
+    @Test
+    public void ShouldBuildHttpClientWithCircuitBreaker() {
+        var httpClient = HttpClient.Builder().withCircuitBreaker().build();
+        assertTrue("httpClient must be instanceof HttpClientWithCircuitBreaker", httpClient instanceof HttpClientWithCircuitBreaker);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ShouldThrowExceptionIfCircuitBreakerWaitIsBelowOneSecond() {
+        HttpClient.Builder().withCircuitBreaker(Duration.ofMillis(500));
+    }
+
+    @Test
+    public void ShouldBuildHttpClientWithTotalTimeout() {
+        var httpClient = HttpClient.Builder().withRetries(3).withTotalTimeout(Duration.ofSeconds(30)).build();
+        assertTrue("httpClient must be instanceof HttpClientWithDeadline", httpClient instanceof HttpClientWithDeadline);
+    }
+
+    @Test
+    public void ShouldBuildHttpClientWithRobotsTxt() {
+        var httpClient = HttpClient.Builder().withRetries(3).withRobotsTxt("helvidios-bot").build();
+        assertTrue("httpClient must be instanceof HttpClientWithRobotsTxt", httpClient instanceof HttpClientWithRobotsTxt);
+    }
+
+    @Test
+    public void ShouldBuildHttpClientWithMetrics() {
+        var httpClient = HttpClient.Builder().withMetrics(HttpMetrics.create()).build();
+        assertTrue("httpClient must be instanceof HttpClientWithMetrics", httpClient instanceof HttpClientWithMetrics);
+    }
+
+    @Test
+    public void ShouldBuildHttpClientWithHedging() {
+        var httpClient = HttpClient.Builder().withHedging(0.05).build();
+        assertTrue("httpClient must be instanceof HttpClientWithHedging", httpClient instanceof HttpClientWithHedging);
+    }
+
+    @Test
+    public void ShouldBuildHttpClientWithRequestCoalescing() {
+        var httpClient = HttpClient.Builder().withRetries(3).withRequestCoalescing().build();
+        assertTrue("httpClient must be instanceof HttpClientWithCoalescing", httpClient instanceof HttpClientWithCoalescing);
+    }
 }
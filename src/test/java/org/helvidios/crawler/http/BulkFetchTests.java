@@ -0,0 +1,247 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.helvidios.crawler.UnitTest;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class BulkFetchTests {
+
+    /**
+     * Completes requests only when told to, and records how many were in flight at once.
+     */
+    private static class ManualHttpClient implements HttpClient {
+        final Map<URI, CompletableFuture<HtmlDocument>> pending = new ConcurrentHashMap<>();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        @Override
+        public HtmlDocument send(FetchRequest request) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<HtmlDocument> sendAsync(FetchRequest request) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            var future = new CompletableFuture<HtmlDocument>();
+            pending.put(request.url(), future);
+            return future.whenComplete((doc, ex) -> inFlight.decrementAndGet());
+        }
+
+        void succeed(URI url){
+            pending.remove(url).complete(HtmlDocument.of(url, "<html></html>"));
+        }
+
+        void fail(URI url){
+            pending.remove(url).completeExceptionally(new FetchException(url, new IOException()));
+        }
+    }
+
+    private static List<URI> urls(int count){
+        return IntStream.range(0, count)
+            .mapToObj(i -> URI.create("https://www.w3schools.com/page" + i))
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    public void ShouldKeepAtMostMaxConcurrencyRequestsInFlight() throws Exception {
+        var httpClient = new ManualHttpClient();
+        var urls = urls(10);
+        var results = new ArrayList<FetchResult>();
+
+        var done = httpClient.fetchAll(urls.stream(), 3, results::add);
+        assertEquals(3, httpClient.pending.size());
+
+        for(var url : urls){
+            httpClient.succeed(url);
+        }
+
+        done.get(1, TimeUnit.SECONDS);
+        assertEquals(3, httpClient.maxInFlight.get());
+        assertEquals(10, results.size());
+        assertTrue(results.stream().allMatch(FetchResult::isSuccess));
+    }
+
+    @Test
+    public void ShouldReturnResultsInCompletionOrder() {
+        var httpClient = new ManualHttpClient();
+        var urls = urls(2);
+
+        try(var results = httpClient.fetchAll(urls, 2)){
+            httpClient.fail(urls.get(1));
+            httpClient.succeed(urls.get(0));
+
+            var list = results.collect(Collectors.toList());
+            assertEquals(urls.get(1), list.get(0).url());
+            assertFalse(list.get(0).isSuccess());
+            assertTrue(list.get(0).error().get().getCause() instanceof IOException);
+            assertEquals(urls.get(0), list.get(1).url());
+            assertTrue(list.get(1).document().isPresent());
+        }
+    }
+
+    @Test
+    public void ShouldNotOverflowStackWhenRequestsCompleteImmediately() throws Exception {
+        HttpClient httpClient = new HttpClient() {
+            @Override
+            public HtmlDocument send(FetchRequest request) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<HtmlDocument> sendAsync(FetchRequest request) {
+                return CompletableFuture.completedFuture(HtmlDocument.of(request.url(), ""));
+            }
+        };
+        var count = new AtomicInteger();
+
+        httpClient.fetchAll(Stream.generate(() -> URI.create("https://www.w3schools.com")).limit(100_000), 4, r -> count.incrementAndGet())
+                  .get(10, TimeUnit.SECONDS);
+
+        assertEquals(100_000, count.get());
+    }
+
+    @Test
+    public void ShouldCompleteImmediatelyWhenNoUrls() throws Exception {
+        var httpClient = new ManualHttpClient();
+
+        httpClient.fetchAll(Stream.empty(), 5, r -> {}).get(1, TimeUnit.SECONDS);
+
+        assertEquals(0, httpClient.maxInFlight.get());
+    }
+
+    @Test
+    public void ShouldFailOnlyAfterRequestsInFlightCompleteWhenSourceThrows() throws Exception {
+        var httpClient = new ManualHttpClient();
+        var urls = urls(2);
+        var failure = new IllegalStateException("frontier unavailable");
+        var source = Stream.concat(urls.stream(), Stream.<URI>generate(() -> { throw failure; })).iterator();
+        var results = new ArrayList<FetchResult>();
+
+        var done = BulkFetch.start(httpClient, source, 3, results::add).done();
+        assertEquals(2, httpClient.pending.size());
+        assertFalse("Requests in flight must complete first", done.isDone());
+
+        httpClient.succeed(urls.get(0));
+        httpClient.succeed(urls.get(1));
+
+        try{
+            done.get(1, TimeUnit.SECONDS);
+            fail("ExecutionException expected");
+        }catch(ExecutionException ex){
+            assertSame(failure, ex.getCause());
+        }
+        assertEquals(2, results.size());
+    }
+
+    @Test
+    public void ShouldStartNewRequestsOnlyAsResultsAreTaken() {
+        var httpClient = new ManualHttpClient();
+        var urls = urls(10);
+
+        try(var results = httpClient.fetchAll(urls, 2)){
+            var iterator = results.iterator();
+            httpClient.succeed(urls.get(0));
+            httpClient.succeed(urls.get(1));
+            assertEquals("Slots of results not taken yet must stay busy", 0, httpClient.pending.size());
+
+            assertEquals(urls.get(0), iterator.next().url());
+            assertEquals(1, httpClient.pending.size());
+            httpClient.succeed(urls.get(2));
+            assertEquals(0, httpClient.pending.size());
+
+            assertEquals(urls.get(1), iterator.next().url());
+            assertEquals(urls.get(2), iterator.next().url());
+            assertEquals(2, httpClient.pending.size());
+            assertEquals(2, httpClient.maxInFlight.get());
+        }
+    }
+
+    @Test
+    public void ShouldStopDownloadingWhenUnclosedStreamIsNoLongerConsumed() {
+        var started = new AtomicInteger();
+        HttpClient httpClient = new HttpClient() {
+            @Override
+            public HtmlDocument send(FetchRequest request) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public CompletableFuture<HtmlDocument> sendAsync(FetchRequest request) {
+                started.incrementAndGet();
+                return CompletableFuture.completedFuture(HtmlDocument.of(request.url(), ""));
+            }
+        };
+
+        assertTrue(httpClient.fetchAll(urls(1_000), 4).findFirst().isPresent());
+
+        // the 4 results downloaded up front, plus one started when the first result was taken
+        assertEquals(5, started.get());
+    }
+
+    @Test
+    public void ShouldRethrowSourceFailureAtEndOfStream() {
+        var httpClient = new ManualHttpClient();
+        var urls = urls(1);
+        var failure = new IllegalStateException("frontier unavailable");
+        var source = Stream.concat(urls.stream(), Stream.<URI>generate(() -> { throw failure; })).iterator();
+
+        try(var results = BulkFetch.stream(httpClient, source, 2)){
+            var iterator = results.iterator();
+            httpClient.succeed(urls.get(0));
+            assertEquals(urls.get(0), iterator.next().url());
+            iterator.hasNext();
+            fail("IllegalStateException expected");
+        }catch(IllegalStateException ex){
+            assertSame(failure, ex);
+        }
+    }
+
+    @Test
+    public void ShouldFailAndStopStartingUrlsWhenCallbackThrows() throws Exception {
+        var httpClient = new ManualHttpClient();
+        var urls = urls(10);
+        var failure = new IllegalStateException("index full");
+
+        var done = httpClient.fetchAll(urls.stream(), 2, r -> { throw failure; });
+        httpClient.succeed(urls.get(0));
+        assertEquals("No new URL may be started", 1, httpClient.pending.size());
+        assertFalse("Requests in flight must complete first", done.isDone());
+        httpClient.succeed(urls.get(1));
+
+        try{
+            done.get(1, TimeUnit.SECONDS);
+            fail("ExecutionException expected");
+        }catch(ExecutionException ex){
+            assertSame(failure, ex.getCause());
+        }
+        assertEquals(2, httpClient.maxInFlight.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ShouldRejectNonPositiveConcurrency() {
+        new ManualHttpClient().fetchAll(urls(1), 0);
+    }
+}
@@ -0,0 +1,130 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.helvidios.crawler.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class CachingHostResolverTests {
+
+    /**
+     * Resolves hosts from a fixed table and counts lookups per host.
+     */
+    private static class StubResolver implements HostResolver {
+        final Map<String, AtomicInteger> lookups = new ConcurrentHashMap<>();
+
+        @Override
+        public InetAddress[] resolve(String host) throws UnknownHostException {
+            lookups.computeIfAbsent(host, h -> new AtomicInteger()).incrementAndGet();
+            if(host.endsWith(".invalid")) throw new UnknownHostException(host);
+            return new InetAddress[]{ InetAddress.getByAddress(host, new byte[]{ 127, 0, 0, 1 }) };
+        }
+
+        int lookups(String host){
+            return lookups.getOrDefault(host, new AtomicInteger()).get();
+        }
+    }
+
+    private final StubResolver stub = new StubResolver();
+
+    private CachingHostResolver resolver(Duration negativeTtl){
+        return new CachingHostResolver(stub, negativeTtl, 100, Runnable::run);
+    }
+
+    @Test
+    public void ShouldLeaveSuccessfulLookupsToJvmCache() throws UnknownHostException {
+        var resolver = resolver(Duration.ofMinutes(1));
+
+        var first = resolver.resolve("en.wikipedia.org");
+        var second = resolver.resolve("en.wikipedia.org");
+
+        assertArrayEquals(first, second);
+        assertEquals(2, stub.lookups("en.wikipedia.org"));
+    }
+
+    @Test
+    public void ShouldResolveFailedHostAgainAfterNegativeTtl() throws Exception {
+        var resolver = resolver(Duration.ofMillis(20));
+
+        try{
+            resolver.resolve("dead.invalid");
+        }catch(UnknownHostException expected){}
+        Thread.sleep(50);
+        try{
+            resolver.resolve("dead.invalid");
+        }catch(UnknownHostException expected){}
+
+        assertEquals(2, stub.lookups("dead.invalid"));
+    }
+
+    @Test
+    public void ShouldCacheFailedLookups() {
+        var resolver = resolver(Duration.ofMinutes(1));
+
+        for(int i = 0; i < 3; i++){
+            try{
+                resolver.resolve("dead.invalid");
+                fail("host must not resolve");
+            }catch(UnknownHostException ex){}
+        }
+
+        assertEquals(1, stub.lookups("dead.invalid"));
+        assertTrue(resolver.resolveAsync("dead.invalid").isCompletedExceptionally());
+    }
+
+    @Test
+    public void ShouldShareConcurrentAsyncLookups() throws Exception {
+        var pending = new CompletableFuture<Runnable>();
+        var resolver = new CachingHostResolver(stub, Duration.ofMinutes(1), 100, pending::complete);
+
+        var first = resolver.resolveAsync("en.wikipedia.org");
+        var second = resolver.resolveAsync("en.wikipedia.org");
+        assertSame(first, second);
+
+        pending.get().run();
+
+        assertEquals(1, first.get().length);
+        assertEquals(1, stub.lookups("en.wikipedia.org"));
+        assertFalse("Lookup must not be shared once it completed", resolver.resolveAsync("en.wikipedia.org").isDone());
+    }
+
+    @Test
+    public void ShouldFailFetchOfUnresolvableHostWithoutRequest() throws InterruptedException {
+        var jdkClient = JdkHttpClients.create(new JdkHttpClients.Settings(null, null, Version.HTTP_1_1));
+        var httpClient = new BasicHttpClient(jdkClient, Duration.ofSeconds(5), 1024, Map.of(), resolver(Duration.ofMinutes(1)));
+        var url = URI.create("http://dead.invalid/page");
+
+        try{
+            httpClient.fetch(url);
+            fail("host must not resolve");
+        }catch(FetchException ex){
+            assertTrue(ex.getCause() instanceof UnknownHostException);
+        }
+        try{
+            httpClient.fetchAsync(url).get();
+            fail("host must not resolve");
+        }catch(ExecutionException ex){
+            assertTrue(ex.getCause().getCause() instanceof UnknownHostException);
+        }
+        assertEquals(1, stub.lookups("dead.invalid"));
+    }
+}
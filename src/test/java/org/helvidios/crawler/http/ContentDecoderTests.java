@@ -0,0 +1,182 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse.ResponseInfo;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import org.helvidios.crawler.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class ContentDecoderTests {
+
+    private final byte[] html = "<html><body>hello hello hello hello hello hello</body></html>".repeat(100).getBytes(StandardCharsets.UTF_8);
+
+    private final Flow.Subscription subscription = new Flow.Subscription() {
+        @Override
+        public void request(long n) {}
+
+        @Override
+        public void cancel() {}
+    };
+
+    @Test
+    public void ShouldDecodeGzipArrivingInTinyChunks() throws Exception {
+        var gzip = gzip(html);
+        var body = read(1 << 20, "gzip", chunks(gzip, 3));
+
+        assertArrayEquals(html, body.content());
+        assertEquals(gzip.length, body.encodedSize());
+        assertFalse(body.truncated());
+    }
+
+    @Test
+    public void ShouldDecodeZlibAndRawDeflate() throws Exception {
+        assertArrayEquals(html, read(1 << 20, "deflate", chunks(deflate(html, false), 100)).content());
+        assertArrayEquals(html, read(1 << 20, "deflate", chunks(deflate(html, true), 100)).content());
+    }
+
+    @Test
+    public void ShouldApplySizeLimitToDecodedBytes() throws Exception {
+        var body = read(100, "gzip", chunks(gzip(html), 1000));
+
+        assertEquals(100, body.content().length);
+        assertTrue("Document must be reported as truncated", body.truncated());
+    }
+
+    @Test
+    public void ShouldFailOnTruncatedGzip() throws Exception {
+        var gzip = gzip(html);
+        try{
+            read(1 << 20, "gzip", chunks(Arrays.copyOf(gzip, gzip.length / 2), 100));
+            fail("ZipException expected");
+        }catch(ExecutionException ex){
+            assertTrue(ex.getCause() instanceof ZipException);
+        }
+    }
+
+    @Test
+    public void ShouldFailOnCorruptGzip() throws Exception {
+        try{
+            read(1 << 20, "gzip", List.of(ByteBuffer.wrap(html)));
+            fail("ZipException expected");
+        }catch(ExecutionException ex){
+            assertTrue(ex.getCause() instanceof ZipException);
+        }
+    }
+
+    @Test
+    public void ShouldOnlySupportEncodingsThatCanBeDecoded() {
+        assertTrue(ContentDecoder.isSupported(null));
+        assertTrue(ContentDecoder.isSupported("identity"));
+        assertTrue(ContentDecoder.isSupported("GZIP"));
+        assertTrue(ContentDecoder.isSupported("deflate"));
+        assertFalse(ContentDecoder.isSupported("br"));
+    }
+
+    @Test
+    public void ShouldNegotiateAndDecodeGzipFromServer() throws Exception {
+        var acceptEncoding = new AtomicReference<String>();
+        var gzip = gzip(html);
+        var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            acceptEncoding.set(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, gzip.length);
+            exchange.getResponseBody().write(gzip);
+            exchange.close();
+        });
+        server.start();
+        try{
+            var httpClient = HttpClient.Builder().withHttpVersion(Version.HTTP_1_1).build();
+            var doc = httpClient.fetch(URI.create(String.format("http://127.0.0.1:%d/", server.getAddress().getPort())));
+
+            assertEquals(ContentDecoder.ACCEPT_ENCODING, acceptEncoding.get());
+            assertArrayEquals(html, doc.contentBytes());
+            assertEquals(gzip.length, doc.transferSize());
+        }finally{
+            server.stop(0);
+        }
+    }
+
+    private BoundedBodyHandler.Body read(long maxBodySize, String contentEncoding, List<ByteBuffer> chunks) throws Exception {
+        var subscriber = new BoundedBodyHandler(maxBodySize).apply(response(contentEncoding));
+        subscriber.onSubscribe(subscription);
+        for(var chunk : chunks){
+            subscriber.onNext(List.of(chunk.asReadOnlyBuffer()));
+        }
+        subscriber.onComplete();
+        return subscriber.getBody().toCompletableFuture().get();
+    }
+
+    private static List<ByteBuffer> chunks(byte[] bytes, int size){
+        var chunks = new ArrayList<ByteBuffer>();
+        for(int i = 0; i < bytes.length; i += size){
+            chunks.add(ByteBuffer.wrap(bytes, i, Math.min(size, bytes.length - i)).slice());
+        }
+        return chunks;
+    }
+
+    private static byte[] gzip(byte[] bytes) throws Exception {
+        var out = new ByteArrayOutputStream();
+        try(var gzip = new GZIPOutputStream(out)){
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] bytes, boolean raw) throws Exception {
+        var out = new ByteArrayOutputStream();
+        try(var deflate = new DeflaterOutputStream(out, new Deflater(Deflater.DEFAULT_COMPRESSION, raw))){
+            deflate.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static ResponseInfo response(String contentEncoding){
+        return new ResponseInfo() {
+            @Override
+            public int statusCode() {
+                return 200;
+            }
+
+            @Override
+            public HttpHeaders headers() {
+                return HttpHeaders.of(
+                    Map.of("Content-Type", List.of("text/html"), "Content-Encoding", List.of(contentEncoding)),
+                    (name, value) -> true);
+            }
+
+            @Override
+            public Version version() {
+                return Version.HTTP_1_1;
+            }
+        };
+    }
+}
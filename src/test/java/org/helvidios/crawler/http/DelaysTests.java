@@ -0,0 +1,46 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.helvidios.crawler.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class DelaysTests {
+
+    @Test
+    public void ShouldCompleteImmediatelyWithoutDelay() {
+        assertTrue(Delays.after(Delays.sharedScheduler(), 0).isDone());
+    }
+
+    @Test
+    public void ShouldCompleteAfterDelay() throws Exception {
+        var start = System.nanoTime();
+
+        Delays.after(Delays.sharedScheduler(), TimeUnit.MILLISECONDS.toNanos(50)).get(1, TimeUnit.SECONDS);
+
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void ShouldRemoveScheduledTaskWhenCancelled() {
+        var scheduler = new ScheduledThreadPoolExecutor(1);
+        scheduler.setRemoveOnCancelPolicy(true);
+        try{
+            var delay = Delays.after(scheduler, TimeUnit.MINUTES.toNanos(1));
+            assertEquals(1, scheduler.getQueue().size());
+
+            delay.cancel(false);
+
+            assertEquals(0, scheduler.getQueue().size());
+        }finally{
+            scheduler.shutdownNow();
+        }
+    }
+}
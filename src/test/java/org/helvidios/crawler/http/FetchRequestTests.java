@@ -0,0 +1,72 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.helvidios.crawler.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class FetchRequestTests {
+
+    private final URI url = URI.create("https://www.w3schools.com/html/html_basic.asp");
+
+    @Test
+    public void ShouldHaveNoDeadlineByDefault() throws DeadlineExceededException {
+        var request = FetchRequest.of(url);
+
+        assertFalse(request.remaining().isPresent());
+        assertEquals(Long.MAX_VALUE, request.remainingNanos());
+        request.checkDeadline(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void ShouldKeepEarlierDeadline() {
+        var request = FetchRequest.of(url).withTimeout(Duration.ofSeconds(1));
+
+        assertSame(request, request.withTimeout(Duration.ofMinutes(1)));
+        assertTrue(request.withTimeout(Duration.ofMillis(10)).remainingNanos() < request.remainingNanos());
+    }
+
+    @Test
+    public void ShouldKeepDeadlineWhenAddingHeaders() {
+        var request = FetchRequest.of(url).withDeadline(Instant.now().plusSeconds(5)).withHeader("If-None-Match", "\"abc\"");
+
+        var remaining = request.remaining().get();
+        assertTrue(remaining.toMillis() > 4000 && remaining.toMillis() <= 5000);
+    }
+
+    @Test(expected = DeadlineExceededException.class)
+    public void ShouldFailWhenWaitOutlastsDeadline() throws DeadlineExceededException {
+        FetchRequest.of(url).withTimeout(Duration.ofSeconds(1)).checkDeadline(Duration.ofSeconds(2).toNanos());
+    }
+
+    @Test(expected = DeadlineExceededException.class)
+    public void ShouldFailWhenDeadlineHasPassed() throws DeadlineExceededException {
+        FetchRequest.of(url).withTimeout(Duration.ofSeconds(-1)).checkDeadline(0);
+    }
+
+    @Test
+    public void ShouldReportEachLinkOnceAcrossAttempts() {
+        var links = new ArrayList<URI>();
+        var request = FetchRequest.of(URI.create("https://example.com/")).withLinkConsumer(links::add);
+        var onLink = request.withHeader("If-None-Match", "\"v1\"").linkConsumer().get();
+
+        onLink.accept(URI.create("https://example.com/a"));
+        request.linkConsumer().get().accept(URI.create("https://example.com/a"));
+        onLink.accept(URI.create("https://example.com/b"));
+
+        assertEquals(List.of(URI.create("https://example.com/a"), URI.create("https://example.com/b")), links);
+        assertFalse(FetchRequest.of(URI.create("https://example.com/")).linkConsumer().isPresent());
+    }
+}
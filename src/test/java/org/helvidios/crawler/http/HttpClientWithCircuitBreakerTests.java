@@ -0,0 +1,133 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import java.io.IOException;
+import java.net.HttpRetryException;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.helvidios.crawler.UnitTest;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class HttpClientWithCircuitBreakerTests {
+
+    private final URI deadUrl = URI.create("https://dead.example.com/page");
+    private final URI liveUrl = URI.create("https://www.w3schools.com/html/html_basic.asp");
+
+    private static void fetchIgnoringErrors(HttpClient httpClient, URI url, int times){
+        for(int i = 0; i < times; i++){
+            try{
+                httpClient.fetch(url);
+            }catch(FetchException ex){}
+        }
+    }
+
+    @Test
+    public void ShouldFailFastAfterHostKeepsFailing() throws FetchException {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(FetchRequest.of(deadUrl))).thenThrow(new FetchException(deadUrl, new HttpTimeoutException("timeout")));
+        var httpClient = new HttpClientWithCircuitBreaker(Duration.ofMinutes(1), Duration.ofMinutes(10), httpClientMock);
+
+        fetchIgnoringErrors(httpClient, deadUrl, 10);
+        assertEquals(CircuitBreaker.State.OPEN, httpClient.state("dead.example.com"));
+
+        try{
+            httpClient.fetch(deadUrl);
+            fail("request to a host with open circuit breaker must fail");
+        }catch(HostUnavailableException ex){
+            assertEquals(deadUrl, ex.url());
+        }
+        verify(httpClientMock, times(10)).send(FetchRequest.of(deadUrl));
+    }
+
+    @Test
+    public void ShouldNotAffectOtherHosts() throws FetchException {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(FetchRequest.of(deadUrl))).thenThrow(new FetchException(deadUrl, new IOException()));
+        when(httpClientMock.send(FetchRequest.of(liveUrl))).thenReturn(HtmlDocument.of(liveUrl, ""));
+        var httpClient = new HttpClientWithCircuitBreaker(Duration.ofMinutes(1), Duration.ofMinutes(10), httpClientMock);
+
+        fetchIgnoringErrors(httpClient, deadUrl, 10);
+
+        assertEquals(liveUrl, httpClient.fetch(liveUrl).url());
+    }
+
+    @Test
+    public void ShouldNotCountClientErrorsAsHostFailures() throws FetchException {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(FetchRequest.of(deadUrl))).thenThrow(new FetchException(deadUrl, new HttpRetryException("", 404)));
+        var httpClient = new HttpClientWithCircuitBreaker(Duration.ofMinutes(1), Duration.ofMinutes(10), httpClientMock);
+
+        fetchIgnoringErrors(httpClient, deadUrl, 20);
+
+        assertEquals(CircuitBreaker.State.CLOSED, httpClient.state("dead.example.com"));
+        verify(httpClientMock, times(20)).send(FetchRequest.of(deadUrl));
+    }
+
+    @Test
+    public void ShouldNotCountUnsupportedEncodingAsHostFailure() {
+        assertFalse(HttpClientWithCircuitBreaker.isHostFailure(new UnsupportedContentEncodingException(deadUrl, "br")));
+        assertTrue(HttpClientWithCircuitBreaker.isHostFailure(new FetchException(deadUrl, new IOException())));
+    }
+
+    @Test
+    public void ShouldProbeHostAgainAfterWait() throws Exception {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(FetchRequest.of(deadUrl))).thenThrow(new FetchException(deadUrl, new HttpRetryException("", 503)));
+        var httpClient = new HttpClientWithCircuitBreaker(HttpClientWithCircuitBreaker.MIN_WAIT_IN_OPEN_STATE, Duration.ofMinutes(10), httpClientMock);
+        fetchIgnoringErrors(httpClient, deadUrl, 10);
+
+        Thread.sleep(HttpClientWithCircuitBreaker.MIN_WAIT_IN_OPEN_STATE.toMillis() + 100);
+        reset(httpClientMock);
+        when(httpClientMock.send(FetchRequest.of(deadUrl))).thenReturn(HtmlDocument.of(deadUrl, ""));
+        for(int i = 0; i < 3; i++){
+            httpClient.fetch(deadUrl);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, httpClient.state("dead.example.com"));
+    }
+
+    @Test
+    public void ShouldFailFastAsynchronously() throws FetchException {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(FetchRequest.of(deadUrl)))
+            .thenReturn(CompletableFuture.failedFuture(new FetchException(deadUrl, new IOException())));
+        var httpClient = new HttpClientWithCircuitBreaker(Duration.ofMinutes(1), Duration.ofMinutes(10), httpClientMock);
+        for(int i = 0; i < 10; i++){
+            httpClient.fetchAsync(deadUrl).exceptionally(ex -> null).join();
+        }
+
+        try{
+            httpClient.fetchAsync(deadUrl).get();
+            fail("request to a host with open circuit breaker must fail");
+        }catch(InterruptedException | ExecutionException ex){
+            assertTrue(ex.getCause() instanceof HostUnavailableException);
+        }
+        verify(httpClientMock, times(10)).sendAsync(FetchRequest.of(deadUrl));
+    }
+
+    @Test
+    public void ShouldNotRetryWhenHostIsUnavailable() throws FetchException {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(FetchRequest.of(deadUrl)))
+            .thenThrow(new HostUnavailableException(deadUrl, null));
+        var httpClient = new HttpClientWithRetry(5, httpClientMock);
+
+        fetchIgnoringErrors(httpClient, deadUrl, 1);
+
+        verify(httpClientMock, times(1)).send(FetchRequest.of(deadUrl));
+    }
+}
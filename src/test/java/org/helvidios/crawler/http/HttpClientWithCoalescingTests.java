@@ -0,0 +1,249 @@
+package org.helvidios.crawler.http;
+
+import org.helvidios.crawler.UnitTest;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class HttpClientWithCoalescingTests {
+
+    private final URI url = URI.create("http://www.google.com/page");
+    private final String content = "<html><body>hello</body></html>";
+
+    @Test
+    public void ShouldShareInFlightAsyncDownload() throws Exception {
+        var response = new CompletableFuture<HtmlDocument>();
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(any())).thenReturn(response);
+        var httpClient = new HttpClientWithCoalescing(Delays.sharedScheduler(), httpClientMock);
+
+        var first = httpClient.fetchAsync(url);
+        var second = httpClient.fetchAsync(URI.create("HTTP://WWW.google.com:80/a/../page#top"));
+        response.complete(HtmlDocument.of(url, content));
+
+        verify(httpClientMock, times(1)).sendAsync(any());
+        assertSame(first.get(), second.get());
+        assertEquals(0, httpClient.inFlight());
+    }
+
+    @Test
+    public void ShouldShareFailure() throws Exception {
+        var response = new CompletableFuture<HtmlDocument>();
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(any())).thenReturn(response);
+        var httpClient = new HttpClientWithCoalescing(Delays.sharedScheduler(), httpClientMock);
+
+        var first = httpClient.fetchAsync(url);
+        var second = httpClient.fetchAsync(url);
+        var failure = new FetchException(url, new IOException());
+        response.completeExceptionally(failure);
+
+        assertSame(failure, cause(first));
+        assertSame(failure, cause(second));
+    }
+
+    @Test
+    public void ShouldNotLetCallerCancelSharedDownload() throws Exception {
+        var response = new CompletableFuture<HtmlDocument>();
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(any())).thenReturn(response);
+        var httpClient = new HttpClientWithCoalescing(Delays.sharedScheduler(), httpClientMock);
+
+        var first = httpClient.fetchAsync(url);
+        var second = httpClient.fetchAsync(url);
+        first.cancel(true);
+        response.complete(HtmlDocument.of(url, content));
+
+        assertEquals(content, second.get().content());
+    }
+
+    @Test
+    public void ShouldStartNewDownloadAfterCompletion() throws Exception {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(any())).thenAnswer(invocation -> CompletableFuture.completedFuture(HtmlDocument.of(url, content)));
+        var httpClient = new HttpClientWithCoalescing(Delays.sharedScheduler(), httpClientMock);
+
+        httpClient.fetchAsync(url).get();
+        httpClient.fetchAsync(url).get();
+
+        verify(httpClientMock, times(2)).sendAsync(any());
+    }
+
+    @Test
+    public void ShouldNotCoalesceRequestsWithDifferentHeaders() {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(any())).thenAnswer(invocation -> new CompletableFuture<HtmlDocument>());
+        var httpClient = new HttpClientWithCoalescing(Delays.sharedScheduler(), httpClientMock);
+
+        httpClient.sendAsync(FetchRequest.of(url));
+        httpClient.sendAsync(FetchRequest.of(url).withHeader("If-None-Match", "\"v1\""));
+
+        verify(httpClientMock, times(2)).sendAsync(any());
+    }
+
+    @Test
+    public void ShouldShareBlockingDownload() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return HtmlDocument.of(url, content);
+        });
+        var httpClient = new HttpClientWithCoalescing(Delays.sharedScheduler(), httpClientMock);
+        var executor = Executors.newFixedThreadPool(2);
+        try{
+            var first = executor.submit(() -> httpClient.fetch(url));
+            started.await();
+            var second = executor.submit(() -> httpClient.fetch(url));
+            Thread.sleep(50);
+            release.countDown();
+
+            assertSame(first.get(1, TimeUnit.SECONDS), second.get(1, TimeUnit.SECONDS));
+            verify(httpClientMock, times(1)).send(any());
+        }finally{
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void ShouldStopWaitingAtJoiningCallersDeadline() throws Exception {
+        var response = new CompletableFuture<HtmlDocument>();
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(any())).thenReturn(response);
+        var httpClient = new HttpClientWithCoalescing(Delays.sharedScheduler(), httpClientMock);
+
+        var first = httpClient.sendAsync(FetchRequest.of(url));
+        var second = httpClient.sendAsync(FetchRequest.of(url).withTimeout(Duration.ofMillis(50)));
+
+        assertTrue(cause(second) instanceof DeadlineExceededException);
+        assertFalse("The shared download must go on", first.isDone());
+        response.complete(HtmlDocument.of(url, content));
+        assertEquals(content, first.get().content());
+    }
+
+    @Test
+    public void ShouldStopWaitingWhenJoiningCallerIsCancelled() {
+        var response = new CompletableFuture<HtmlDocument>();
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(any())).thenReturn(response);
+        var httpClient = new HttpClientWithCoalescing(Delays.sharedScheduler(), httpClientMock);
+        var cancellation = new CompletableFuture<Void>();
+
+        var first = httpClient.sendAsync(FetchRequest.of(url));
+        var second = httpClient.sendAsync(FetchRequest.of(url).withCancellation(cancellation));
+        cancellation.complete(null);
+
+        assertTrue(second.isCancelled());
+        assertFalse(first.isDone());
+    }
+
+    @Test
+    public void ShouldStopBlockingAtJoiningCallersDeadline() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return HtmlDocument.of(url, content);
+        });
+        var httpClient = new HttpClientWithCoalescing(Delays.sharedScheduler(), httpClientMock);
+        var executor = Executors.newSingleThreadExecutor();
+        try{
+            var first = executor.submit(() -> httpClient.fetch(url));
+            started.await();
+            try{
+                httpClient.send(FetchRequest.of(url).withTimeout(Duration.ofMillis(50)));
+                fail("DeadlineExceededException expected");
+            }catch(DeadlineExceededException ex){
+                assertEquals(url, ex.url());
+            }
+            release.countDown();
+            assertEquals(content, first.get(1, TimeUnit.SECONDS).content());
+        }finally{
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void ShouldForgetDownloadThatFailedSynchronously() throws Exception {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(any()))
+            .thenThrow(new IllegalStateException("closed"))
+            .thenReturn(CompletableFuture.completedFuture(HtmlDocument.of(url, content)));
+        var httpClient = new HttpClientWithCoalescing(Delays.sharedScheduler(), httpClientMock);
+
+        assertTrue(cause(httpClient.fetchAsync(url)) instanceof FetchException);
+        assertEquals(0, httpClient.inFlight());
+        assertEquals(content, httpClient.fetchAsync(url).get().content());
+    }
+
+    @Test
+    public void ShouldForgetBlockingDownloadThatFailedWithError() throws Exception {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(any())).thenThrow(new OutOfMemoryError());
+        var httpClient = new HttpClientWithCoalescing(Delays.sharedScheduler(), httpClientMock);
+
+        try{
+            httpClient.fetch(url);
+            fail("OutOfMemoryError expected");
+        }catch(OutOfMemoryError ex){
+            assertEquals(0, httpClient.inFlight());
+        }
+    }
+
+    @Test
+    public void ShouldShareDownloadOfSameCanonicalUrl() throws Exception {
+        var response = new CompletableFuture<HtmlDocument>();
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(any())).thenReturn(response);
+        var httpClient = new HttpClientWithCoalescing(Delays.sharedScheduler(), httpClientMock);
+
+        var first = httpClient.fetchAsync(URI.create("https://example.com/p?b=1&a=2"));
+        var second = httpClient.fetchAsync(URI.create("https://example.com/p?a=2&utm_source=feed&b=1"));
+        var third = httpClient.fetchAsync(URI.create("https://example.com/%7ep/../p?a=%32&b=1"));
+        response.complete(HtmlDocument.of(URI.create("https://example.com/p?b=1&a=2"), content));
+
+        verify(httpClientMock, times(1)).sendAsync(any());
+        assertSame(first.get(), second.get());
+        assertSame(first.get(), third.get());
+    }
+
+    @Test
+    public void ShouldPassRelativeUrlThrough() {
+        var relative = URI.create("/page");
+        var failure = CompletableFuture.<HtmlDocument>failedFuture(new IllegalArgumentException("URI is not absolute"));
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(any())).thenReturn(failure);
+        var httpClient = new HttpClientWithCoalescing(Delays.sharedScheduler(), httpClientMock);
+
+        assertSame(failure, httpClient.fetchAsync(relative));
+        assertEquals(0, httpClient.inFlight());
+    }
+
+    private static Throwable cause(CompletableFuture<HtmlDocument> future) throws InterruptedException {
+        try{
+            future.get();
+            fail("ExecutionException expected");
+            return null;
+        }catch(ExecutionException ex){
+            return ex.getCause();
+        }
+    }
+}
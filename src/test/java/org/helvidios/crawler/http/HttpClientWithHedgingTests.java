@@ -0,0 +1,215 @@
+package org.helvidios.crawler.http;
+
+import org.helvidios.crawler.UnitTest;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import java.io.IOException;
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class HttpClientWithHedgingTests {
+
+    private final URI url = URI.create("http://www.google.com/page");
+    private final String content = "<html><body>hello</body></html>";
+    private final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1);
+    private final List<FetchRequest> requests = Collections.synchronizedList(new ArrayList<>());
+    private final List<CompletableFuture<HtmlDocument>> responses = Collections.synchronizedList(new ArrayList<>());
+
+    @After
+    public void stopScheduler() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void ShouldNotHedgeHostWithoutEnoughSamples() throws Exception {
+        var httpClient = new HttpClientWithHedging(new RetryBudget(1, 10), Duration.ofMinutes(1), scheduler, pending());
+
+        var result = httpClient.fetchAsync(url);
+        Thread.sleep(50);
+
+        assertEquals(1, requests.size());
+        responses.get(0).complete(HtmlDocument.of(url, content));
+        assertEquals(content, result.get().content());
+    }
+
+    @Test
+    public void ShouldHedgeSlowRequestAndCancelLoser() throws Exception {
+        var httpClient = new HttpClientWithHedging(new RetryBudget(1, 10), Duration.ofMinutes(1), scheduler, pending());
+        warmUp(httpClient);
+
+        var result = httpClient.fetchAsync(url);
+        waitForRequests(HttpClientWithHedging.MIN_SAMPLES + 2);
+        var primary = requests.get(HttpClientWithHedging.MIN_SAMPLES);
+        var hedge = requests.get(HttpClientWithHedging.MIN_SAMPLES + 1);
+        responses.get(HttpClientWithHedging.MIN_SAMPLES + 1).complete(HtmlDocument.of(url, "hedge"));
+
+        assertEquals("hedge", result.get(1, TimeUnit.SECONDS).content());
+        assertTrue("primary must be cancelled", primary.cancellation().get().isDone());
+        assertEquals(primary.url(), hedge.url());
+    }
+
+    @Test
+    public void ShouldCapHedgesByBudget() throws Exception {
+        var httpClient = new HttpClientWithHedging(new RetryBudget(0.01, 1), Duration.ofMinutes(1), scheduler, pending());
+        warmUp(httpClient);
+
+        httpClient.fetchAsync(url);
+        httpClient.fetchAsync(url);
+        Thread.sleep(100);
+
+        assertEquals("only one hedge fits into the budget", HttpClientWithHedging.MIN_SAMPLES + 3, requests.size());
+    }
+
+    @Test
+    public void ShouldReportPrimaryFailureWhenBothFail() throws Exception {
+        var httpClient = new HttpClientWithHedging(new RetryBudget(1, 10), Duration.ofMinutes(1), scheduler, pending());
+        warmUp(httpClient);
+
+        var result = httpClient.fetchAsync(url);
+        waitForRequests(HttpClientWithHedging.MIN_SAMPLES + 2);
+        var primaryFailure = new FetchException(url, new IOException("primary"));
+        responses.get(HttpClientWithHedging.MIN_SAMPLES).completeExceptionally(primaryFailure);
+        assertFalse("race must wait for the hedge", result.isDone());
+        responses.get(HttpClientWithHedging.MIN_SAMPLES + 1).completeExceptionally(new FetchException(url, new IOException("hedge")));
+
+        try{
+            result.get();
+            fail("ExecutionException expected");
+        }catch(ExecutionException ex){
+            assertSame(primaryFailure, ex.getCause());
+        }
+    }
+
+    @Test
+    public void ShouldFailFastIfPrimaryFailsBeforeHedge() throws Exception {
+        var httpClient = new HttpClientWithHedging(new RetryBudget(1, 10), Duration.ofMinutes(1), scheduler, pending());
+        warmUp(httpClient);
+
+        var result = httpClient.fetchAsync(url);
+        responses.get(HttpClientWithHedging.MIN_SAMPLES).completeExceptionally(new FetchException(url, new IOException()));
+
+        assertTrue(result.isCompletedExceptionally());
+        Thread.sleep(100);
+        assertEquals("no hedge after the race ended", HttpClientWithHedging.MIN_SAMPLES + 1, requests.size());
+    }
+
+    @Test
+    public void ShouldOnlyHedgeWithFreePermitOfHost() throws Exception {
+        var rateLimit = new PerHostRateLimit(1, Map.of(), Duration.ofMinutes(1));
+        var httpClient = new HttpClientWithHedging(new RetryBudget(1, 10), rateLimit, Duration.ofMinutes(1), scheduler, pending());
+        warmUp(httpClient);
+
+        var first = httpClient.fetchAsync(url);
+        waitForRequests(HttpClientWithHedging.MIN_SAMPLES + 2);
+        responses.get(HttpClientWithHedging.MIN_SAMPLES + 1).complete(HtmlDocument.of(url, "hedge"));
+        assertEquals("hedge", first.get(1, TimeUnit.SECONDS).content());
+
+        httpClient.fetchAsync(url);
+        Thread.sleep(100);
+        assertEquals("the host's only permit per second was used by the first hedge", HttpClientWithHedging.MIN_SAMPLES + 3, requests.size());
+    }
+
+    @Test
+    public void ShouldNotSendRequestThatIsAlreadyCancelled() throws Exception {
+        var jdkClientMock = mock(java.net.http.HttpClient.class);
+        var httpClient = new BasicHttpClient(jdkClientMock, Duration.ofSeconds(10), 1024, Map.of());
+
+        var result = httpClient.sendAsync(FetchRequest.of(url).withCancellation(CompletableFuture.completedFuture(null)));
+
+        assertTrue(result.isCompletedExceptionally());
+        verify(jdkClientMock, never()).sendAsync(any(), any());
+    }
+
+    @Test
+    public void ShouldAbortExchangeWhenRequestIsCancelled() throws Exception {
+        var server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            try{
+                Thread.sleep(5_000);
+            }catch(InterruptedException ex){
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+        try{
+            var cancellation = new CompletableFuture<Void>();
+            var request = FetchRequest.of(URI.create(String.format("http://127.0.0.1:%d/", server.getAddress().getPort())))
+                .withCancellation(cancellation);
+            var result = new BasicHttpClient(Duration.ofSeconds(10)).sendAsync(request);
+            Thread.sleep(100);
+
+            cancellation.complete(null);
+
+            try{
+                result.get(1, TimeUnit.SECONDS);
+                fail("ExecutionException expected");
+            }catch(ExecutionException expected){}
+        }finally{
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void ShouldKeepRefreshingHedgeDelayAfterWindowWrapsAround() {
+        var latency = new HttpClientWithHedging.HostLatency();
+        for(int i = 0; i < 10 * HttpClientWithHedging.LATENCY_WINDOW; i++) latency.record(10);
+        assertEquals(10, latency.hedgeDelayNanos());
+
+        for(int i = 0; i < HttpClientWithHedging.LATENCY_WINDOW; i++) latency.record(1_000);
+
+        assertEquals(1_000, latency.hedgeDelayNanos());
+    }
+
+    /**
+     * Sends enough requests that complete after about 5 ms for the host to be hedged.
+     */
+    private void warmUp(HttpClient httpClient) throws Exception {
+        for(int i = 0; i < HttpClientWithHedging.MIN_SAMPLES; i++){
+            var result = httpClient.fetchAsync(url);
+            Thread.sleep(5);
+            responses.get(i).complete(HtmlDocument.of(url, content));
+            result.get();
+        }
+        assertTrue(httpClient instanceof HttpClientWithHedging hedging && hedging.hedgeDelayNanos("www.google.com") > 0);
+    }
+
+    /**
+     * Returns a client whose responses are completed by the test.
+     */
+    private HttpClient pending(){
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(any())).thenAnswer(invocation -> {
+            var response = new CompletableFuture<HtmlDocument>();
+            synchronized(requests){
+                requests.add(invocation.getArgument(0));
+                responses.add(response);
+            }
+            return response;
+        });
+        return httpClientMock;
+    }
+
+    private void waitForRequests(int count) throws InterruptedException {
+        for(int i = 0; i < 100 && requests.size() < count; i++) Thread.sleep(10);
+        assertEquals(count, requests.size());
+    }
+}
@@ -1,11 +1,14 @@
 package org.helvidios.crawler.http;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 import java.net.URI;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -37,7 +40,7 @@ public class HttpClientWithRateLimitTests {
         final Lock lock = new ReentrantLock();
 
         var httpClientMock = mock(HttpClient.class);
-        when(httpClientMock.fetch(any())).thenAnswer(new Answer<HtmlDocument>() {
+        when(httpClientMock.send(any())).thenAnswer(new Answer<HtmlDocument>() {
 
             @Override
             public HtmlDocument answer(InvocationOnMock invocation) throws Throwable {
@@ -63,11 +66,92 @@ public class HttpClientWithRateLimitTests {
         ExecutorService executorService = Executors.newFixedThreadPool(CONCURRENT_CLIENTS);
         var docs = toDocs(executorService.invokeAll(callables));
         
-        verify(httpClientMock, times(CONCURRENT_CLIENTS)).fetch(url);
+        verify(httpClientMock, times(CONCURRENT_CLIENTS)).send(FetchRequest.of(url));
         assertEquals(CONCURRENT_CLIENTS, docs.size());
         assertEquals(CONCURRENT_CLIENTS, requests.values().stream().mapToInt(i -> i).sum());
     }
 
+    @Test
+    public void ShouldRateLimitAsyncRequests() throws Exception {
+        final int REQUESTS = 20;
+        final int QPS = 10;
+
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(FetchRequest.of(url))).thenReturn(CompletableFuture.completedFuture(HtmlDocument.of(url, content)));
+
+        var httpClient = new HttpClientWithRateLimit(QPS, httpClientMock);
+        var start = Instant.now();
+        var futures = IntStream.range(0, REQUESTS)
+                               .mapToObj(i -> httpClient.fetchAsync(url))
+                               .toList();
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get();
+        var elapsed = Duration.between(start, Instant.now());
+
+        verify(httpClientMock, times(REQUESTS)).sendAsync(FetchRequest.of(url));
+        assertTrue("Async requests must be spread out by the rate limiter", elapsed.toMillis() >= 800);
+    }
+
+    @Test
+    public void ShouldBackOffOnlyHostThatRespondedWithTooManyRequests() throws FetchException {
+        final URI otherHost = URI.create("http://www.wikipedia.org");
+
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(FetchRequest.of(url))).thenThrow(new TooManyRequestsException(url, Map.of("Retry-After", List.of("3600"))));
+        when(httpClientMock.send(FetchRequest.of(otherHost))).thenReturn(HtmlDocument.of(otherHost, content));
+
+        var httpClient = new HttpClientWithRateLimit(1000, httpClientMock);
+        try{
+            httpClient.fetch(url);
+            assertTrue("Must throw TooManyRequestsException", false);
+        }catch(TooManyRequestsException ex){}
+
+        var start = Instant.now();
+        var doc = httpClient.fetch(otherHost);
+        var elapsed = Duration.between(start, Instant.now());
+
+        assertEquals(otherHost, doc.url());
+        assertTrue("Request to another host must not wait for the back-off", elapsed.toMillis() < 1000);
+        assertTrue("Back-off must not complete the future of the blocked host early",
+            !httpClient.fetchAsync(url).isDone());
+    }
+
+    @Test
+    public void ShouldFailFastWhenBackOffOutlastsDeadline() throws Exception {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(FetchRequest.of(url))).thenThrow(new TooManyRequestsException(url, Map.of("Retry-After", List.of("3600"))));
+
+        var httpClient = new HttpClientWithRateLimit(1000, httpClientMock);
+        try{
+            httpClient.fetch(url);
+        }catch(TooManyRequestsException ex){}
+
+        var start = Instant.now();
+        try{
+            httpClient.fetch(url, Duration.ofSeconds(10));
+            assertTrue("Must throw DeadlineExceededException", false);
+        }catch(DeadlineExceededException ex){}
+        assertTrue("Must not wait for the back-off", Duration.between(start, Instant.now()).toMillis() < 1000);
+
+        var future = httpClient.fetchAsync(url, Duration.ofSeconds(10));
+        assertTrue(future.isCompletedExceptionally());
+        verify(httpClientMock, times(1)).send(any());
+    }
+
+    @Test
+    public void ShouldNotReservePermitForRequestPastDeadline() throws Exception {
+        var rateLimit = mock(RateLimit.class);
+        var httpClient = new HttpClientWithRateLimit(rateLimit, mock(HttpClient.class));
+        var expired = FetchRequest.of(url).withTimeout(Duration.ofSeconds(-1));
+
+        try{
+            httpClient.send(expired);
+            assertTrue("Must throw DeadlineExceededException", false);
+        }catch(DeadlineExceededException ex){}
+        assertTrue(httpClient.sendAsync(expired).isCompletedExceptionally());
+
+        verify(rateLimit, never()).reserve(any());
+    }
+
     private List<HtmlDocument> toDocs(List<Future<HtmlDocument>> futures){
         return futures.stream().map(future -> {
             try{
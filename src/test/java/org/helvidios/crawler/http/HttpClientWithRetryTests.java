@@ -9,7 +9,12 @@ import org.mockito.junit.MockitoJUnitRunner;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 import java.io.IOException;
+import java.net.HttpRetryException;
 import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 @RunWith(MockitoJUnitRunner.class)
 @Category(UnitTest.class)
@@ -22,12 +27,12 @@ public class HttpClientWithRetryTests {
     public void ShouldNotRetryWhenServerResponds() throws FetchException {
 
         var httpClientMock = mock(HttpClient.class);
-        when(httpClientMock.fetch(any())).thenReturn(HtmlDocument.of(url, content));
+        when(httpClientMock.send(any())).thenReturn(HtmlDocument.of(url, content));
 
         var httpClientWithRetry = new HttpClientWithRetry(3, httpClientMock);
         var doc = httpClientWithRetry.fetch(url);
 
-        verify(httpClientMock).fetch(url);
+        verify(httpClientMock).send(FetchRequest.of(url));
         assertEquals(url, doc.url());
         assertEquals(content, doc.content());
     }
@@ -36,7 +41,7 @@ public class HttpClientWithRetryTests {
     public void ShouldRetryFourTimesWhenFetchExceptionOccurs() throws FetchException {
         
         var httpClientMock = mock(HttpClient.class);
-        when(httpClientMock.fetch(url))
+        when(httpClientMock.send(FetchRequest.of(url)))
             .thenThrow(new FetchException(url, new IOException()))
             .thenThrow(new FetchException(url, new IOException()))
             .thenThrow(new FetchException(url, new IOException()))
@@ -45,7 +50,7 @@ public class HttpClientWithRetryTests {
         var httpClientWithRetry = new HttpClientWithRetry(5, httpClientMock);
         var doc = httpClientWithRetry.fetch(url);
 
-        verify(httpClientMock, times(4)).fetch(url);
+        verify(httpClientMock, times(4)).send(FetchRequest.of(url));
         assertEquals(url, doc.url());
         assertEquals(content, doc.content());
     }
@@ -54,7 +59,7 @@ public class HttpClientWithRetryTests {
     public void ShouldThrowFetchExceptionAfterAllRetriesFailed() throws FetchException {
 
         var httpClientMock = mock(HttpClient.class);
-        when(httpClientMock.fetch(url))
+        when(httpClientMock.send(FetchRequest.of(url)))
             .thenThrow(new FetchException(url, new IOException()))
             .thenThrow(new FetchException(url, new IOException()))
             .thenThrow(new FetchException(url, new IOException()))
@@ -63,4 +68,131 @@ public class HttpClientWithRetryTests {
         var httpClientWithRetry = new HttpClientWithRetry(3, httpClientMock);
         httpClientWithRetry.fetch(url);
     }
+
+    @Test
+    public void ShouldRetryAsyncFetchUntilSuccess() throws Exception {
+
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(FetchRequest.of(url)))
+            .thenReturn(CompletableFuture.failedFuture(new FetchException(url, new IOException())))
+            .thenReturn(CompletableFuture.failedFuture(new FetchException(url, new IOException())))
+            .thenReturn(CompletableFuture.completedFuture(HtmlDocument.of(url, content)));
+
+        var httpClientWithRetry = new HttpClientWithRetry(5, httpClientMock);
+        var doc = httpClientWithRetry.fetchAsync(url).get();
+
+        verify(httpClientMock, times(3)).sendAsync(FetchRequest.of(url));
+        assertEquals(url, doc.url());
+        assertEquals(content, doc.content());
+    }
+
+    @Test
+    public void ShouldFailAsyncFetchWithFetchExceptionAfterAllRetriesFailed() throws InterruptedException {
+
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(FetchRequest.of(url)))
+            .thenReturn(CompletableFuture.failedFuture(new FetchException(url, new IOException())));
+
+        var httpClientWithRetry = new HttpClientWithRetry(2, httpClientMock);
+        try{
+            httpClientWithRetry.fetchAsync(url).get();
+            fail("Future must complete exceptionally after all retries failed");
+        }catch(ExecutionException ex){
+            assertTrue("Cause exception must be FetchException", ex.getCause() instanceof FetchException);
+        }
+
+        verify(httpClientMock, times(2)).sendAsync(FetchRequest.of(url));
+    }
+
+    @Test
+    public void ShouldNotRetryClientErrors() throws FetchException {
+
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(FetchRequest.of(url)))
+            .thenThrow(new FetchException(url, new HttpRetryException("Not Found", 404)));
+
+        var httpClientWithRetry = new HttpClientWithRetry(5, httpClientMock);
+        try{
+            httpClientWithRetry.fetch(url);
+            fail("404 must not be retried");
+        }catch(FetchException ex){
+            assertEquals(404, ((HttpRetryException) ex.getCause()).responseCode());
+        }
+
+        verify(httpClientMock, times(1)).send(FetchRequest.of(url));
+    }
+
+    @Test
+    public void ShouldNotRetryAsyncFetchWhenPolicyRejectsFailure() throws InterruptedException {
+
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(FetchRequest.of(url)))
+            .thenReturn(CompletableFuture.failedFuture(new FetchException(url, new IOException())));
+
+        var httpClientWithRetry = new HttpClientWithRetry(5, failure -> false, null, httpClientMock);
+        try{
+            httpClientWithRetry.fetchAsync(url).get();
+            fail("Future must complete exceptionally");
+        }catch(ExecutionException ex){
+            assertTrue("Cause exception must be FetchException", ex.getCause() instanceof FetchException);
+        }
+
+        verify(httpClientMock, times(1)).sendAsync(FetchRequest.of(url));
+    }
+
+    @Test
+    public void ShouldStopRetryingWhenBudgetIsExhausted() throws FetchException {
+
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(FetchRequest.of(url)))
+            .thenThrow(new FetchException(url, new IOException()));
+
+        var budget = new RetryBudget(0.01, 1);
+        var httpClientWithRetry = new HttpClientWithRetry(5, RetryPolicy.transientFailures(), budget, httpClientMock);
+        try{
+            httpClientWithRetry.fetch(url);
+            fail("Fetch must fail");
+        }catch(FetchException ex){}
+
+        verify(httpClientMock, times(2)).send(FetchRequest.of(url));
+    }
+
+    @Test
+    public void ShouldScheduleAsyncRetryOnSchedulerWithoutBlockingCaller() throws Exception {
+
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(FetchRequest.of(url)))
+            .thenReturn(CompletableFuture.failedFuture(new FetchException(url, new IOException())))
+            .thenReturn(CompletableFuture.completedFuture(HtmlDocument.of(url, content)));
+
+        var scheduler = new ScheduledThreadPoolExecutor(1);
+        try{
+            var httpClientWithRetry = new HttpClientWithRetry(2, RetryPolicy.transientFailures(), null, scheduler, null, httpClientMock);
+            var future = httpClientWithRetry.fetchAsync(url);
+
+            assertFalse("retry must wait for backoff on the scheduler", future.isDone());
+            assertEquals(1, scheduler.getQueue().size());
+            assertEquals(content, future.get().content());
+        }finally{
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void ShouldStopRetryingWhenBackoffOutlastsDeadline() throws FetchException {
+
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(any()))
+            .thenThrow(new FetchException(url, new IOException()));
+
+        var httpClientWithRetry = new HttpClientWithRetry(10, httpClientMock);
+        try{
+            httpClientWithRetry.fetch(url, Duration.ofMillis(100));
+            fail("Fetch must fail");
+        }catch(FetchException ex){
+            assertTrue("Last real failure must be reported", ex.getCause() instanceof IOException);
+        }
+
+        verify(httpClientMock, times(1)).send(any());
+    }
 }
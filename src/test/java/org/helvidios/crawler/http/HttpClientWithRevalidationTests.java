@@ -0,0 +1,118 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.*;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import org.helvidios.crawler.UnitTest;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class HttpClientWithRevalidationTests {
+
+    private final URI url = URI.create("http://www.google.com");
+    private final String content = "<html><body>hello</body></html>";
+    private final String etag = "\"33a64df551425fcc55e4d42a148795d9f25f89d4\"";
+    private final String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+    private final HtmlDocument docWithValidators = HtmlDocument.Builder()
+        .withUrl(url)
+        .withContent(content)
+        .withValidators(etag, lastModified)
+        .build();
+
+    private final FetchRequest conditionalRequest = FetchRequest.of(url)
+        .withHeader("If-None-Match", etag)
+        .withHeader("If-Modified-Since", lastModified);
+
+    @Test
+    public void ShouldReturnStoredDocumentWhenServerRespondsNotModified() throws FetchException {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(FetchRequest.of(url))).thenReturn(docWithValidators);
+        when(httpClientMock.send(conditionalRequest)).thenThrow(new NotModifiedException(url));
+
+        var httpClient = new HttpClientWithRevalidation(ValidatorStore.inMemory(10), Runnable::run, httpClientMock);
+        var first = httpClient.fetch(url);
+        var second = httpClient.fetch(url);
+
+        verify(httpClientMock).send(FetchRequest.of(url));
+        verify(httpClientMock).send(conditionalRequest);
+        assertSamePage(first, second);
+        assertEquals(content, second.content());
+    }
+
+    @Test
+    public void ShouldReplaceStoredDocumentWhenPageChanged() throws FetchException {
+        var changed = HtmlDocument.Builder()
+            .withUrl(url)
+            .withContent("<html><body>changed</body></html>")
+            .withValidators("\"v2\"", null)
+            .build();
+
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(FetchRequest.of(url))).thenReturn(docWithValidators);
+        when(httpClientMock.send(conditionalRequest)).thenReturn(changed);
+        when(httpClientMock.send(FetchRequest.of(url).withHeader("If-None-Match", "\"v2\""))).thenThrow(new NotModifiedException(url));
+
+        var httpClient = new HttpClientWithRevalidation(ValidatorStore.inMemory(10), Runnable::run, httpClientMock);
+        httpClient.fetch(url);
+        assertSame(changed, httpClient.fetch(url));
+        assertSamePage(changed, httpClient.fetch(url));
+    }
+
+    @Test(expected = NotModifiedException.class)
+    public void ShouldPropagateNotModifiedIfNoDocumentIsStored() throws FetchException {
+        var request = FetchRequest.of(url).withHeader("If-None-Match", etag);
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(request)).thenThrow(new NotModifiedException(url));
+
+        new HttpClientWithRevalidation(ValidatorStore.inMemory(10), Runnable::run, httpClientMock).send(request);
+    }
+
+    @Test
+    public void ShouldRevalidateAsynchronously() throws Exception {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(FetchRequest.of(url))).thenReturn(CompletableFuture.completedFuture(docWithValidators));
+        when(httpClientMock.sendAsync(conditionalRequest)).thenReturn(CompletableFuture.failedFuture(new NotModifiedException(url)));
+
+        var httpClient = new HttpClientWithRevalidation(ValidatorStore.inMemory(10), Runnable::run, httpClientMock);
+        var first = httpClient.fetchAsync(url).get();
+        var second = httpClient.fetchAsync(url).get();
+
+        assertSamePage(first, second);
+    }
+
+    private static void assertSamePage(HtmlDocument expected, HtmlDocument actual){
+        assertEquals(expected.docId(), actual.docId());
+        assertEquals(expected.url(), actual.url());
+        assertEquals(expected.content(), actual.content());
+        assertEquals(expected.etag(), actual.etag());
+        assertEquals(expected.lastModified(), actual.lastModified());
+    }
+
+    @Test
+    public void ShouldLookUpStoreOnExecutorAsynchronously() throws Exception {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(FetchRequest.of(url))).thenReturn(CompletableFuture.completedFuture(docWithValidators));
+        var storeMock = mock(ValidatorStore.class);
+        when(storeMock.get(url)).thenReturn(Optional.empty());
+        var lookups = new ArrayList<Runnable>();
+
+        var httpClient = new HttpClientWithRevalidation(storeMock, lookups::add, httpClientMock);
+        var doc = httpClient.fetchAsync(url);
+
+        verify(storeMock, never()).get(url);
+        assertEquals(1, lookups.size());
+        lookups.get(0).run();
+        assertSame(docWithValidators, doc.get());
+        verify(storeMock).put(docWithValidators);
+    }
+}
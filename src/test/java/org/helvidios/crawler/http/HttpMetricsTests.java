@@ -0,0 +1,146 @@
+package org.helvidios.crawler.http;
+
+import org.helvidios.crawler.UnitTest;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+import java.io.IOException;
+import java.net.HttpRetryException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class HttpMetricsTests {
+
+    private final URI url = URI.create("http://www.google.com/page");
+    private final String content = "<html><body>hello</body></html>";
+
+    @Test
+    public void ShouldEstimatePercentilesWithinBucketError() {
+        var histogram = new LatencyHistogram();
+        for(int ms = 1; ms <= 100; ms++){
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+
+        var summary = histogram.summary();
+
+        assertEquals(100, summary.count());
+        assertWithin(Duration.ofMillis(50), summary.p50());
+        assertWithin(Duration.ofMillis(95), summary.p95());
+        assertWithin(Duration.ofMillis(99), summary.p99());
+        assertEquals(Duration.ofMillis(100), summary.max());
+    }
+
+    @Test
+    public void ShouldMapEveryValueToBucketContainingIt() {
+        for(long micros : new long[]{ 0, 1, 7, 8, 9, 15, 16, 1_000, 123_456, 1L << 31, Long.MAX_VALUE / 1_000 }){
+            var bucket = LatencyHistogram.bucket(micros);
+            if(micros < (1L << 32)){
+                assertTrue(micros + " must not exceed upper bound", micros <= LatencyHistogram.upperBound(bucket));
+                assertTrue(micros + " must exceed upper bound of previous bucket", bucket == 0 || micros > LatencyHistogram.upperBound(bucket - 1));
+            }
+        }
+    }
+
+    @Test
+    public void ShouldRecordLatencyPerHostAndStatus() throws FetchException {
+        var metrics = HttpMetrics.create();
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(any()))
+            .thenReturn(HtmlDocument.of(url, content))
+            .thenThrow(new TooManyRequestsException(url, Map.of()))
+            .thenThrow(new FetchException(url, new HttpRetryException("", 503)))
+            .thenThrow(new FetchException(url, new IOException()));
+
+        var httpClient = new HttpClientWithMetrics(metrics, httpClientMock);
+        httpClient.fetch(url);
+        for(int i = 0; i < 3; i++){
+            try{
+                httpClient.fetch(url);
+                fail("FetchException expected");
+            }catch(FetchException expected){}
+        }
+
+        var snapshot = metrics.snapshot();
+        assertEquals(4, snapshot.requests());
+        assertEquals(3, snapshot.failures());
+        assertEquals(1, snapshot.tooManyRequests());
+        assertEquals(content.length(), snapshot.bytesReceived());
+        assertEquals(4, snapshot.latencyByHost().get("www.google.com").count());
+        for(int status : new int[]{ 200, 429, 503, HttpMetrics.NO_RESPONSE }){
+            assertEquals(1, snapshot.latencyByStatus().get(status).count());
+        }
+    }
+
+    @Test
+    public void ShouldRecordAsyncAttempts() throws Exception {
+        var metrics = HttpMetrics.create();
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.sendAsync(any())).thenReturn(CompletableFuture.completedFuture(HtmlDocument.of(url, content)));
+
+        new HttpClientWithMetrics(metrics, httpClientMock).fetchAsync(url).get();
+
+        assertEquals(1, metrics.snapshot().latencyByStatus().get(200).count());
+    }
+
+    @Test
+    public void ShouldGroupHostsBeyondLimit() {
+        var metrics = HttpMetrics.create(2);
+        for(var host : new String[]{ "a.com", "b.com", "c.com", "d.com", "a.com" }){
+            metrics.onResponse(URI.create("http://" + host + "/"), 200, 1_000_000, 0, 0);
+        }
+
+        var byHost = metrics.snapshot().latencyByHost();
+
+        assertEquals(3, byHost.size());
+        assertEquals(2, byHost.get("a.com").count());
+        assertEquals(2, byHost.get(HttpMetrics.OTHER_HOSTS).count());
+    }
+
+    @Test
+    public void ShouldRecordRetriesAndBackoff() throws FetchException {
+        var metrics = HttpMetrics.create();
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(any()))
+            .thenThrow(new FetchException(url, new IOException()))
+            .thenReturn(HtmlDocument.of(url, content));
+        var scheduler = new ScheduledThreadPoolExecutor(1);
+        try{
+            new HttpClientWithRetry(3, RetryPolicy.transientFailures(), null, scheduler, metrics, httpClientMock).fetch(url);
+        }finally{
+            scheduler.shutdownNow();
+        }
+
+        var snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.retries());
+        assertTrue("backoff must be recorded", snapshot.backoffWait().compareTo(Duration.ZERO) > 0);
+    }
+
+    @Test
+    public void ShouldRecordRateLimitWait() throws FetchException {
+        var metrics = HttpMetrics.create();
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.send(any())).thenReturn(HtmlDocument.of(url, content));
+        var httpClient = new HttpClientWithRateLimit(RateLimit.global(20), Delays.sharedScheduler(), metrics, httpClientMock);
+
+        for(int i = 0; i < 3; i++){
+            httpClient.fetch(url);
+        }
+
+        assertTrue("rate limit wait must be recorded", metrics.snapshot().rateLimitWait().toMillis() >= 40);
+    }
+
+    private static void assertWithin(Duration expected, Duration actual){
+        var error = Math.abs(actual.toNanos() - expected.toNanos()) / (double) expected.toNanos();
+        assertTrue(String.format("expected ~%s but was %s", expected, actual), error <= 0.125);
+    }
+}
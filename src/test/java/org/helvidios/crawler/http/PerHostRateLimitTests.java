@@ -0,0 +1,94 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.helvidios.crawler.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class PerHostRateLimitTests {
+
+    private final URI wikipedia = URI.create("https://en.wikipedia.org/wiki/Web_crawler");
+    private final URI google = URI.create("https://www.google.com");
+
+    @Test
+    public void ShouldNotLetOneHostConsumeBudgetOfAnotherHost() {
+        var rateLimit = new PerHostRateLimit(1, Map.of(), Duration.ofMinutes(1));
+
+        assertEquals(0, rateLimit.reserve(wikipedia));
+        assertTrue("Second request to the same host must wait", rateLimit.reserve(wikipedia) > 0);
+        assertEquals(0, rateLimit.reserve(google));
+    }
+
+    @Test
+    public void ShouldApplyHostOverride() {
+        var rateLimit = new PerHostRateLimit(1, Map.of("EN.wikipedia.org", 100.0), Duration.ofMinutes(1));
+
+        assertEquals(100.0, rateLimit.rate("en.wikipedia.org"), 0.001);
+        assertEquals(1.0, rateLimit.rate("www.google.com"), 0.001);
+
+        rateLimit.reserve(wikipedia);
+        var wait = rateLimit.reserve(wikipedia);
+        assertTrue("Overridden host must wait about 10ms between requests", wait <= TimeUnit.MILLISECONDS.toNanos(10));
+    }
+
+    @Test
+    public void ShouldEvictIdleHosts() throws InterruptedException {
+        var rateLimit = new PerHostRateLimit(1000, Map.of(), Duration.ofMillis(50));
+
+        rateLimit.reserve(wikipedia);
+        assertEquals(1, rateLimit.size());
+
+        Thread.sleep(100);
+        rateLimit.reserve(google);
+        assertEquals(1, rateLimit.size());
+    }
+
+    @Test
+    public void ShouldSpreadReservationsAtConfiguredRate() {
+        var bucket = new TokenBucket(10, 1);
+
+        long lastWait = -1;
+        for(var i = 0; i < 5; i++){
+            var wait = bucket.reserve();
+            assertTrue("Reservations must be handed out in increasing order", wait > lastWait);
+            lastWait = wait;
+        }
+        assertTrue("Fifth permit must be about 400ms away", lastWait > TimeUnit.MILLISECONDS.toNanos(350));
+    }
+
+    @Test
+    public void ShouldSpaceRequestsByMinIntervalAfterIdlePeriod() throws InterruptedException {
+        var rateLimit = new PerHostRateLimit(1000, Map.of(), Duration.ofMinutes(1));
+        rateLimit.limitRate("en.wikipedia.org", Duration.ofMillis(100));
+        rateLimit.reserve(wikipedia);
+
+        Thread.sleep(300);
+
+        assertEquals(0, rateLimit.reserve(wikipedia));
+        assertTrue("Idle time must not accumulate a burst", rateLimit.reserve(wikipedia) > TimeUnit.MILLISECONDS.toNanos(90));
+        assertTrue("Third request must wait for two intervals", rateLimit.reserve(wikipedia) > TimeUnit.MILLISECONDS.toNanos(190));
+    }
+
+    @Test
+    public void ShouldKeepMinIntervalAfterEviction() throws InterruptedException {
+        var rateLimit = new PerHostRateLimit(1000, Map.of(), Duration.ofMillis(50));
+        rateLimit.limitRate("en.wikipedia.org", Duration.ofMillis(100));
+        rateLimit.reserve(wikipedia);
+
+        Thread.sleep(200);
+        rateLimit.reserve(google);
+        assertEquals("Idle bucket must be evicted", 1, rateLimit.size());
+
+        assertEquals(0, rateLimit.reserve(wikipedia));
+        assertTrue("Recreated bucket must keep the min interval", rateLimit.reserve(wikipedia) > TimeUnit.MILLISECONDS.toNanos(90));
+    }
+}
@@ -0,0 +1,106 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+import com.sun.net.httpserver.HttpServer;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient.Version;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.helvidios.crawler.UnitTest;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class PrewarmTests {
+
+    private HttpServer server;
+    private final AtomicInteger headRequests = new AtomicInteger();
+
+    @Before
+    public void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            if("HEAD".equals(exchange.getRequestMethod())) headRequests.incrementAndGet();
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            var body = "<html></html>".getBytes();
+            if("HEAD".equals(exchange.getRequestMethod())){
+                exchange.sendResponseHeaders(200, -1);
+            }else{
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private URI url(String path){
+        return URI.create(String.format("http://127.0.0.1:%d%s", server.getAddress().getPort(), path));
+    }
+
+    @Test
+    public void ShouldWarmUpEveryOriginOnce() throws Exception {
+        var httpClient = HttpClient.Builder()
+            .withHttpVersion(Version.HTTP_1_1)
+            .withDnsCache()
+            .withRetries(2)
+            .withPerHostRateLimiter(100)
+            .build();
+
+        httpClient.prewarm(List.of(url("/a"), url("/b"), url("/c?x=1"))).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, headRequests.get());
+        assertEquals(url("/a"), httpClient.fetch(url("/a"), Duration.ofSeconds(5)).url());
+    }
+
+    @Test
+    public void ShouldIgnoreFailuresWhenWarmingUp() throws Exception {
+        var httpClient = HttpClient.Builder().withDnsCache().build();
+
+        httpClient.prewarm(List.of(URI.create("http://dead.invalid/"), url("/"))).get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, headRequests.get());
+    }
+
+    @Test
+    public void ShouldWaitForRateLimitPermitBeforeWarmingUp() throws Exception {
+        var httpClientMock = mock(HttpClient.class);
+        when(httpClientMock.prewarm(any())).thenReturn(CompletableFuture.completedFuture(null));
+        var httpClient = new HttpClientWithRateLimit(url -> TimeUnit.MILLISECONDS.toNanos(100), httpClientMock);
+
+        var warmup = httpClient.prewarm(List.of(url("/a"), url("/b")));
+        verify(httpClientMock, never()).prewarm(any());
+
+        warmup.get(1, TimeUnit.SECONDS);
+        verify(httpClientMock, times(1)).prewarm(List.of(url("/")));
+    }
+
+    @Test
+    public void ShouldNotWarmUpOriginDisallowedByRobotsTxt() throws Exception {
+        var robotsUrl = url("/robots.txt");
+        var httpClientMock = mock(HttpClient.class, CALLS_REAL_METHODS);
+        doReturn(CompletableFuture.completedFuture(HtmlDocument.of(robotsUrl, "User-agent: *\nDisallow: /")))
+            .when(httpClientMock).sendAsync(FetchRequest.of(robotsUrl));
+        var httpClient = new HttpClientWithRobotsTxt(RobotsTxtCache.create(httpClientMock, "helvidios-bot"), null, httpClientMock);
+
+        httpClient.prewarm(List.of(url("/a"))).get(1, TimeUnit.SECONDS);
+
+        verify(httpClientMock, never()).prewarm(any());
+    }
+}
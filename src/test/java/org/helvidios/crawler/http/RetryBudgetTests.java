@@ -0,0 +1,48 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.helvidios.crawler.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class RetryBudgetTests {
+
+    @Test
+    public void ShouldStartFull() {
+        var budget = new RetryBudget(0.1, 5);
+
+        for(int i = 0; i < 5; i++){
+            assertTrue(budget.tryRetry());
+        }
+        assertFalse(budget.tryRetry());
+    }
+
+    @Test
+    public void ShouldAllowRetriesInProportionToRequests() {
+        var budget = new RetryBudget(0.1, 5);
+        while(budget.tryRetry()){}
+
+        for(int i = 0; i < 30; i++){
+            budget.onRequest();
+        }
+
+        assertEquals(3, budget.available());
+    }
+
+    @Test
+    public void ShouldNotSaveUpMoreThanMaxTokens() {
+        var budget = new RetryBudget(0.5, 5);
+
+        for(int i = 0; i < 1000; i++){
+            budget.onRequest();
+        }
+
+        assertEquals(5, budget.available());
+    }
+}
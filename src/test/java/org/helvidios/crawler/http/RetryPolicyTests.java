@@ -0,0 +1,59 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.HttpRetryException;
+import java.net.URI;
+import java.net.http.HttpTimeoutException;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import org.helvidios.crawler.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class RetryPolicyTests {
+
+    private final URI url = URI.create("https://www.w3schools.com/html/html_basic.asp");
+    private final RetryPolicy policy = RetryPolicy.transientFailures();
+
+    private FetchException status(int statusCode){
+        return new FetchException(url, new HttpRetryException("", statusCode));
+    }
+
+    @Test
+    public void ShouldRetryNetworkErrors() {
+        assertTrue(policy.isRetryable(new FetchException(url, new HttpTimeoutException("timeout"))));
+        assertTrue(policy.isRetryable(new FetchException(url, new ConnectException())));
+        assertTrue(policy.isRetryable(new FetchException(url, new IOException("Connection reset"))));
+        assertTrue(policy.isRetryable(new CompletionException(new FetchException(url, new IOException()))));
+    }
+
+    @Test
+    public void ShouldRetryServerErrorsAndTooManyRequests() {
+        assertTrue(policy.isRetryable(status(500)));
+        assertTrue(policy.isRetryable(status(503)));
+        assertTrue(policy.isRetryable(new TooManyRequestsException(url, Map.of())));
+    }
+
+    @Test
+    public void ShouldNotRetryClientErrors() {
+        assertFalse(policy.isRetryable(status(404)));
+        assertFalse(policy.isRetryable(status(410)));
+        assertFalse(policy.isRetryable(status(403)));
+    }
+
+    @Test
+    public void ShouldNotRetryDeterministicFailures() {
+        assertFalse(policy.isRetryable(new FetchException(url, new IllegalArgumentException("invalid URI scheme"))));
+        assertFalse(policy.isRetryable(new NotModifiedException(url)));
+        assertFalse(policy.isRetryable(new UnsupportedContentTypeException(url, "image/png")));
+        assertFalse(policy.isRetryable(new UnsupportedContentEncodingException(url, "br")));
+        assertFalse(policy.isRetryable(new HostUnavailableException(url, null)));
+    }
+}
@@ -0,0 +1,110 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.*;
+import java.io.IOException;
+import java.net.HttpRetryException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.helvidios.crawler.UnitTest;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class RobotsTxtCacheTests {
+
+    private final URI robotsUrl = URI.create("https://en.wikipedia.org/robots.txt");
+    private final URI allowed = URI.create("https://en.wikipedia.org/wiki/Stockholm");
+    private final URI disallowed = URI.create("https://en.wikipedia.org/w/index.php");
+
+    private HttpClient serving(CompletableFuture<HtmlDocument> robots){
+        var httpClientMock = mock(HttpClient.class, CALLS_REAL_METHODS);
+        doReturn(robots).when(httpClientMock).sendAsync(FetchRequest.of(robotsUrl));
+        return httpClientMock;
+    }
+
+    @Test
+    public void ShouldDownloadRobotsTxtOncePerHost() {
+        var httpClient = serving(CompletableFuture.completedFuture(
+            HtmlDocument.of(robotsUrl, "User-agent: *\nDisallow: /w/\nCrawl-delay: 2")));
+        var cache = RobotsTxtCache.create(httpClient, "helvidios-bot");
+
+        assertTrue(cache.isAllowed(allowed));
+        assertFalse(cache.isAllowed(disallowed));
+        assertEquals(Duration.ofSeconds(2), cache.get(allowed).crawlDelay().get());
+
+        verify(httpClient, times(1)).sendAsync(FetchRequest.of(robotsUrl));
+    }
+
+    @Test
+    public void ShouldAllowEverythingWhenRobotsTxtIsMissing() {
+        var httpClient = serving(CompletableFuture.failedFuture(new FetchException(robotsUrl, new HttpRetryException("", 404))));
+
+        assertTrue(RobotsTxtCache.create(httpClient, "helvidios-bot").isAllowed(disallowed));
+    }
+
+    @Test
+    public void ShouldAllowEverythingWhenRobotsTxtHasUnsupportedEncoding() {
+        var httpClient = serving(CompletableFuture.failedFuture(new UnsupportedContentEncodingException(robotsUrl, "br")));
+
+        assertTrue(RobotsTxtCache.create(httpClient, "helvidios-bot").isAllowed(disallowed));
+    }
+
+    @Test
+    public void ShouldDisallowEverythingWhileRobotsTxtIsUnreachable() throws Exception {
+        var httpClient = serving(CompletableFuture.failedFuture(new FetchException(robotsUrl, new IOException())));
+        var cache = RobotsTxtCache.create(httpClient, "helvidios-bot", Duration.ofHours(1), Duration.ofMillis(50), 100);
+
+        assertFalse(cache.isAllowed(allowed));
+        assertFalse(cache.isAllowed(allowed));
+        verify(httpClient, times(1)).sendAsync(FetchRequest.of(robotsUrl));
+
+        Thread.sleep(100);
+        cache.isAllowed(allowed);
+        verify(httpClient, times(2)).sendAsync(FetchRequest.of(robotsUrl));
+    }
+
+    @Test
+    public void ShouldShareDownloadBetweenConcurrentRequests() {
+        var robots = new CompletableFuture<HtmlDocument>();
+        var httpClient = serving(robots);
+        var cache = RobotsTxtCache.create(httpClient, "helvidios-bot");
+
+        var first = cache.getAsync(allowed);
+        var second = cache.getAsync(disallowed);
+        robots.complete(HtmlDocument.of(robotsUrl, "User-agent: *\nDisallow: /w/"));
+
+        assertTrue(first.join().isAllowed(allowed));
+        assertFalse(second.join().isAllowed(disallowed));
+        verify(httpClient, times(1)).sendAsync(FetchRequest.of(robotsUrl));
+    }
+
+    @Test
+    public void ShouldRejectDisallowedUrlAndApplyCrawlDelay() throws FetchException {
+        var httpClient = serving(CompletableFuture.completedFuture(
+            HtmlDocument.of(robotsUrl, "User-agent: *\nDisallow: /w/\nCrawl-delay: 2")));
+        doReturn(HtmlDocument.of(allowed, "")).when(httpClient).send(FetchRequest.of(allowed));
+        var rateLimit = new PerHostRateLimit(100, Map.of(), Duration.ofMinutes(1));
+        var httpClientWithRobots = new HttpClientWithRobotsTxt(RobotsTxtCache.create(httpClient, "helvidios-bot"), rateLimit, httpClient);
+
+        try{
+            httpClientWithRobots.fetch(disallowed);
+            fail("URL disallowed by robots.txt must not be fetched");
+        }catch(DisallowedByRobotsException ex){}
+        assertTrue(httpClientWithRobots.fetchAsync(disallowed).isCompletedExceptionally());
+
+        assertEquals(allowed, httpClientWithRobots.fetch(allowed).url());
+        assertEquals(0, rateLimit.reserve(allowed));
+        assertTrue("second request must wait for Crawl-delay", rateLimit.reserve(allowed) > Duration.ofSeconds(1).toNanos());
+        verify(httpClient, never()).send(FetchRequest.of(disallowed));
+    }
+}
@@ -0,0 +1,89 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import java.net.URI;
+import java.time.Duration;
+import org.helvidios.crawler.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class RobotsTxtTests {
+
+    private final String content = String.join("\n",
+        "# robots.txt for en.wikipedia.org",
+        "User-agent: *",
+        "Disallow: /w/",
+        "Allow: /w/load.php",
+        "Disallow: /*?action=edit",
+        "Disallow: /*.pdf$",
+        "Crawl-delay: 10",
+        "",
+        "User-agent: other-bot",
+        "User-agent: helvidios-bot/1.0",
+        "Disallow: /private",
+        "Crawl-delay: 0.5",
+        "",
+        "Sitemap: https://en.wikipedia.org/sitemap.xml");
+
+    private static URI url(String path){
+        return URI.create("https://en.wikipedia.org" + path);
+    }
+
+    @Test
+    public void ShouldApplyGroupOfStarWhenCrawlerIsNotNamed() {
+        var robots = RobotsTxt.parse(content, "some-bot");
+
+        assertFalse(robots.isAllowed(url("/w/index.php")));
+        assertTrue(robots.isAllowed(url("/wiki/Stockholm")));
+        assertTrue(robots.isAllowed(url("/private")));
+        assertEquals(Duration.ofSeconds(10), robots.crawlDelay().get());
+    }
+
+    @Test
+    public void ShouldApplyOnlyGroupNamingCrawler() {
+        var robots = RobotsTxt.parse(content, "Helvidios-Bot");
+
+        assertTrue(robots.isAllowed(url("/w/index.php")));
+        assertFalse(robots.isAllowed(url("/private/page")));
+        assertEquals(Duration.ofMillis(500), robots.crawlDelay().get());
+    }
+
+    @Test
+    public void ShouldPreferLongestMatchAndAllowOnTie() {
+        var robots = RobotsTxt.parse(content, "some-bot");
+        assertTrue(robots.isAllowed(url("/w/load.php?modules=site")));
+
+        var tie = RobotsTxt.parse("User-agent: *\nDisallow: /page\nAllow: /page", "some-bot");
+        assertTrue(tie.isAllowed(url("/page")));
+    }
+
+    @Test
+    public void ShouldMatchWildcardsAndEndAnchor() {
+        var robots = RobotsTxt.parse(content, "some-bot");
+
+        assertFalse(robots.isAllowed(url("/wiki/Stockholm?action=edit")));
+        assertTrue(robots.isAllowed(url("/wiki/Stockholm?action=view")));
+        assertFalse(robots.isAllowed(url("/files/report.pdf")));
+        assertTrue(robots.isAllowed(url("/files/report.pdf.html")));
+    }
+
+    @Test
+    public void ShouldAllowEverythingWithoutMatchingGroupOrRules() {
+        assertTrue(RobotsTxt.parse("User-agent: other-bot\nDisallow: /", "some-bot").isAllowed(url("/")));
+        assertTrue(RobotsTxt.parse("User-agent: *\nDisallow:", "some-bot").isAllowed(url("/")));
+        assertTrue(RobotsTxt.parse("", "some-bot").isAllowed(url("/")));
+        assertFalse(RobotsTxt.parse("", "some-bot").crawlDelay().isPresent());
+    }
+
+    @Test
+    public void ShouldDisallowEverything() {
+        assertFalse(RobotsTxt.disallowAll().isAllowed(url("/")));
+        assertFalse(RobotsTxt.parse("User-agent: *\r\nDisallow: /\r\n", "some-bot").isAllowed(url("")));
+    }
+}
@@ -3,6 +3,9 @@ package org.helvidios.crawler.http;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import java.net.URI;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
 import org.helvidios.crawler.UnitTest;
@@ -62,7 +65,8 @@ public class TooManyRequestsExceptionTests {
     @Test
     public void ShouldParsRetryAfterDate() {
 
-        final String retryAfterDate = "Wed, 21 Oct 2025 07:28:00 GMT";
+        final String retryAfterDate = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+            ZonedDateTime.now(ZoneOffset.UTC).plusYears(5));
 
         var ex = new TooManyRequestsException(
             URI.create("https://www.google.com"), 
@@ -72,4 +76,18 @@ public class TooManyRequestsExceptionTests {
 
         assertTrue(ex.retryAfter() > 100_000_000);
     }
+
+    @Test
+    public void ShouldNotReturnNegativeWaitIfDateIsInThePast() {
+
+        final String retryAfterDate = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+        var ex = new TooManyRequestsException(
+            URI.create("https://www.google.com"), 
+            Map.ofEntries(
+                Map.entry("Retry-After", List.of(retryAfterDate))
+            ));
+
+        assertEquals(0, ex.retryAfter());
+    }
 }
@@ -0,0 +1,100 @@
+package org.helvidios.crawler.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.*;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import org.helvidios.crawler.UnitTest;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.helvidios.crawler.storage.DocumentDb;
+import org.helvidios.crawler.storage.DocumentNotFoundException;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class ValidatorStoreTests {
+
+    private final URI url = URI.create("https://example.com/page?b=2&a=1");
+    private final URI otherSpelling = URI.create("HTTPS://example.com:443/page?a=1&b=2#top");
+    private final String content = "<html><body>hello</body></html>";
+    private final String etag = "\"v1\"";
+    private final String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+    private final HtmlDocument downloaded = HtmlDocument.Builder()
+        .withUrl(url)
+        .withContent(content)
+        .withValidators(etag, lastModified)
+        .build();
+
+    @Test
+    public void ShouldReadContentBackFromDocumentDb() throws Exception {
+        var docDb = mock(DocumentDb.class);
+        when(docDb.get(downloaded.docId())).thenReturn(HtmlDocument.Builder().withId(downloaded.docId()).withUrl(url).withContent(content).build());
+        var store = ValidatorStore.backedBy(docDb, 10);
+
+        store.put(downloaded);
+        var stored = store.get(otherSpelling).get();
+
+        assertEquals(downloaded.docId(), stored.docId());
+        assertEquals(content, stored.content());
+        assertEquals(Optional.of(etag), stored.etag());
+        assertEquals(Optional.of(lastModified), stored.lastModified());
+    }
+
+    @Test
+    public void ShouldForgetValidatorsIfDocumentIsNotStored() throws Exception {
+        var docDb = mock(DocumentDb.class);
+        when(docDb.get(downloaded.docId())).thenThrow(DocumentNotFoundException.class);
+        var store = ValidatorStore.backedBy(docDb, 10);
+
+        store.put(downloaded);
+
+        assertFalse(store.get(url).isPresent());
+        assertFalse(store.get(url).isPresent());
+        verify(docDb, times(1)).get(downloaded.docId());
+    }
+
+    @Test
+    public void ShouldIgnoreDocumentsWithoutValidators() {
+        var docDb = mock(DocumentDb.class);
+        var store = ValidatorStore.backedBy(docDb, 10);
+
+        store.put(HtmlDocument.of(url, content));
+
+        assertFalse(store.get(url).isPresent());
+        verifyNoInteractions(docDb);
+    }
+
+    @Test
+    public void ShouldRebuildDocumentFromMemoryForRequestedSpelling() {
+        var store = ValidatorStore.inMemory(10);
+
+        store.put(downloaded);
+        var stored = store.get(otherSpelling).get();
+
+        assertEquals(downloaded.docId(), stored.docId());
+        assertEquals(otherSpelling, stored.url());
+        assertEquals(content, stored.content());
+        assertEquals(Optional.of(etag), stored.etag());
+        assertEquals(Optional.of(lastModified), stored.lastModified());
+    }
+
+    @Test
+    public void ShouldKeepContentInMemoryAsBytes() {
+        var bytes = "<p>caf\u00e9</p>".getBytes(StandardCharsets.ISO_8859_1);
+        var store = ValidatorStore.inMemory(10);
+
+        store.put(HtmlDocument.Builder().withUrl(url).withContent(bytes, StandardCharsets.ISO_8859_1).withValidators(etag, null).build());
+        var stored = store.get(url).get();
+
+        assertSame(bytes, stored.contentBytes());
+        assertEquals(StandardCharsets.ISO_8859_1, stored.charset());
+        assertEquals("<p>caf\u00e9</p>", stored.content());
+    }
+}
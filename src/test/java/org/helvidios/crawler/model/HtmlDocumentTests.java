@@ -0,0 +1,59 @@
+package org.helvidios.crawler.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import org.helvidios.crawler.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class HtmlDocumentTests {
+
+    private final URI url = URI.create("https://www.w3schools.com/html/html_basic.asp");
+
+    @Test
+    public void ShouldExposeRawBytesWithoutCopying() {
+        var bytes = "<html>café</html>".getBytes(StandardCharsets.ISO_8859_1);
+        var doc = HtmlDocument.of(url, bytes, StandardCharsets.ISO_8859_1);
+
+        assertSame(bytes, doc.contentBytes());
+        assertEquals(bytes.length, doc.contentBuffer().remaining());
+        assertEquals(StandardCharsets.ISO_8859_1, doc.charset());
+    }
+
+    @Test
+    public void ShouldDecodeContentLazilyUsingCharset() {
+        var doc = HtmlDocument.of(url, "<html>Привет</html>".getBytes(Charset.forName("KOI8-R")), Charset.forName("KOI8-R"));
+
+        assertEquals("<html>Привет</html>", doc.content());
+        assertSame(doc.content(), doc.content());
+    }
+
+    @Test
+    public void ShouldEncodeTextContentAsUtf8() {
+        var doc = HtmlDocument.of(url, "<html>ü</html>");
+
+        assertEquals(StandardCharsets.UTF_8, doc.charset());
+        assertEquals("<html>ü</html>", new String(doc.contentBytes(), StandardCharsets.UTF_8));
+        assertFalse(doc.contentBuffer().hasArray());
+    }
+
+    @Test
+    public void ShouldDeriveIdFromCanonicalUrl() {
+        var doc = HtmlDocument.of(url, "<html></html>");
+
+        assertEquals(doc.docId(), HtmlDocument.of(URI.create("HTTPS://www.w3schools.com:443/html/./html_basic.asp#top"), "").docId());
+        assertEquals(Url.of(url).fingerprint(), doc.docId());
+        assertEquals(doc.docId(), HtmlDocument.Builder().withUrl(url).withContent("<html></html>").build().docId());
+        assertEquals(42, HtmlDocument.Builder().withId(42).withUrl(url).withContent("").build().docId());
+        assertNotEquals(doc.docId(), HtmlDocument.of(URI.create("https://www.w3schools.com/html/html_intro.asp"), "").docId());
+    }
+}
@@ -0,0 +1,104 @@
+package org.helvidios.crawler.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.helvidios.crawler.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class HtmlLinkExtractorTests {
+
+    private final URI url = URI.create("https://example.com/wiki/Page?x=1");
+
+    @Test
+    public void ShouldResolveRelativeLinksAgainstPageUrl() {
+        var links = extract("<a href=\"/a\">a</a><A HREF='b'>b</A><a href=c>c</a><a href=\"//other.org/d\">d</a><a href=\"?q=2\">q</a>");
+
+        assertEquals(List.of(
+            URI.create("https://example.com/a"),
+            URI.create("https://example.com/wiki/b"),
+            URI.create("https://example.com/wiki/c"),
+            URI.create("https://other.org/d"),
+            URI.create("https://example.com/wiki/Page?q=2")), links.urls());
+    }
+
+    @Test
+    public void ShouldResolveLinksAgainstBaseHrefEvenIfItComesLater() {
+        var links = extract("<a href=\"x\">x</a><base href=\"http://cdn.example.com/root/\"><a href=\"y\">y</a>");
+
+        assertEquals(List.of(URI.create("http://cdn.example.com/root/x"), URI.create("http://cdn.example.com/root/y")), links.urls());
+    }
+
+    @Test
+    public void ShouldDropFragmentsDuplicatesAndNonHttpLinks() {
+        var links = extract("<a href=\"#top\">top</a><a href=\"/a#s1\">1</a><a href=\"/a#s2\">2</a>"
+            + "<a href=\"mailto:me@example.com\">m</a><a href=\"javascript:void(0)\">j</a><a>none</a><a href=\"\">empty</a>");
+
+        assertEquals(List.of(URI.create("https://example.com/a")), links.urls());
+    }
+
+    @Test
+    public void ShouldSkipCommentsScriptsAndStyles() {
+        var links = extract("<!-- <a href=\"/comment\"> --><script>var s = '<a href=\"/script\">';</script>"
+            + "<style>a[href=\"/style\"]{}</style><!DOCTYPE html><a href=\"/real\">r</a>");
+
+        assertEquals(List.of(URI.create("https://example.com/real")), links.urls());
+    }
+
+    @Test
+    public void ShouldExtractTitleAndCanonicalUrl() {
+        var links = extract("<html><head><TITLE>\n  Fish &amp; Chips &#8211;  Wiki </TITLE>"
+            + "<link rel=\"stylesheet\" href=\"/s.css\"><link rel=\"Canonical\" href=\"/wiki/Fish\"></head></html>");
+
+        assertEquals("Fish & Chips – Wiki", links.title());
+        assertEquals(URI.create("https://example.com/wiki/Fish"), links.canonicalUrl());
+        assertEquals(List.of(), links.urls());
+    }
+
+    @Test
+    public void ShouldDecodeEntitiesAndEscapeIllegalCharactersInLinks() {
+        var links = extract("<a href=\"/search?a=1&amp;b=2\">s</a><a href=\"/my page/café\">c</a>");
+
+        assertEquals(List.of(
+            URI.create("https://example.com/search?a=1&b=2"),
+            URI.create("https://example.com/my%20page/caf%c3%a9")), links.urls());
+    }
+
+    @Test
+    public void ShouldTolerateMalformedMarkup() {
+        var links = extract("<a href=\"/ok\"<<p =x><a href='/unterminated");
+
+        assertEquals(URI.create("https://example.com/ok"), links.urls().get(0));
+        assertNull(extract("<title>never closed").canonicalUrl());
+        assertEquals("never closed", extract("<title>never closed").title());
+    }
+
+    @Test
+    public void ShouldHandleCharsetsThatAreNotAsciiCompatible() {
+        var html = "<title>Ünïcode</title><a href=\"/u\">u</a>";
+        var links = HtmlLinkExtractor.extract(url, html.getBytes(StandardCharsets.UTF_16), StandardCharsets.UTF_16);
+
+        assertEquals("Ünïcode", links.title());
+        assertEquals(List.of(URI.create("https://example.com/u")), links.urls());
+    }
+
+    @Test
+    public void ShouldMemoizeLinksOnDocument() {
+        var doc = HtmlDocument.of(url, "<title>t</title><a href=\"/a\">a</a>");
+
+        assertEquals("t", doc.title());
+        assertSame(doc.urls(), doc.urls());
+    }
+
+    private HtmlLinkExtractor.Links extract(String html){
+        return HtmlLinkExtractor.extract(url, html.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,70 @@
+package org.helvidios.crawler.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.helvidios.crawler.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class LinkScannerTests {
+
+    private final URI url = URI.create("https://example.com/wiki/Page");
+
+    private final String html = "<html><head><title>T</title><!-- <a href=\"/comment\"> -->"
+        + "<script>var s = '<a href=\"/script\">';</script><style>a[href=\"/style\"]{}</style></head><body>"
+        + "<a href=\"/a\">a</a><A HREF='b' class=\"x y\">b</A><a href=c>c</a><a href=\"/a#s\">again</a>"
+        + "<a href=\"http://other.org/caf%C3%A9\">d</a><a href=\"mailto:me@example.com\">m</a></body></html>";
+
+    @Test
+    public void ShouldFindSameLinksInAnyChunkingAsInCompleteDocument() {
+        var bytes = html.getBytes(StandardCharsets.UTF_8);
+        var expected = HtmlDocument.of(url, bytes, StandardCharsets.UTF_8).urls();
+
+        for(var chunkSize = 1; chunkSize <= bytes.length; chunkSize++){
+            var links = new ArrayList<URI>();
+            var scanner = new LinkScanner(url, StandardCharsets.UTF_8, links::add);
+            for(var length = chunkSize; length < bytes.length; length += chunkSize){
+                scanner.feed(bytes, length);
+            }
+            scanner.feed(bytes, bytes.length);
+            scanner.finish();
+            assertEquals("chunk size " + chunkSize, expected, links);
+        }
+    }
+
+    @Test
+    public void ShouldReportLinkAsSoonAsItsTagHasArrived() {
+        var bytes = "<p><a href=\"/first\">first</a><p>more to come <a href=\"/sec".getBytes(StandardCharsets.UTF_8);
+        var links = new ArrayList<URI>();
+        var scanner = new LinkScanner(url, StandardCharsets.UTF_8, links::add);
+
+        scanner.feed(bytes, bytes.length);
+
+        assertEquals(List.of(URI.create("https://example.com/first")), links);
+    }
+
+    @Test
+    public void ShouldScanUnterminatedTagWhenFinished() {
+        var bytes = "<a href=\"/first\">first</a><a href=/cut".getBytes(StandardCharsets.UTF_8);
+        var links = new ArrayList<URI>();
+        var scanner = new LinkScanner(url, StandardCharsets.UTF_8, links::add);
+
+        scanner.feed(bytes, bytes.length);
+        scanner.finish();
+
+        assertEquals(List.of(URI.create("https://example.com/first"), URI.create("https://example.com/cut")), links);
+    }
+
+    @Test
+    public void ShouldNotSupportCharsetsThatDoNotEncodeAsciiAsSingleBytes() {
+        assertFalse(LinkScanner.supports(StandardCharsets.UTF_16));
+    }
+}
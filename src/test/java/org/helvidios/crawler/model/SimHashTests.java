@@ -0,0 +1,57 @@
+package org.helvidios.crawler.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.helvidios.crawler.UnitTest;
+import org.helvidios.crawler.storage.NearDuplicateDetector;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class SimHashTests {
+
+    private static final String ARTICLE = "Mirrors, printer-friendly pages and session-parameterized copies make up a big "
+        + "share of what a web crawler stores and parses again. A near-duplicate detector computes a fingerprint over "
+        + "the shingled text of each page and compares fingerprints of new pages with those of known pages, so that "
+        + "copies within a small Hamming distance are neither stored nor expanded. The fingerprints are indexed in bands "
+        + "so that a lookup only compares a handful of candidates even when millions of pages are known.";
+
+    @Test
+    public void ShouldIgnoreMarkupCaseAndWhitespace() {
+        var plain = SimHash.of("<html><body><p>" + ARTICLE + "</p></body></html>").getAsLong();
+        var styled = SimHash.of("<html><head><title></title><style>p { color: red }</style>"
+            + "<script>var tracking = 'session=123';</script></head><body><!-- printer-friendly -->"
+            + "<div class=\"print\">" + ARTICLE.toUpperCase().replace(" ", "\n  ") + "</div></body></html>").getAsLong();
+
+        assertEquals(plain, styled);
+    }
+
+    @Test
+    public void ShouldKeepSimilarPagesClose() {
+        var original = SimHash.of("<p>" + ARTICLE + "</p><footer>Page 1 of 3</footer>").getAsLong();
+        var copy = SimHash.of("<p>" + ARTICLE + "</p><footer>Page 1 of 4. Session 7f3a</footer>").getAsLong();
+        var other = SimHash.of("<p>The quick brown fox jumps over the lazy dog while the crawler downloads "
+            + "unrelated pages about cooking, gardening and the history of the printing press in Europe.</p>").getAsLong();
+
+        assertTrue("distance to copy was " + SimHash.distance(original, copy),
+            SimHash.distance(original, copy) <= NearDuplicateDetector.DEFAULT_MAX_DISTANCE);
+        assertTrue("distance to other was " + SimHash.distance(original, other), SimHash.distance(original, other) > 12);
+    }
+
+    @Test
+    public void ShouldHaveNoFingerprintForPageWithoutText() {
+        assertFalse(SimHash.of("<html><head><script>var a = 1;</script></head><body> &nbsp; </body></html>").isPresent());
+        assertTrue(SimHash.of("<p>Hello</p>").isPresent());
+    }
+
+    @Test
+    public void ShouldCountDifferentBits() {
+        assertEquals(0, SimHash.distance(42, 42));
+        assertEquals(64, SimHash.distance(0, -1L));
+        assertEquals(2, SimHash.distance(0b1010, 0b0000));
+    }
+}
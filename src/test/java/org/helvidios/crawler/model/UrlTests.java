@@ -0,0 +1,79 @@
+package org.helvidios.crawler.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import java.net.URI;
+import org.helvidios.crawler.UnitTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class UrlTests {
+
+    @Test
+    public void ShouldNormalizeSchemeHostPortAndFragment() {
+        assertEquals("http://example.com/", Url.of("HTTP://Example.COM").toString());
+        assertEquals("https://example.com/a", Url.of("https://example.com.:443/a#top").toString());
+        assertEquals("http://example.com:8080/", Url.of("http://example.com:8080").toString());
+        assertEquals("http://user@example.com/", Url.of("http://user@example.com/").toString());
+    }
+
+    @Test
+    public void ShouldLowerCaseOnlyHostOfRegistryAuthority() {
+        assertEquals("http://User:Pa%2Fss@my_host.example.com:8080/a",
+            Url.of("http://User:Pa%2fss@My_Host.EXAMPLE.com:8080/a").toString());
+        assertEquals("http://my_host%2Fa%C3%A9/", Url.of("http://MY_HOST%2fa%c3%A9/").toString());
+    }
+
+    @Test
+    public void ShouldRemoveDotSegments() {
+        assertEquals("https://example.com/a/c", Url.of("https://example.com/a/./b/../c").toString());
+        assertEquals("https://example.com/", Url.of("https://example.com/../..").toString());
+        assertEquals("https://example.com/a/", Url.of("https://example.com/a/b/..").toString());
+        assertEquals("https://example.com/a/c", Url.of("https://example.com/a/%2E/b/%2e%2E/c").toString());
+    }
+
+    @Test
+    public void ShouldNormalizePercentEscapes() {
+        assertEquals("https://example.com/~user/a%2Fb", Url.of("https://example.com/%7euser/a%2fb").toString());
+        assertEquals("https://example.com/caf%C3%A9", Url.of(URI.create("https://example.com/café")).toString());
+        assertEquals(Url.of(URI.create("https://example.com/café")), Url.of("https://example.com/caf%c3%a9"));
+    }
+
+    @Test
+    public void ShouldSortQueryAndDropTrackingParameters() {
+        assertEquals("https://example.com/p?a=1&b=2&b=1",
+            Url.of("https://example.com/p?b=2&utm_source=news&a=1&&gclid=xyz&b=1&UTM_Medium=mail").toString());
+        assertEquals("https://example.com/p", Url.of("https://example.com/p?utm_campaign=x").toString());
+        assertEquals("https://example.com/p?q=a%26b", Url.of("https://example.com/p?q=a%26b").toString());
+    }
+
+    @Test
+    public void ShouldCompareByCanonicalForm() {
+        var url = Url.of("https://Example.com:443/a/../b?y=2&x=1#f");
+        var same = Url.of("https://example.com/b?x=1&y=2");
+
+        assertEquals(same, url);
+        assertEquals(same.hashCode(), url.hashCode());
+        assertEquals(same.fingerprint(), url.fingerprint());
+        assertNotEquals(Url.of("https://example.com/b?x=1"), url);
+        assertEquals(URI.create("https://example.com/b?x=1&y=2"), url.toUri());
+        assertEquals(url.toString().length(), url.length());
+    }
+
+    @Test
+    public void ShouldInternEqualUrls() {
+        var url = Url.of("https://example.com/a").intern();
+
+        assertSame(url, Url.of("HTTPS://EXAMPLE.COM/a").intern());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ShouldRejectRelativeUrl() {
+        Url.of("/relative/path");
+    }
+}
@@ -8,6 +8,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import org.helvidios.crawler.UnitTest;
 import org.helvidios.crawler.model.HtmlDocument;
 import org.junit.Test;
@@ -54,4 +55,20 @@ public class CompressedDocumentDbTests {
         assertEquals(document.content(), decompressedDocument.content());
         assertEquals(document.docId(), decompressedDocument.docId());
     }
+
+    @Test
+    public void ShouldCompressDocumentHeldAsRawBytesInAnyCharset() throws Exception {
+        var compression = HtmlDocumentCompression.gzip();
+        final String content = "<html>\r\n<body>café</body>\r\n</html>\n";
+        var document = HtmlDocument.of(
+            URI.create("https://www.w3schools.com/html/html_basic.asp"),
+            content.getBytes(StandardCharsets.ISO_8859_1),
+            StandardCharsets.ISO_8859_1);
+
+        var decompressedDocument = compression.decompress(compression.compress(document));
+
+        assertEquals(document.url(), decompressedDocument.url());
+        assertEquals(content, decompressedDocument.content());
+        assertEquals(StandardCharsets.UTF_8, decompressedDocument.charset());
+    }
 }
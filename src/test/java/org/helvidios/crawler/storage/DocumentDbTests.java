@@ -1,9 +1,18 @@
 package org.helvidios.crawler.storage;
 
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 import java.net.URI;
 import org.helvidios.crawler.SlowTest;
 import org.helvidios.crawler.UnitTest;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.helvidios.crawler.model.Url;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.junit.runner.RunWith;
@@ -74,4 +83,87 @@ public class DocumentDbTests {
     public void ShouldThrowExceptionIfConnectionStringIsNull() {
         DocumentDb.Builder().withStorageProvider(null).build();
     }
+
+    @Test
+    public void ShouldAnswerFromUrlCacheForAnySpellingOfWrittenUrl() throws Exception {
+        var storage = mock(DocumentDb.class);
+        var docDb = new DocumentDbWithUrlCache(new GuavaCache(), storage);
+
+        docDb.write(HtmlDocument.of(URI.create("https://example.com/a?x=1&y=2"), "<html></html>"));
+
+        assertTrue(docDb.contains(URI.create("HTTPS://example.com:443/a?y=2&x=1&utm_source=feed")));
+        assertTrue(docDb.contains(Url.of("https://example.com/a?x=1&y=2")));
+        verify(storage, never()).contains(any(URI.class));
+    }
+
+    @Test
+    public void ShouldLookUpStorageByCanonicalUrlOnCacheMiss() throws Exception {
+        var storage = mock(DocumentDb.class);
+        when(storage.contains(Url.of("https://example.com/a?x=1&y=2"))).thenReturn(true);
+        var docDb = new DocumentDbWithUrlCache(new GuavaCache(), storage);
+
+        assertTrue(docDb.contains(URI.create("HTTPS://example.com:443/a?y=2&x=1#top")));
+        assertTrue(docDb.contains(URI.create("https://example.com/a?x=1&y=2")));
+        verify(storage, times(1)).contains(any(Url.class));
+        verify(storage, never()).contains(any(URI.class));
+    }
+
+    @Test
+    public void ShouldKeepFingerprintOfStoredVersionIfRewriteFails() throws Exception {
+        var storage = mock(DocumentDb.class);
+        var docDb = new DocumentDbWithNearDuplicateDetection(NearDuplicateDetector.create(), storage);
+        var text = "<p>Mirrors and printer-friendly pages repeat the same article text under a different URL.</p>";
+        var original = HtmlDocument.of(URI.create("https://example.com/article"), text);
+        var rewritten = HtmlDocument.of(original.url(), "<p>The page now talks about something else entirely, cooking.</p>");
+        var copy = HtmlDocument.of(URI.create("https://mirror.example.org/article"), "<div>" + text + "</div>");
+        doThrow(new DocumentWriteException(rewritten, "storage unavailable")).when(storage).write(rewritten);
+
+        docDb.write(original);
+        try{
+            docDb.write(rewritten);
+            assertTrue("Must throw exception on failed write", false);
+        }catch(DuplicateDocumentException ex){
+            assertTrue("Must not be reported as a duplicate", false);
+        }catch(DocumentWriteException ex){
+            assertTrue(ex.document() == rewritten);
+        }
+        try{
+            docDb.write(copy);
+            assertTrue("Must throw exception on near-duplicate of stored version", false);
+        }catch(DuplicateDocumentException ex){
+            assertTrue(ex.duplicateOf() == original.docId());
+        }
+    }
+
+    @Test
+    public void ShouldBuildWithNearDuplicateDetection() {
+        var docDb = DocumentDb.Builder()
+            .withCompression()
+            .withNearDuplicateDetection()
+            .build();
+        assertTrue("docDb must be instanceof DocumentDbWithNearDuplicateDetection", 
+            docDb instanceof DocumentDbWithNearDuplicateDetection);
+    }
+
+    @Test
+    public void ShouldSkipWritingNearDuplicateButCacheItsUrl() throws Exception {
+        var storage = mock(DocumentDb.class);
+        var docDb = new DocumentDbWithUrlCache(new GuavaCache(),
+            new DocumentDbWithNearDuplicateDetection(NearDuplicateDetector.create(), storage));
+        var text = "<p>Mirrors and printer-friendly pages repeat the same article text under a different URL.</p>";
+        var original = HtmlDocument.of(URI.create("https://example.com/article"), text);
+        var copy = HtmlDocument.of(URI.create("https://mirror.example.org/article"), "<div>" + text + "</div>");
+
+        docDb.write(original);
+        try{
+            docDb.write(copy);
+            assertTrue("Must throw exception on near-duplicate", false);
+        }catch(DuplicateDocumentException ex){
+            assertTrue(ex.duplicateOf() == original.docId());
+        }
+
+        verify(storage).write(original);
+        verify(storage, never()).write(copy);
+        assertTrue(docDb.contains(copy.url()));
+    }
 }
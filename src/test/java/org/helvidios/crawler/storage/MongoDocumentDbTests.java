@@ -80,6 +80,16 @@ public class MongoDocumentDbTests {
         }
     }
 
+    @Test
+    public void ShouldOverwriteDocumentWhenPageIsWrittenAgain() throws DocumentDbException {
+        docDb.write(HtmlDocument.of(URI.create("https://example.com/page?b=2&a=1"), "version 1"));
+        docDb.write(HtmlDocument.of(URI.create("HTTPS://example.com/page?a=1&b=2#top"), "version 2"));
+
+        assertEquals(1, docDb.size());
+        assertEquals("version 2", docDb.get(HtmlDocument.idOf(URI.create("https://example.com/page?a=1&b=2"))).content());
+        assertTrue("Document must be found by any spelling of its URL", docDb.contains(URI.create("https://example.com:443/page?b=2&a=1")));
+    }
+
     @Test
     public void ShouldUtilizeReadWriteLock() {
 
@@ -0,0 +1,95 @@
+package org.helvidios.crawler.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.Random;
+import org.helvidios.crawler.UnitTest;
+import org.helvidios.crawler.model.HtmlDocument;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.runner.RunWith;
+import org.mockito.junit.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+@Category(UnitTest.class)
+public class NearDuplicateDetectorTests {
+
+    private static final String ARTICLE = "A near-duplicate detector computes a fingerprint over the shingled text of "
+        + "each page and compares fingerprints of new pages with those of known pages, so that copies within a small "
+        + "Hamming distance are neither stored nor expanded. The fingerprints are indexed in bands so that a lookup only "
+        + "compares a handful of candidates even when millions of pages are known to the crawler.";
+
+    private final HtmlDocument original = HtmlDocument.of(URI.create("https://example.com/article"), "<p>" + ARTICLE + "</p>");
+    private final HtmlDocument printable = HtmlDocument.of(URI.create("https://example.com/article?print=1"),
+        "<html><body><div class=\"print\">" + ARTICLE + "</div></body></html>");
+    private final HtmlDocument unrelated = HtmlDocument.of(URI.create("https://example.com/other"),
+        "<p>The quick brown fox jumps over the lazy dog while the crawler downloads unrelated pages about cooking.</p>");
+
+    @Test
+    public void ShouldRejectNearDuplicateOfKnownPage() {
+        var detector = NearDuplicateDetector.create();
+
+        assertEquals(OptionalLong.empty(), detector.addIfUnique(original));
+        assertEquals(OptionalLong.of(original.docId()), detector.addIfUnique(printable));
+        assertEquals(OptionalLong.empty(), detector.addIfUnique(unrelated));
+        assertEquals(2, detector.size());
+    }
+
+    @Test
+    public void ShouldNotReportPageAsDuplicateOfItself() {
+        var detector = NearDuplicateDetector.create();
+        detector.addIfUnique(original);
+
+        assertEquals(OptionalLong.empty(), detector.findDuplicate(original));
+        assertEquals(OptionalLong.empty(), detector.addIfUnique(original));
+        assertEquals(1, detector.size());
+    }
+
+    @Test
+    public void ShouldForgetRemovedPages() {
+        var detector = NearDuplicateDetector.create(0);
+        detector.addIfUnique(original);
+        detector.remove(original.docId());
+
+        assertEquals(0, detector.size());
+        assertFalse(detector.findDuplicate(printable).isPresent());
+    }
+
+    @Test
+    public void ShouldFindDuplicatesAmongManyPages() {
+        var detector = NearDuplicateDetector.create(NearDuplicateDetector.MAX_DISTANCE_LIMIT);
+        var random = new Random(42);
+        for(int i = 0; i < 2_000; i++){
+            // random words, so that no two filler pages share a shingle
+            var text = new StringBuilder("<p>");
+            for(int word = 0; word < 40; word++) text.append(" w").append(random.nextInt(1_000_000));
+            assertEquals(OptionalLong.empty(),
+                detector.addIfUnique(HtmlDocument.of(URI.create("https://example.com/page/" + i), text + "</p>")));
+        }
+        detector.addIfUnique(original);
+
+        assertEquals(2_001, detector.size());
+        assertEquals(OptionalLong.of(original.docId()), detector.findDuplicate(printable));
+    }
+
+    @Test
+    public void ShouldRestorePreviousFingerprint() {
+        var detector = NearDuplicateDetector.create();
+        detector.addIfUnique(original);
+        var rewritten = HtmlDocument.of(original.url(), unrelated.content());
+
+        var admission = detector.admit(rewritten);
+        detector.restore(rewritten.docId(), admission.previous());
+
+        assertEquals(1, detector.size());
+        assertEquals(OptionalLong.of(original.docId()), detector.findDuplicate(printable));
+        assertEquals(OptionalLong.empty(), detector.findDuplicate(unrelated));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ShouldThrowExceptionIfMaxDistanceIsOutOfRange() {
+        NearDuplicateDetector.create(NearDuplicateDetector.MAX_DISTANCE_LIMIT + 1);
+    }
+}